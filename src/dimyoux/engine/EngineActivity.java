@@ -11,6 +11,8 @@ import android.opengl.GLU;
 import android.os.Bundle;
 import dimyoux.engine.core.interfaces.IRenderer;
 import dimyoux.engine.managers.ApplicationManager;
+import dimyoux.engine.managers.LoadingManager;
+import dimyoux.engine.managers.TextureManager;
 import dimyoux.engine.scene.Camera;
 import dimyoux.engine.scene.Light;
 import dimyoux.engine.scene.Scene;
@@ -103,6 +105,8 @@ public class EngineActivity extends Activity implements IRenderer{
 	public void _onDrawFrame(GL10 gl) {
 		// TODO Auto-generated method stub
 		Scene.gl = (GL11)gl;
+		//uploads of the background loadings
+		LoadingManager.getInstance().runGLTasks();
 		//Camera.update();
 		root.draw();
 		onDrawFrame(gl);
@@ -133,6 +137,9 @@ public class EngineActivity extends Activity implements IRenderer{
 	public void _onSurfaceCreated(GL10 gl, EGLConfig config) {
 		Log.warning("Surface created");
 		Light.removeAll();
+		//a new OpenGL context has no texture and no buffer : the loaded meshes are uploaded again
+		TextureManager.getInstance().invalidate();
+		LoadingManager.getInstance().reupload(root.getChildNodes());
 
 		gl.glClearColor(0.0f, 0.0f, 0.0f, 0.5f);
 
@@ -9,9 +9,17 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
 import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import android.content.res.Resources;
 import android.content.res.Resources.NotFoundException;
@@ -40,6 +48,18 @@ public class FileManager {
 	 * Potential folders
 	 */
 	static private List<String> folders;
+	/**
+	 * Resources ids by folder and by name, read once from the R class
+	 */
+	private Map<String, Map<String, Integer>> index;
+	/**
+	 * Resolved names (0 if the file hasn't been found)
+	 */
+	private ConcurrentHashMap<String, Integer> fileIDs;
+	/**
+	 * Resolved names by folder (0 if the file hasn't been found)
+	 */
+	private ConcurrentHashMap<String, ConcurrentHashMap<String, Integer>> folderFileIDs;
 	/**
 	 * Constructor
 	 */
@@ -49,6 +69,37 @@ public class FileManager {
 		folders = new ArrayList<String>();
 		folders.add("raw");
 		folders.add("drawable");
+		fileIDs = new ConcurrentHashMap<String, Integer>();
+		folderFileIDs = new ConcurrentHashMap<String, ConcurrentHashMap<String, Integer>>();
+		index = buildIndex();
+	}
+	/**
+	 * Reads the resources ids of the R class (R.raw, R.drawable...)
+	 * @return Resources ids by folder and by name
+	 */
+	private static Map<String, Map<String, Integer>> buildIndex()
+	{
+		Map<String, Map<String, Integer>> index = new HashMap<String, Map<String, Integer>>();
+		try
+		{
+			for(final Class<?> folder : R.class.getClasses())
+			{
+				Map<String, Integer> ids = new HashMap<String, Integer>();
+				for(final Field field : folder.getFields())
+				{
+					if(Modifier.isStatic(field.getModifiers()) && field.getType() == int.class)
+					{
+						ids.put(field.getName(), field.getInt(null));
+					}
+				}
+				index.put(folder.getSimpleName(), ids);
+			}
+		}catch(Exception e)
+		{
+			Log.error("Resources index can't be built");
+			Log.error(e);
+		}
+		return index;
 	}
 	/**
 	 * Adds a potential folder
@@ -59,6 +110,7 @@ public class FileManager {
 		if(!folders.contains(folderName))
 		{
 			folders.add(folderName);
+			fileIDs.clear();
 		}
 	}
 	/**
@@ -70,6 +122,7 @@ public class FileManager {
 		if(folders.contains(folderName))
 		{
 			folders.remove(folderName);
+			fileIDs.clear();
 		}
 	}
 	/**
@@ -142,6 +195,95 @@ public class FileManager {
 		int id = getFileID(name, folder);
 		return resources.openRawResource(id);
 	}
+	/**
+	 * Maps a file in memory (read only)
+	 * The content is read directly from the file system cache : nothing is copied or decoded
+	 * @param file File
+	 * @return Content of the file
+	 * @throws IOException The file can't be mapped
+	 */
+	public MappedByteBuffer mapFile(File file) throws IOException
+	{
+		RandomAccessFile access = new RandomAccessFile(file, "r");
+		try
+		{
+			FileChannel channel = access.getChannel();
+			//the mapping stays valid once the channel is closed
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		finally
+		{
+			access.close();
+		}
+	}
+	/**
+	 * Gets a file stored in the application's files directory (or in its cache directory)
+	 * @param name File's name
+	 * @return File. Null if the file doesn't exist
+	 */
+	public File getStoredFile(String name)
+	{
+		if(name.startsWith("/"))
+		{
+			File file = new File(name);
+			return file.isFile()?file:null;
+		}
+		File file;
+		File directory = ApplicationManager.getInstance().getActivity().getExternalFilesDir(null);
+		if(directory != null)
+		{
+			file = new File(directory, name);
+			if(file.isFile())
+			{
+				return file;
+			}
+		}
+		file = new File(ApplicationManager.getInstance().getActivity().getCacheDir(), name);
+		return file.isFile()?file:null;
+	}
+	/**
+	 * Gets the file where the application can store a file (in its files directory or in its cache directory)
+	 * @param name File's name
+	 * @return File. It may not exist yet
+	 */
+	public File getStorageFile(String name)
+	{
+		File directory = ApplicationManager.getInstance().getActivity().getExternalFilesDir(null);
+		if(directory == null)
+		{
+			directory = ApplicationManager.getInstance().getActivity().getCacheDir();
+		}
+		return new File(directory, name);
+	}
+	/**
+	 * Computes a fingerprint of a file, which changes when the file may have changed :
+	 * size and date of a file of the file system, id of a resource and size and date of the application's package
+	 * @param name File's name
+	 * @return Fingerprint, 0 if the file hasn't been found
+	 */
+	public long getFingerprint(String name)
+	{
+		File file;
+		int id = 0;
+		if(name.startsWith("/"))
+		{
+			file = new File(name);
+		}else
+		{
+			id = getFileID(name);
+			if(id == 0)
+			{
+				return 0;
+			}
+			//resources can't change without a new package
+			file = new File(ApplicationManager.getInstance().getActivity().getPackageCodePath());
+		}
+		if(!file.isFile())
+		{
+			return 0;
+		}
+		return ((long)id << 32) ^ (file.length() * 31 + file.lastModified());
+	}
 	/**
 	 * Gets file name associated with id
 	 * @param id ID of file
@@ -153,10 +295,80 @@ public class FileManager {
 	}
 	/**
 	 * Gets ID of a file
+	 * Names are resolved once : the result (even if the file hasn't been found) is kept
 	 * @param name File's name
 	 * @return ID of the file. 0 if the file hasn't been found
 	 */
 	public int getFileID(String name)
+	{
+		Integer id = fileIDs.get(name);
+		if(id == null)
+		{
+			id = findFileID(name);
+			if(id == 0)
+			{
+				id = resolveFileID(name);
+			}
+			fileIDs.put(name, id);
+		}
+		return id;
+	}
+	/**
+	 * Gets ID of a file from the index of the resources, with the same candidates as resolveFileID()
+	 * @param name File's name
+	 * @return ID of the file. 0 if the file isn't in the index
+	 */
+	private int findFileID(String name)
+	{
+		if(name.startsWith("/"))
+		{
+			name = name.substring(1);
+		}
+		int id = findFileID(name, folders);
+		if(id == 0)
+		{
+			name = name.replace('.', '_');
+			id = findFileID(name, folders);
+			if(id == 0 && name.lastIndexOf("_")>-1)
+			{
+				id = findFileID(name.substring(0, name.lastIndexOf("_")), folders);
+			}
+		}
+		return id;
+	}
+	/**
+	 * Gets ID of a file from the index of the resources
+	 * @param name File's name, with or without its folder ("raw/name")
+	 * @param folderList Folders where the file can be
+	 * @return ID of the file. 0 if the file isn't in the index
+	 */
+	private int findFileID(String name, List<String> folderList)
+	{
+		Map<String, Integer> ids;
+		Integer id;
+		int separator = name.indexOf('/');
+		if(separator > -1)
+		{
+			ids = index.get(name.substring(name.indexOf(':') + 1, separator));
+			id = ids == null?null:ids.get(name.substring(separator + 1));
+			return id == null?0:id;
+		}
+		for(final String folder : folderList)
+		{
+			ids = index.get(folder);
+			if(ids != null && (id = ids.get(name)) != null)
+			{
+				return id;
+			}
+		}
+		return 0;
+	}
+	/**
+	 * Gets ID of a file from the resources (slow : up to a dozen of lookups)
+	 * @param name File's name
+	 * @return ID of the file. 0 if the file hasn't been found
+	 */
+	private int resolveFileID(String name)
 	{
 		if(name.startsWith("/"))
 		{
@@ -219,11 +431,45 @@ public class FileManager {
 	}
 	/**
 	 * Gets ID of a file
+	 * Names are resolved once : the result (even if the file hasn't been found) is kept
 	 * @param name File's name
 	 * @param folder Folder where the file is
 	 * @return ID of the file. 0 if the file hasn't been found
 	 */
 	public int getFileID(String name, String folder)
+	{
+		ConcurrentHashMap<String, Integer> ids = folderFileIDs.get(folder);
+		if(ids == null)
+		{
+			folderFileIDs.putIfAbsent(folder, new ConcurrentHashMap<String, Integer>());
+			ids = folderFileIDs.get(folder);
+		}
+		Integer id = ids.get(name);
+		if(id == null)
+		{
+			String indexedName = name.startsWith("/")?name.substring(1):name;
+			List<String> folderList = new ArrayList<String>(1);
+			folderList.add(folder);
+			id = findFileID(indexedName, folderList);
+			if(id == 0)
+			{
+				id = findFileID(indexedName.replace('.', '_'), folderList);
+			}
+			if(id == 0)
+			{
+				id = resolveFileID(name, folder);
+			}
+			ids.put(name, id);
+		}
+		return id;
+	}
+	/**
+	 * Gets ID of a file from the resources (slow : several lookups)
+	 * @param name File's name
+	 * @param folder Folder where the file is
+	 * @return ID of the file. 0 if the file hasn't been found
+	 */
+	private int resolveFileID(String name, String folder)
 	{
 		if(name.startsWith("/"))
 		{
@@ -279,6 +525,62 @@ public class FileManager {
 		
 		return null;
 	}
+	/**
+	 * Open a bitmap file, subsampled while it is decoded if it is bigger than a size
+	 * The sizes of the file are read first : a big file is never decoded at its full size
+	 * @param id File's id
+	 * @param maxSize Maximum width and height wanted (0 : no limit). The result can be up to 2 times bigger
+	 * since the subsampling factor is a power of 2
+	 * @return Bitmap
+	 */
+	public Bitmap loadBitmap(int id, int maxSize)
+	{
+		if(maxSize <= 0)
+		{
+			return loadBitmap(id);
+		}
+		BitmapFactory.Options options = new BitmapFactory.Options();
+		options.inJustDecodeBounds = true;
+		InputStream is = null;
+		try
+		{
+			is = resources.openRawResource(id);
+			BitmapFactory.decodeStream(is, null, options);
+			is.close();
+			int sampleSize = 1;
+			while(java.lang.Math.max(options.outWidth, options.outHeight) / (sampleSize * 2) >= maxSize)
+			{
+				sampleSize *= 2;
+			}
+			options.inJustDecodeBounds = false;
+			options.inSampleSize = sampleSize;
+			options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+			options.inDither = false;
+			if(sampleSize > 1)
+			{
+				Log.verbose("ID["+id+"] "+options.outWidth+"x"+options.outHeight+" subsampled by "+sampleSize);
+			}
+			is = resources.openRawResource(id);
+			Bitmap bitmap = BitmapFactory.decodeStream(is, null, options);
+			is.close();
+			return bitmap;
+		}catch(Exception error)
+		{
+			Log.error("ID["+id+"] bitmap has not been loaded");
+			Log.error(error);
+			try
+			{
+				if(is != null)
+				{
+					is.close();
+				}
+			}catch(IOException e)
+			{
+				// Ignore.
+			}
+		}
+		return null;
+	}
 	/**
 	 * Open a bitmap file
 	 * @param name Name of file
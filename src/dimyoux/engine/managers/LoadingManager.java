@@ -0,0 +1,321 @@
+package dimyoux.engine.managers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import dimyoux.engine.opengl.GLConstants;
+import dimyoux.engine.scene.Mesh;
+import dimyoux.engine.scene.Node;
+import dimyoux.engine.scene.Scene;
+import dimyoux.engine.utils.Log;
+import dimyoux.engine.utils.Workers;
+import dimyoux.engine.utils.parsers.Material;
+import dimyoux.engine.utils.parsers.ObjParser;
+/**
+ * [Singleton] Loading manager
+ * Files are parsed and decoded by a background thread. The OpenGL work (VBO and texture uploads)
+ * is queued and run by the render thread, a few tasks per frame (see FRAME_BUDGET) :
+ * frames are drawn during the loading and the meshes appear as soon as they are uploaded
+ */
+public class LoadingManager {
+	/**
+	 * Time (in milliseconds) given to the OpenGL tasks at each frame
+	 */
+	public static long FRAME_BUDGET = 8;
+	/**
+	 * Instance [Singleton]
+	 */
+	private static LoadingManager _instance;
+	/**
+	 * Background thread
+	 */
+	private ExecutorService executor;
+	/**
+	 * Tasks to run on the render thread
+	 */
+	private ConcurrentLinkedQueue<Runnable> glTasks;
+	/**
+	 * Constructor
+	 */
+	private LoadingManager()
+	{
+		glTasks = new ConcurrentLinkedQueue<Runnable>();
+		executor = Executors.newSingleThreadExecutor(Workers.createThreadFactory("LoadingManager", Thread.MIN_PRIORITY));
+	}
+	/**
+	 * @return Return the LoadingManager instance
+	 */
+	public static synchronized LoadingManager getInstance()
+	{
+		if(_instance == null)
+		{
+			_instance = new LoadingManager();
+		}
+		return _instance;
+	}
+	/**
+	 * Loads a .obj file in background (see ObjParser.load())
+	 * @param name File's name
+	 * @return Node, available once the file is parsed (its meshes may not be uploaded yet)
+	 */
+	public Future<Node> load(final String name)
+	{
+		return load(new Callable<Node>() {
+			@Override
+			public Node call()
+			{
+				return new ObjParser().load(name);
+			}
+		}, null);
+	}
+	/**
+	 * Loads a .obj file in background and attaches it to the scene
+	 * @param name File's name
+	 * @param scene Scene. The node is attached by the render thread, each mesh is drawn once it is uploaded
+	 * @return Node, available once the file is parsed (its meshes may not be uploaded yet)
+	 */
+	public Future<Node> load(final String name, Scene scene)
+	{
+		return load(new Callable<Node>() {
+			@Override
+			public Node call()
+			{
+				return new ObjParser().load(name);
+			}
+		}, scene);
+	}
+	/**
+	 * Runs a loader in background then queues the upload of the meshes of its node
+	 * Errors are logged : the returned Future can be ignored
+	 * @param loader Loader. It must not use OpenGL
+	 * @param scene Scene to attach the node to (by the render thread), can be null
+	 * @return Node, available once the loader is done (its meshes may not be uploaded yet)
+	 */
+	public Future<Node> load(final Callable<Node> loader, final Scene scene)
+	{
+		return executor.submit(new Callable<Node>() {
+			@Override
+			public Node call() throws Exception
+			{
+				try
+				{
+					return loadNow(loader, scene);
+				}catch(Exception e)
+				{
+					//the caller may never call get()
+					Log.error("Error while loading in background");
+					Log.error(e);
+					throw e;
+				}
+			}
+		});
+	}
+	/**
+	 * Runs a loader then queues the upload of the meshes of its node
+	 * @param loader Loader
+	 * @param scene Scene to attach the node to (by the render thread), can be null
+	 * @return Node, null if the loader didn't return any
+	 * @throws Exception Error of the loader
+	 */
+	private Node loadNow(Callable<Node> loader, final Scene scene) throws Exception
+	{
+		long start = System.currentTimeMillis();
+		final Node node = loader.call();
+		if(node == null)
+		{
+			return null;
+		}
+		Log.verbose("Node loaded in background in "+(System.currentTimeMillis() - start)+"ms");
+		//meshes are hidden until they are uploaded
+		prepare(node);
+		if(scene != null)
+		{
+			runOnGLThread(new Runnable() {
+				@Override
+				public void run()
+				{
+					scene.attachChildNode(node);
+				}
+			});
+		}
+		queueUploads(node);
+		return node;
+	}
+	/**
+	 * Uploads again the meshes of nodes already loaded, whose buffers are lost with the OpenGL context
+	 * (textures are forgotten by TextureManager.invalidate()). The meshes are hidden until they are uploaded
+	 * Must be called by the render thread
+	 * @param nodes Nodes
+	 */
+	public void reupload(List<Node> nodes)
+	{
+		final List<Node> invalidated = new ArrayList<Node>(nodes);
+		for(final Node node : invalidated)
+		{
+			invalidate(node);
+		}
+		//the textures are awaited in background
+		executor.submit(new Runnable() {
+			@Override
+			public void run()
+			{
+				try
+				{
+					for(final Node node : invalidated)
+					{
+						queueUploads(node);
+					}
+				}catch(Exception e)
+				{
+					Log.error(e);
+				}
+			}
+		});
+	}
+	/**
+	 * Forgets the buffers of the meshes of a node and of its children and hides them until they are uploaded
+	 * @param node Node
+	 */
+	private void invalidate(Node node)
+	{
+		if(node.hasEntity() && node.getEntity().hasMesh())
+		{
+			node.getEntity().getMesh().invalidate();
+			node.getEntity().getMesh().setUploadPending(true);
+		}
+		for(final Node child : node.getChildNodes())
+		{
+			invalidate(child);
+		}
+	}
+	/**
+	 * Queues a task run by the render thread
+	 * @param task Task
+	 */
+	public void runOnGLThread(Runnable task)
+	{
+		glTasks.add(task);
+	}
+	/**
+	 * Indicates if OpenGL tasks are waiting
+	 * @return True or false
+	 */
+	public boolean hasGLTasks()
+	{
+		return !glTasks.isEmpty();
+	}
+	/**
+	 * Runs the queued OpenGL tasks until the frame budget is spent (at least one task is run)
+	 * Must be called by the render thread
+	 * @return Number of tasks run
+	 */
+	public int runGLTasks()
+	{
+		long end = System.nanoTime() + FRAME_BUDGET * 1000000L;
+		int count = 0;
+		Runnable task;
+		while((task = glTasks.poll()) != null)
+		{
+			try
+			{
+				task.run();
+			}catch(Exception e)
+			{
+				Log.error(e);
+			}
+			count++;
+			if(System.nanoTime() >= end)
+			{
+				break;
+			}
+		}
+		return count;
+	}
+	/**
+	 * Marks the meshes of a node and of its children as waiting for their upload
+	 * @param node Node
+	 */
+	private void prepare(Node node)
+	{
+		if(node.hasEntity() && node.getEntity().hasMesh())
+		{
+			node.getEntity().getMesh().setUploadPending(true);
+		}
+		for(final Node child : node.getChildNodes())
+		{
+			prepare(child);
+		}
+	}
+	/**
+	 * Queues the upload of the meshes of a node and of its children (one task per mesh)
+	 * A mesh is queued once its textures are decoded (see TextureManager.await())
+	 * @param node Node
+	 */
+	private void queueUploads(Node node)
+	{
+		if(node.hasEntity() && node.getEntity().hasMesh())
+		{
+			final Mesh mesh = node.getEntity().getMesh();
+			awaitTextures(mesh);
+			runOnGLThread(new Runnable() {
+				@Override
+				public void run()
+				{
+					upload(mesh);
+					mesh.setUploadPending(false);
+				}
+			});
+		}
+		for(final Node child : node.getChildNodes())
+		{
+			queueUploads(child);
+		}
+	}
+	/**
+	 * Waits until the textures of a mesh and of its parts are decoded
+	 * @param mesh Mesh
+	 */
+	private void awaitTextures(Mesh mesh)
+	{
+		Material material = mesh.getCurrentMaterial();
+		if(material != null && material.hasTexture())
+		{
+			TextureManager.getInstance().await(material.idTextureFile);
+		}
+		if(mesh.getSubMeshes() != null)
+		{
+			for(final Mesh subMesh : mesh.getSubMeshes())
+			{
+				awaitTextures(subMesh);
+			}
+		}
+	}
+	/**
+	 * Sends a mesh, its parts and its texture to OpenGL
+	 * @param mesh Mesh
+	 */
+	private void upload(Mesh mesh)
+	{
+		if(GLConstants.USE_VBO)
+		{
+			mesh.bufferize();
+		}
+		Material material = mesh.getCurrentMaterial();
+		if(material != null && material.hasTexture())
+		{
+			material.bindTexture();
+		}
+		if(mesh.getSubMeshes() != null)
+		{
+			for(final Mesh subMesh : mesh.getSubMeshes())
+			{
+				upload(subMesh);
+			}
+		}
+	}
+}
@@ -0,0 +1,635 @@
+package dimyoux.engine.managers;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.microedition.khronos.opengles.GL10;
+import javax.microedition.khronos.opengles.GL11;
+
+import android.graphics.Bitmap;
+import android.opengl.GLUtils;
+import dimyoux.engine.opengl.GLConstants;
+import dimyoux.engine.scene.Scene;
+import dimyoux.engine.utils.ETC1Codec;
+import dimyoux.engine.utils.Log;
+import dimyoux.engine.utils.MipmapGenerator;
+import dimyoux.engine.utils.TextureConverter;
+import dimyoux.engine.utils.Workers;
+/**
+ * [Singleton] Texture manager
+ * Textures are shared by resource id : a file used by several materials is decoded and uploaded once.
+ * Bitmaps are recycled once uploaded. The least recently used textures are deleted from OpenGL when
+ * the GPU budget is exceeded, they are decoded again when they are used again.
+ * Generated textures (see add()) have negative ids and keep their bitmap
+ * Mipmaps are generated on the CPU (see MipmapGenerator) when the textures are decoded.
+ * Opaque textures are compressed to ETC1 (see ETC1Codec) when the device supports it,
+ * the other textures are converted to 16 bits formats when their content allows it (see TextureConverter)
+ * Files are decoded by a pool of threads (see acquire()), subsampled to MAX_SIZE and resized to powers of 2
+ */
+public class TextureManager {
+	/**
+	 * GPU memory (in bytes) that textures can use
+	 */
+	public static long GPU_BUDGET = 32*1024*1024;
+	/**
+	 * Recycles the bitmaps once they are uploaded
+	 */
+	public static boolean RECYCLE_BITMAPS = true;
+	/**
+	 * Uses mipmaps (GL_LINEAR_MIPMAP_LINEAR) for the textures whose sizes are powers of 2
+	 */
+	public static boolean USE_MIPMAPS = true;
+	/**
+	 * Compresses the opaque textures to ETC1 if the device supports it (see GLConstants.ETC1_SUPPORTED)
+	 */
+	public static boolean USE_ETC1 = true;
+	/**
+	 * Converts the textures to RGB565 or RGBA4444 when their content allows it (see TextureConverter.selectConfig())
+	 */
+	public static boolean USE_16_BITS_FORMATS = true;
+	/**
+	 * Largest size (in pixels) of the textures : bigger files are subsampled while they are decoded.
+	 * Also limited by GLConstants.MAX_TEXTURE_SIZE
+	 */
+	public static int MAX_SIZE = 1024;
+	/**
+	 * Resizes the textures whose sizes are not powers of 2 (needed by mipmaps and OpenGL ES 1)
+	 */
+	public static boolean RESIZE_TO_POWER_OF_TWO = true;
+	/**
+	 * Number of threads decoding the files
+	 */
+	public static int DECODING_THREADS = 2;
+	/**
+	 * Instance [Singleton]
+	 */
+	private static TextureManager _instance;
+	/**
+	 * Texture
+	 */
+	private static class Texture
+	{
+		/**
+		 * Resource id of the file
+		 */
+		int resourceId;
+		/**
+		 * Number of users (materials)
+		 */
+		int references = 0;
+		/**
+		 * Decoded bitmap, null once uploaded
+		 */
+		Bitmap bitmap;
+		/**
+		 * Levels 1 to n of the mipmaps, null if the texture has no mipmap
+		 */
+		Bitmap[] mipmaps;
+		/**
+		 * ETC1 levels (0 to n), null if the texture is not compressed
+		 */
+		ByteBuffer[] compressed;
+		/**
+		 * Size of the compressed texture
+		 */
+		int width, height;
+		/**
+		 * Indicates if a material using the texture is translucent : its alpha needs more precision
+		 */
+		boolean translucent = false;
+		/**
+		 * Decoding in progress, null if the texture is not being decoded
+		 */
+		Future<?> decoding;
+		/**
+		 * Indicates if the file can't be decoded : it is not decoded again
+		 */
+		boolean missing = false;
+		/**
+		 * OpenGL index, 0 if the texture is not uploaded
+		 */
+		int index = 0;
+		/**
+		 * GPU memory used (in bytes)
+		 */
+		long size = 0;
+		/**
+		 * Constructor
+		 * @param resourceId Resource id of the file
+		 */
+		Texture(int resourceId)
+		{
+			this.resourceId = resourceId;
+		}
+	}
+	/**
+	 * Textures by resource id, from the least recently used to the most recently used
+	 */
+	private LinkedHashMap<Integer, Texture> textures;
+	/**
+	 * GPU memory used (in bytes)
+	 */
+	private long gpuSize = 0;
+	/**
+	 * Number of evictions
+	 */
+	private int evictions = 0;
+	/**
+	 * Id of the last generated texture
+	 */
+	private int lastGeneratedId = 0;
+	/**
+	 * OpenGL index of the bound texture
+	 */
+	private int boundIndex = 0;
+	/**
+	 * Threads decoding the files
+	 */
+	private ExecutorService decoder;
+	/**
+	 * Constructor
+	 */
+	private TextureManager()
+	{
+		textures = new LinkedHashMap<Integer, Texture>(16, 0.75f, true);
+	}
+	/**
+	 * @return Return the TextureManager instance
+	 */
+	public static synchronized TextureManager getInstance()
+	{
+		if(_instance == null)
+		{
+			_instance = new TextureManager();
+		}
+		return _instance;
+	}
+	/**
+	 * Adds a user to a texture. The file is decoded if the texture is not available yet
+	 * Can be called by any thread
+	 * @param resourceId Resource id of the file
+	 */
+	public void acquire(int resourceId)
+	{
+		acquire(resourceId, false);
+	}
+	/**
+	 * Adds a user to a texture. The file is decoded in background if the texture is not available yet :
+	 * the caller (a parser) is not blocked (see await())
+	 * Can be called by any thread
+	 * @param resourceId Resource id of the file
+	 * @param translucent Indicates if the user is a translucent material (see Material.isTranslucent())
+	 */
+	public synchronized void acquire(final int resourceId, boolean translucent)
+	{
+		Texture texture = textures.get(resourceId);
+		if(texture == null)
+		{
+			texture = new Texture(resourceId);
+			textures.put(resourceId, texture);
+		}
+		texture.references++;
+		texture.translucent |= translucent;
+		if(texture.index != 0 || isDecoded(texture) || texture.decoding != null || texture.missing)
+		{
+			return;
+		}
+		startDecoding(texture);
+	}
+	/**
+	 * Decodes the file of a texture in background (see acquire())
+	 * The lock must be held
+	 * @param texture Texture
+	 */
+	private void startDecoding(final Texture texture)
+	{
+		final int resourceId = texture.resourceId;
+		final boolean translucent = texture.translucent;
+		texture.decoding = getDecoder().submit(new Runnable() {
+			@Override
+			public void run()
+			{
+				//decoded outside of the lock : the render thread is not blocked
+				Texture decoded = new Texture(resourceId);
+				decoded.translucent = translucent;
+				prepare(decoded, decode(resourceId));
+				synchronized(TextureManager.this)
+				{
+					texture.decoding = null;
+					texture.missing = !isDecoded(decoded);
+					if(textures.get(resourceId) == texture && texture.index == 0 && !isDecoded(texture))
+					{
+						texture.bitmap = decoded.bitmap;
+						texture.mipmaps = decoded.mipmaps;
+						texture.compressed = decoded.compressed;
+						texture.width = decoded.width;
+						texture.height = decoded.height;
+					}else
+					{
+						recycle(decoded);
+					}
+				}
+			}
+		});
+	}
+	/**
+	 * Waits until a texture is decoded
+	 * Must not be called by the render thread
+	 * @param resourceId Resource id of the file
+	 */
+	public void await(int resourceId)
+	{
+		Future<?> decoding;
+		synchronized(this)
+		{
+			Texture texture = textures.get(resourceId);
+			if(texture == null || texture.decoding == null)
+			{
+				return;
+			}
+			decoding = texture.decoding;
+		}
+		try
+		{
+			decoding.get();
+		}catch(Exception e)
+		{
+			Log.error(e);
+		}
+	}
+	/**
+	 * Adds a generated texture. Its bitmap is kept since it can't be decoded again
+	 * The texture is removed once its users release it (see acquire() and release())
+	 * @param bitmap Bitmap
+	 * @param translucent Indicates if a material using the texture is translucent
+	 * @return Id of the texture (negative), used as a resource id
+	 */
+	public int add(Bitmap bitmap, boolean translucent)
+	{
+		Texture texture = new Texture(0);
+		texture.translucent = translucent;
+		prepare(texture, bitmap);
+		synchronized(this)
+		{
+			texture.resourceId = --lastGeneratedId;
+			textures.put(texture.resourceId, texture);
+			return texture.resourceId;
+		}
+	}
+	/**
+	 * Removes a user from a texture. A texture without user stays in OpenGL until it is evicted
+	 * @param resourceId Resource id of the file
+	 */
+	public synchronized void release(int resourceId)
+	{
+		Texture texture = textures.get(resourceId);
+		if(texture == null || texture.references == 0)
+		{
+			return;
+		}
+		texture.references--;
+		if(texture.references == 0 && texture.index == 0)
+		{
+			recycle(texture);
+			textures.remove(resourceId);
+		}
+	}
+	/**
+	 * Binds a texture. It is uploaded if needed, and decoded in background if it was evicted
+	 * Must be called by the render thread
+	 * @param resourceId Resource id of the file
+	 * @return OpenGL index of the texture, 0 if the texture is being decoded or the file can't be decoded
+	 */
+	public synchronized int bind(int resourceId)
+	{
+		GL11 gl = Scene.gl;
+		Texture texture = textures.get(resourceId);
+		if(texture == null)
+		{
+			texture = new Texture(resourceId);
+			textures.put(resourceId, texture);
+		}
+		if(texture.index == 0)
+		{
+			if(texture.decoding == null && !isDecoded(texture) && !texture.missing && resourceId > 0)
+			{
+				//evicted or lost with the context : decoded again in background
+				Log.verbose("Decoding texture "+resourceId+" again");
+				startDecoding(texture);
+			}
+			if(texture.decoding != null || !isDecoded(texture))
+			{
+				//not ready yet : drawn without texture rather than blocking the frame
+				if(boundIndex != 0)
+				{
+					gl.glBindTexture(GL10.GL_TEXTURE_2D, 0);
+					boundIndex = 0;
+				}
+				return 0;
+			}
+			upload(gl, texture);
+			trim(gl, texture);
+		}
+		//meshes sharing a texture (see TextureAtlas) don't bind it again
+		if(texture.index != boundIndex)
+		{
+			gl.glBindTexture(GL10.GL_TEXTURE_2D, texture.index);
+			boundIndex = texture.index;
+		}
+		return texture.index;
+	}
+	/**
+	 * Sends a texture to OpenGL
+	 * @param gl GL instance
+	 * @param texture Texture
+	 */
+	private void upload(GL11 gl, Texture texture)
+	{
+		int[] indexes = new int[1];
+		gl.glGenTextures(1, indexes, 0);
+		texture.index = indexes[0];
+
+		gl.glBindTexture(GL10.GL_TEXTURE_2D, texture.index);
+		boundIndex = texture.index;
+		boolean mipmapped = texture.mipmaps != null || (texture.compressed != null && texture.compressed.length > 1);
+		gl.glTexParameterf(GL10.GL_TEXTURE_2D, GL10.GL_TEXTURE_MIN_FILTER,
+				mipmapped?GL10.GL_LINEAR_MIPMAP_LINEAR:GL10.GL_LINEAR);
+		gl.glTexParameterf(GL10.GL_TEXTURE_2D, GL10.GL_TEXTURE_MAG_FILTER,
+				GL10.GL_LINEAR);
+		gl.glTexParameterf(GL10.GL_TEXTURE_2D, GL10.GL_TEXTURE_WRAP_S,
+				GL10.GL_CLAMP_TO_EDGE);
+		gl.glTexParameterf(GL10.GL_TEXTURE_2D, GL10.GL_TEXTURE_WRAP_T,
+				GL10.GL_REPEAT);
+		if(texture.compressed != null)
+		{
+			texture.size = 0;
+			for(int level=0; level<texture.compressed.length; level++)
+			{
+				gl.glCompressedTexImage2D(GL10.GL_TEXTURE_2D, level, GLConstants.GL_ETC1_RGB8_OES,
+						MipmapGenerator.getSize(texture.width, level), MipmapGenerator.getSize(texture.height, level), 0,
+						texture.compressed[level].capacity(), texture.compressed[level]);
+				texture.size += texture.compressed[level].capacity();
+			}
+		}else
+		{
+			GLUtils.texImage2D(GL10.GL_TEXTURE_2D, 0, texture.bitmap, 0);
+			texture.size = (long)texture.bitmap.getRowBytes() * texture.bitmap.getHeight();
+		}
+		if(texture.mipmaps != null)
+		{
+			for(int level=0; level<texture.mipmaps.length; level++)
+			{
+				GLUtils.texImage2D(GL10.GL_TEXTURE_2D, level + 1, texture.mipmaps[level], 0);
+				texture.size += (long)texture.mipmaps[level].getRowBytes() * texture.mipmaps[level].getHeight();
+			}
+		}
+		gpuSize += texture.size;
+		Log.verbose("Texture "+texture.resourceId+" sent : "+texture.index+" ("+texture.size+" bytes)");
+		if(RECYCLE_BITMAPS && texture.resourceId > 0)
+		{
+			recycle(texture);
+		}
+	}
+	/**
+	 * Deletes the least recently used textures from OpenGL until the GPU budget is respected
+	 * @param gl GL instance
+	 * @param current Texture being used (never deleted)
+	 */
+	private void trim(GL11 gl, Texture current)
+	{
+		Iterator<Map.Entry<Integer, Texture>> iterator = textures.entrySet().iterator();
+		Texture texture;
+		while(gpuSize > GPU_BUDGET && iterator.hasNext())
+		{
+			texture = iterator.next().getValue();
+			if(texture == current || texture.index == 0)
+			{
+				continue;
+			}
+			gl.glDeleteTextures(1, new int[]{texture.index}, 0);
+			if(texture.index == boundIndex)
+			{
+				boundIndex = 0;
+			}
+			texture.index = 0;
+			gpuSize -= texture.size;
+			texture.size = 0;
+			evictions++;
+			Log.verbose("Texture "+texture.resourceId+" evicted");
+			if(texture.references == 0)
+			{
+				recycle(texture);
+				iterator.remove();
+			}
+		}
+	}
+	/**
+	 * Forgets the OpenGL textures, which are lost with the OpenGL context
+	 * Textures are uploaded again when they are used
+	 */
+	public synchronized void invalidate()
+	{
+		for(final Texture texture : textures.values())
+		{
+			texture.index = 0;
+			texture.size = 0;
+		}
+		gpuSize = 0;
+		boundIndex = 0;
+	}
+	/**
+	 * Recycles the bitmap of a texture
+	 * @param texture Texture
+	 */
+	private void recycle(Texture texture)
+	{
+		if(texture.bitmap != null)
+		{
+			texture.bitmap.recycle();
+			texture.bitmap = null;
+		}
+		recycle(texture.mipmaps);
+		texture.mipmaps = null;
+		texture.compressed = null;
+	}
+	/**
+	 * Indicates if a texture is ready to be uploaded
+	 * @param texture Texture
+	 * @return True or false
+	 */
+	private static boolean isDecoded(Texture texture)
+	{
+		return texture.bitmap != null || texture.compressed != null;
+	}
+	/**
+	 * Prepares the levels of a decoded texture : compressed to ETC1 if possible,
+	 * mipmaps and conversion to a 16 bits format otherwise
+	 * @param texture Texture
+	 * @param bitmap Decoded texture, can be null
+	 */
+	private static void prepare(Texture texture, Bitmap bitmap)
+	{
+		texture.bitmap = bitmap;
+		if(bitmap == null)
+		{
+			return;
+		}
+		if(USE_ETC1 && GLConstants.ETC1_SUPPORTED)
+		{
+			texture.compressed = ETC1Codec.compress(bitmap, texture.resourceId, USE_MIPMAPS);
+			if(texture.compressed != null)
+			{
+				texture.width = bitmap.getWidth();
+				texture.height = bitmap.getHeight();
+				//the compressed levels replace the bitmap
+				bitmap.recycle();
+				texture.bitmap = null;
+				return;
+			}
+		}
+		texture.mipmaps = generateMipmaps(bitmap, texture.resourceId);
+		if(USE_16_BITS_FORMATS)
+		{
+			Bitmap.Config config = TextureConverter.selectConfig(bitmap, texture.translucent);
+			texture.bitmap = TextureConverter.convert(bitmap, config);
+			if(texture.mipmaps != null)
+			{
+				for(int level=0; level<texture.mipmaps.length; level++)
+				{
+					texture.mipmaps[level] = TextureConverter.convert(texture.mipmaps[level], config);
+				}
+			}
+			if(config != Bitmap.Config.ARGB_8888)
+			{
+				Log.verbose("Texture "+texture.resourceId+" converted to "+config);
+			}
+		}
+	}
+	/**
+	 * Decodes a file, subsampled to MAX_SIZE (or GLConstants.MAX_TEXTURE_SIZE) and resized to powers of 2
+	 * @param resourceId Resource id of the file
+	 * @return Bitmap, null if the file can't be decoded
+	 */
+	private static Bitmap decode(int resourceId)
+	{
+		int maxSize = MAX_SIZE;
+		if(GLConstants.MAX_TEXTURE_SIZE > 0 && (maxSize <= 0 || GLConstants.MAX_TEXTURE_SIZE < maxSize))
+		{
+			maxSize = GLConstants.MAX_TEXTURE_SIZE;
+		}
+		Bitmap bitmap = FileManager.getInstance().loadBitmap(resourceId, maxSize);
+		if(bitmap == null)
+		{
+			return null;
+		}
+		int width = getSize(bitmap.getWidth(), maxSize);
+		int height = getSize(bitmap.getHeight(), maxSize);
+		if(width != bitmap.getWidth() || height != bitmap.getHeight())
+		{
+			Log.verbose("Texture "+resourceId+" resized from "+bitmap.getWidth()+"x"+bitmap.getHeight()+" to "+width+"x"+height);
+			Bitmap resized = Bitmap.createScaledBitmap(bitmap, width, height, true);
+			if(resized != bitmap)
+			{
+				bitmap.recycle();
+			}
+			bitmap = resized;
+		}
+		return bitmap;
+	}
+	/**
+	 * Size of a texture : the nearest power of 2 if RESIZE_TO_POWER_OF_TWO is used, limited to a maximum
+	 * @param size Size of the file
+	 * @param maxSize Maximum size (0 : no limit)
+	 * @return Size
+	 */
+	private static int getSize(int size, int maxSize)
+	{
+		if(RESIZE_TO_POWER_OF_TWO)
+		{
+			int power = 1;
+			while(power * 2 <= size)
+			{
+				power *= 2;
+			}
+			//nearest power of 2
+			if(size - power > power * 2 - size)
+			{
+				power *= 2;
+			}
+			size = power;
+		}
+		while(maxSize > 0 && size > maxSize)
+		{
+			size = RESIZE_TO_POWER_OF_TWO?size / 2:maxSize;
+		}
+		return size;
+	}
+	/**
+	 * @return Threads decoding the files
+	 */
+	private synchronized ExecutorService getDecoder()
+	{
+		if(decoder == null)
+		{
+			decoder = Executors.newFixedThreadPool(java.lang.Math.max(1, DECODING_THREADS), Workers.createThreadFactory("TextureDecoder", Thread.MIN_PRIORITY));
+		}
+		return decoder;
+	}
+	/**
+	 * Recycles the bitmaps of mipmaps
+	 * @param mipmaps Mipmaps, can be null
+	 */
+	private static void recycle(Bitmap[] mipmaps)
+	{
+		if(mipmaps != null)
+		{
+			for(final Bitmap mipmap : mipmaps)
+			{
+				mipmap.recycle();
+			}
+		}
+	}
+	/**
+	 * Generates the mipmaps of a texture if they are used
+	 * @param bitmap Decoded texture
+	 * @param resourceId Resource id of the texture
+	 * @return Levels 1 to n, null if the texture has no mipmap
+	 */
+	private static Bitmap[] generateMipmaps(Bitmap bitmap, int resourceId)
+	{
+		if(!USE_MIPMAPS)
+		{
+			return null;
+		}
+		return MipmapGenerator.generate(bitmap, resourceId);
+	}
+	/**
+	 * Returns the GPU memory used
+	 * @return Size in bytes
+	 */
+	public synchronized long getGPUSize()
+	{
+		return gpuSize;
+	}
+	/**
+	 * Returns the number of evictions
+	 * @return Evictions
+	 */
+	public synchronized int getEvictions()
+	{
+		return evictions;
+	}
+	/**
+	 * Returns a string containing a concise, human-readable description of this object.
+	 */
+	@Override
+	public synchronized String toString()
+	{
+		return "[TextureManager textures=\""+textures.size()+"\" gpu=\""+gpuSize+"/"+GPU_BUDGET+"\" evictions=\""+evictions+"\"]";
+	}
+}
@@ -116,7 +116,38 @@ public class GLConstants {
 	 * Defines if the device supports VBOs or not
 	 */
 	public static boolean USE_VBO = false;
+	/**
+	 * Defines if the device supports 32 bits indexes (GL_OES_element_index_uint)
+	 */
+	public static boolean ELEMENT_INDEX_UINT = false;
+	/**
+	 * ETC1 compressed texture format (GL_OES_compressed_ETC1_RGB8_texture)
+	 */
+	public static final int GL_ETC1_RGB8_OES = 0x8D64;
+	/**
+	 * Defines if the device supports ETC1 compressed textures
+	 */
+	public static boolean ETC1_SUPPORTED = false;
 	
+	/**
+	 * Returns the size of a value of a GL type
+	 * @param type GL_FLOAT, GL_FIXED, GL_SHORT, GL_UNSIGNED_SHORT, GL_BYTE or GL_UNSIGNED_BYTE
+	 * @return Size in bytes
+	 */
+	static public int getTypeSize(int type)
+	{
+		switch(type)
+		{
+			case GL10.GL_SHORT:
+			case GL10.GL_UNSIGNED_SHORT:
+				return Buffer.SHORT_SIZE;
+			case GL10.GL_BYTE:
+			case GL10.GL_UNSIGNED_BYTE:
+				return Buffer.BYTE_SIZE;
+			default:
+				return Buffer.FLOAT_SIZE;
+		}
+	}
 	/**
 	 * Gets GL constants
 	 */
@@ -178,5 +209,21 @@ public class GLConstants {
 	    {
 	    	USE_VBO = true;
 	    }
+	    // 32 bits indexes support
+	    ELEMENT_INDEX_UINT = specs.contains("GL_OES_element_index_uint");
+	    // ETC1 support
+	    ETC1_SUPPORTED = specs.contains("GL_OES_compressed_ETC1_RGB8_texture");
+	    if(!ETC1_SUPPORTED && NUM_COMPRESSED_TEXTURE_FORMATS > 0)
+	    {
+	    	IntBuffer formats = Buffer.createIntBuffer(NUM_COMPRESSED_TEXTURE_FORMATS);
+	    	GLES10.glGetIntegerv(GLES10.GL_COMPRESSED_TEXTURE_FORMATS, formats);
+	    	for(int i=0; i<NUM_COMPRESSED_TEXTURE_FORMATS; i++)
+	    	{
+	    		if(formats.get(i) == GL_ETC1_RGB8_OES)
+	    		{
+	    			ETC1_SUPPORTED = true;
+	    		}
+	    	}
+	    }
 	}
 }
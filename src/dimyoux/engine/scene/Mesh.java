@@ -2,7 +2,10 @@ package dimyoux.engine.scene;
 
 import java.io.IOException;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
 import java.nio.ShortBuffer;
 import java.util.ArrayList;
 import java.util.List;
@@ -10,8 +13,10 @@ import java.util.List;
 import javax.microedition.khronos.opengles.GL10;
 import javax.microedition.khronos.opengles.GL11;
 
+import android.opengl.GLES20;
 import dimyoux.engine.opengl.GLConstants;
 import dimyoux.engine.utils.Buffer;
+import dimyoux.engine.utils.math.BoundingVolume;
 import dimyoux.engine.utils.parsers.Material;
 
 /**
@@ -26,6 +31,10 @@ public class Mesh implements Serializable {
 	 * Current Material
 	 */
 	private String currentMaterial;
+	/**
+	 * Current Material, resolved once from its name (draws don't use the library)
+	 */
+	transient private Material material;
 	/**
 	 * List of materials
 	 */
@@ -35,7 +44,7 @@ public class Mesh implements Serializable {
 	 */
 	public String name;
 	/**
-	 * Index buffer of vertices
+	 * Index buffer of vertices (of all the attributes with the interleaved layout)
 	 */
 	transient protected int verticesBufferIndex = 0;
 	/**
@@ -70,6 +79,55 @@ public class Mesh implements Serializable {
 	 * Indicates it texCoords are based on 2 or 3 coordinates
 	 */
 	public int texCoordsSize = 2;
+	/**
+	 * Buffer of the interleaved attributes : position, normal, texture coordinates and color of each vertex
+	 * (see MeshBuilder.INTERLEAVED). The buffers of vertices, normals, colors and texture coordinates are null with this layout
+	 */
+	transient public ByteBuffer interleavedBuffer;
+	/**
+	 * Indicates if the attributes are in interleavedBuffer
+	 */
+	protected boolean interleaved = false;
+	/**
+	 * Size of a vertex in interleavedBuffer, in bytes
+	 */
+	public int stride = 0;
+	/**
+	 * Offset of the normal in a vertex of interleavedBuffer, in bytes (-1 if there is no normal)
+	 */
+	public int normalsOffset = -1;
+	/**
+	 * Offset of the texture coordinates in a vertex of interleavedBuffer, in bytes (-1 if there are no texture coordinates)
+	 */
+	public int texCoordsOffset = -1;
+	/**
+	 * Offset of the color in a vertex of interleavedBuffer, in bytes (-1 if there is no color)
+	 */
+	public int colorsOffset = -1;
+	/**
+	 * Type of the positions in interleavedBuffer (GL_FLOAT or GL_SHORT, see MeshQuantizer)
+	 */
+	public int verticesType = GL10.GL_FLOAT;
+	/**
+	 * Type of the normals in interleavedBuffer (GL_FLOAT, GL_SHORT or GL_BYTE)
+	 */
+	public int normalsType = GL10.GL_FLOAT;
+	/**
+	 * Type of the texture coordinates in interleavedBuffer (GL_FLOAT or GL_SHORT)
+	 */
+	public int texCoordsType = GL10.GL_FLOAT;
+	/**
+	 * Type of the colors in interleavedBuffer (GL_FLOAT or GL_UNSIGNED_BYTE)
+	 */
+	public int colorsType = GL10.GL_FLOAT;
+	/**
+	 * Transform of the quantized positions : translation (x, y, z) and uniform scale, null if they are not quantized
+	 */
+	public float[] verticesDequantization;
+	/**
+	 * Transform of the quantized texture coordinates : translation (u, v, w) and scale (u, v, w), null if they are not quantized
+	 */
+	public float[] texCoordsDequantization;
 	/**
 	 * Index buffer of indexes
 	 */
@@ -78,6 +136,27 @@ public class Mesh implements Serializable {
 	 * Buffer of indexes
 	 */
 	transient public ShortBuffer indexesBuffer;
+	/**
+	 * Buffer of 32 bits indexes, used instead of indexesBuffer when the mesh has more than 65536 vertices
+	 * (see GLConstants.ELEMENT_INDEX_UINT)
+	 */
+	transient public IntBuffer wideIndexesBuffer;
+	/**
+	 * Indicates if the indexes are in wideIndexesBuffer
+	 */
+	protected boolean wideIndexes = false;
+	/**
+	 * Parts of this mesh drawn with it (meshes too big for 16 bits indexes are split)
+	 */
+	protected List<Mesh> subMeshes;
+	/**
+	 * Bounds of this mesh and of its parts, computed when it is built (see MeshBuilder)
+	 */
+	protected BoundingVolume bounds;
+	/**
+	 * Indicates if this mesh waits for its upload (see LoadingManager) : it is not drawn until then
+	 */
+	transient protected volatile boolean uploadPending = false;
 	/**
 	 * Indicates if this mesh is already Buffered (see OpenGL VBO)
 	 * @return True or false
@@ -92,7 +171,7 @@ public class Mesh implements Serializable {
 	 */
 	protected boolean hasVerticesBuffer()
 	{
-		return verticesBuffer!=null;
+		return interleaved?interleavedBuffer!=null:verticesBuffer!=null;
 	}
 	/**
 	 * Indicates if this mesh has a normals buffer
@@ -101,7 +180,7 @@ public class Mesh implements Serializable {
 	protected boolean hasNormalsBuffer()
 	{
 		//return false;
-		return normalsBuffer!=null;
+		return interleaved?hasVerticesBuffer() && normalsOffset>=0:normalsBuffer!=null;
 	}
 	/**
 	 * Indicates if this mesh has a colors buffer
@@ -110,7 +189,7 @@ public class Mesh implements Serializable {
 	protected boolean hasColorsBuffer()
 	{
 		//return false;
-		return colorsBuffer!=null;
+		return interleaved?hasVerticesBuffer() && colorsOffset>=0:colorsBuffer!=null;
 	}
 	/**
 	 * Indicates if this mesh has a texture coordinates buffer
@@ -118,7 +197,7 @@ public class Mesh implements Serializable {
 	 */
 	protected boolean hasTexCoordsBuffer()
 	{
-		return texCoordsBuffer!=null;
+		return interleaved?hasVerticesBuffer() && texCoordsOffset>=0:texCoordsBuffer!=null;
 	}
 	/**
 	 * Indicates if this mesh has a indexes buffer
@@ -126,7 +205,180 @@ public class Mesh implements Serializable {
 	 */
 	protected boolean hasIndexesBuffer()
 	{
-		return indexesBuffer!=null;
+		return wideIndexes?wideIndexesBuffer!=null:indexesBuffer!=null;
+	}
+	/**
+	 * Returns the number of indexes
+	 * @return Number of indexes
+	 */
+	public int getNumIndexes()
+	{
+		if(!hasIndexesBuffer())
+		{
+			return 0;
+		}
+		return wideIndexes?wideIndexesBuffer.capacity():indexesBuffer.capacity();
+	}
+	/**
+	 * Sets 32 bits indexes. They are used instead of indexesBuffer
+	 * @param buffer Indexes
+	 */
+	public void setWideIndexesBuffer(IntBuffer buffer)
+	{
+		wideIndexesBuffer = buffer;
+		indexesBuffer = null;
+		wideIndexes = true;
+	}
+	/**
+	 * Sets interleaved attributes. They are used instead of the buffers of vertices, normals, colors and texture coordinates
+	 * The position of each vertex is at its start
+	 * @param buffer Attributes
+	 * @param stride Size of a vertex in bytes
+	 * @param normalsOffset Offset of the normal in bytes, -1 if there is no normal
+	 * @param texCoordsOffset Offset of the texture coordinates in bytes, -1 if there are no texture coordinates
+	 * @param colorsOffset Offset of the color in bytes, -1 if there is no color
+	 */
+	public void setInterleavedBuffer(ByteBuffer buffer, int stride, int normalsOffset, int texCoordsOffset, int colorsOffset)
+	{
+		interleavedBuffer = buffer;
+		verticesBuffer = null;
+		normalsBuffer = null;
+		colorsBuffer = null;
+		texCoordsBuffer = null;
+		this.stride = stride;
+		this.normalsOffset = normalsOffset;
+		this.texCoordsOffset = texCoordsOffset;
+		this.colorsOffset = colorsOffset;
+		interleaved = true;
+	}
+	/**
+	 * Indicates if the attributes are interleaved (see setInterleavedBuffer())
+	 * @return True or false
+	 */
+	public boolean isInterleaved()
+	{
+		return interleaved;
+	}
+	/**
+	 * Reverses the bytes of each value of the interleaved attributes, written in the other byte order
+	 * The buffer must be writable
+	 */
+	protected void reverseInterleavedBytes()
+	{
+		int count = interleavedBuffer.capacity() / stride;
+		int start;
+		for(int i=0; i<count; i++)
+		{
+			start = i * stride;
+			reverseBytes(start, verticesType, 3);
+			if(normalsOffset>=0)
+			{
+				reverseBytes(start + normalsOffset, normalsType, 3);
+			}
+			if(texCoordsOffset>=0)
+			{
+				reverseBytes(start + texCoordsOffset, texCoordsType, texCoordsSize);
+			}
+			if(colorsOffset>=0)
+			{
+				reverseBytes(start + colorsOffset, colorsType, 4);
+			}
+		}
+	}
+	/**
+	 * Reverses the bytes of some values of the interleaved attributes
+	 * @param position Position of the first value in bytes
+	 * @param type Type of the values
+	 * @param count Number of values
+	 */
+	private void reverseBytes(int position, int type, int count)
+	{
+		int size = GLConstants.getTypeSize(type);
+		byte value;
+		for(int i=0; i<count; i++, position+=size)
+		{
+			for(int j=0; j<size/2; j++)
+			{
+				value = interleavedBuffer.get(position+j);
+				interleavedBuffer.put(position+j, interleavedBuffer.get(position+size-1-j));
+				interleavedBuffer.put(position+size-1-j, value);
+			}
+		}
+	}
+	/**
+	 * Adds a part to this mesh. It is drawn with this mesh
+	 * @param mesh Part
+	 */
+	public void addSubMesh(Mesh mesh)
+	{
+		if(subMeshes == null)
+		{
+			subMeshes = new ArrayList<Mesh>();
+		}
+		subMeshes.add(mesh);
+		if(mesh.bounds != null)
+		{
+			if(bounds == null)
+			{
+				bounds = new BoundingVolume();
+			}
+			bounds.include(mesh.bounds);
+		}
+	}
+	/**
+	 * Returns the bounds of this mesh and of its parts
+	 * @return Bounds, null if they are unknown
+	 */
+	public BoundingVolume getBounds()
+	{
+		return bounds;
+	}
+	/**
+	 * Sets the bounds of this mesh and of its parts
+	 * @param bounds Bounds
+	 */
+	public void setBounds(BoundingVolume bounds)
+	{
+		this.bounds = bounds;
+	}
+	/**
+	 * Returns the parts of this mesh
+	 * @return Parts, null if there is none
+	 */
+	public List<Mesh> getSubMeshes()
+	{
+		return subMeshes;
+	}
+	/**
+	 * Indicates if this mesh waits for its upload
+	 * @return True or false
+	 */
+	public boolean isUploadPending()
+	{
+		return uploadPending;
+	}
+	/**
+	 * Defines if this mesh waits for its upload. It is not drawn until then
+	 * @param uploadPending True or false
+	 */
+	public void setUploadPending(boolean uploadPending)
+	{
+		this.uploadPending = uploadPending;
+	}
+	/**
+	 * Forgets the buffers of this mesh and of its parts, which are lost with the OpenGL context
+	 * They are sent again when the mesh is bufferized
+	 */
+	public void invalidate()
+	{
+		verticesBufferIndex = normalsBufferIndex = colorsBufferIndex = texCoordsBufferIndex = indexesBufferIndex = 0;
+		if(subMeshes != null)
+		{
+			for(final Mesh mesh : subMeshes)
+			{
+				mesh.invalidate();
+			}
+		}
 	}
 	/**
 	 * Indicates if this mesh has a material
@@ -134,7 +386,7 @@ public class Mesh implements Serializable {
 	 */
 	protected boolean hasMaterial()
 	{
-		return currentMaterial != null;
+		return getCurrentMaterial() != null;
 	}
 	/**
 	 * Indicates if this mesh has a texture
@@ -142,7 +394,8 @@ public class Mesh implements Serializable {
 	 */
 	protected boolean hasTexture()
 	{
-		return this.currentMaterial != null && this.getCurrentMaterial() != null && this.getCurrentMaterial().textureBitmap != null;
+		Material material = getCurrentMaterial();
+		return material != null && material.hasTexture();
 	}
 	/**
 	 * Returns a string containing a concise, human-readable description of this object.
@@ -171,9 +424,17 @@ public class Mesh implements Serializable {
 		{
 			txt+=" C=\""+colorsBuffer.limit()+"\"";
 		}
-		if(indexesBuffer!=null && indexesBuffer.limit()>0)
+		if(interleavedBuffer!=null && stride>0)
+		{
+			txt+=" IV=\""+interleavedBuffer.capacity()/stride+"\" stride=\""+stride+"\"";
+		}
+		if(getNumIndexes()>0)
+		{
+			txt+=" I=\""+getNumIndexes()+"\"";
+		}
+		if(subMeshes != null)
 		{
-			txt+=" I=\""+indexesBuffer.limit()+"\"";
+			txt+=" parts=\""+(subMeshes.size()+1)+"\"";
 		}
 		if(currentMaterial != null)
 		{
@@ -196,6 +457,15 @@ public class Mesh implements Serializable {
 		Buffer.serialize(colorsBuffer, out);
 		Buffer.serialize(texCoordsBuffer, out);
 		Buffer.serialize(indexesBuffer, out);
+		if(wideIndexes)
+		{
+			Buffer.serialize(wideIndexesBuffer, out);
+		}
+		if(interleaved)
+		{
+			out.writeBoolean(ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN);
+			Buffer.serialize(interleavedBuffer, out);
+		}
 	}
 	/**
 	 * Deserializes the object
@@ -210,6 +480,19 @@ public class Mesh implements Serializable {
 		colorsBuffer = Buffer.deserializeFloatBuffer(in);
 		texCoordsBuffer = Buffer.deserializeFloatBuffer(in);
 		indexesBuffer = Buffer.deserializeShortBuffer(in);
+		if(wideIndexes)
+		{
+			wideIndexesBuffer = Buffer.deserializeIntBuffer(in);
+		}
+		if(interleaved)
+		{
+			boolean bigEndian = in.readBoolean();
+			interleavedBuffer = Buffer.deserializeByteBuffer(in);
+			if(interleavedBuffer != null && bigEndian != (ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN))
+			{
+				reverseInterleavedBytes();
+			}
+		}
 	}
 	/**
 	 * Constructor
@@ -224,7 +507,12 @@ public class Mesh implements Serializable {
 	 */
 	public Material getCurrentMaterial()
 	{
-		return Material.getMaterial(currentMaterial);
+		if(material == null && currentMaterial != null)
+		{
+			//after a deserialization, the library is filled after the meshes
+			material = Material.getMaterial(currentMaterial);
+		}
+		return material;
 	}
 	/**
 	 * Adds a new material to the mesh
@@ -250,6 +538,7 @@ public class Mesh implements Serializable {
 		if(addMaterial(material))
 		{
 			currentMaterial = material;
+			this.material = Material.getMaterial(material);
 			return true;
 		}
 		return false;
@@ -273,7 +562,12 @@ public class Mesh implements Serializable {
 	 */
 	public void draw()
 	{
+		if(uploadPending)
+		{
+			return;
+		}
 		GL11 gl = Scene.gl;
+		Material material = getCurrentMaterial();
 		
 		gl.glPushMatrix();
 		if(this.hasVerticesBuffer())
@@ -298,88 +592,139 @@ public class Mesh implements Serializable {
 		if(this.hasMaterial())
 		{
 			
-			if(this.getCurrentMaterial().hasDiffuseColor())
+			if(material.hasDiffuseColor())
 			{
 			    
-				gl.glMaterialfv(GL10.GL_FRONT_AND_BACK, GL10.GL_DIFFUSE, this.getCurrentMaterial().diffuseColor.toFloatBuffer());
+				gl.glMaterialfv(GL10.GL_FRONT_AND_BACK, GL10.GL_DIFFUSE, material.diffuseColor.toFloatBuffer());
 			}
-			if(this.getCurrentMaterial().hasAmbientColor())
+			if(material.hasAmbientColor())
 			{
-				gl.glMaterialfv(GL10.GL_FRONT_AND_BACK, GL10.GL_AMBIENT, this.getCurrentMaterial().ambientColor.toFloatBuffer());
+				gl.glMaterialfv(GL10.GL_FRONT_AND_BACK, GL10.GL_AMBIENT, material.ambientColor.toFloatBuffer());
 			}
-			if(this.getCurrentMaterial().hasSpecularColor())
+			if(material.hasSpecularColor())
 			{	 
-				gl.glMaterialfv(GL10.GL_FRONT_AND_BACK, GL10.GL_SPECULAR, this.getCurrentMaterial().specularColor.toFloatBuffer());
+				gl.glMaterialfv(GL10.GL_FRONT_AND_BACK, GL10.GL_SPECULAR, material.specularColor.toFloatBuffer());
 			}
 			
-			gl.glMaterialfv(GL10.GL_FRONT_AND_BACK, GL10.GL_SHININESS, Buffer.toFloatBuffer(this.getCurrentMaterial().shininess));
+			gl.glMaterialfv(GL10.GL_FRONT_AND_BACK, GL10.GL_SHININESS, Buffer.toFloatBuffer(material.shininess));
 			if(this.hasMaterial())
 			{
 			//	gl.glEnable(GL10.GL_COLOR_MATERIAL);
 			}
     	    	    	    
 		}
+		this.beginDequantization(gl);
 		if(GLConstants.USE_VBO)
 		{
 			bufferize();
 			gl.glBindBuffer(GL11.GL_ARRAY_BUFFER, this.verticesBufferIndex);
-			gl.glVertexPointer(3, GL11.GL_FLOAT, 0, 0);
-			
-		     // enable non-mandatory arrays if found
-			if(this.hasColorsBuffer()) {
-				gl.glBindBuffer(GL11.GL_ARRAY_BUFFER, this.colorsBufferIndex);
-				gl.glColorPointer(4, GL11.GL_FLOAT, 0, 0);
-				
-			}
-			if(this.hasNormalsBuffer()) {
-				gl.glBindBuffer(GL11.GL_ARRAY_BUFFER, this.normalsBufferIndex);
-				gl.glNormalPointer(GL11.GL_FLOAT, 0, 0);
-			}
-			if(this.hasTexCoordsBuffer() && this.hasTexture()) {
-				if(!this.getCurrentMaterial().textureSent)
+			if(this.interleaved)
+			{
+				//all the attributes are in the bound buffer
+				gl.glVertexPointer(3, this.verticesType, this.stride, 0);
+				if(this.hasColorsBuffer())
+				{
+					gl.glColorPointer(4, this.colorsType, this.stride, this.colorsOffset);
+				}
+				if(this.hasNormalsBuffer())
 				{
-					this.getCurrentMaterial().sendTexture();
+					gl.glNormalPointer(this.normalsType, this.stride, this.normalsOffset);
 				}
+				if(this.hasTexCoordsBuffer() && this.hasTexture())
+				{
+					gl.glTexCoordPointer(this.texCoordsSize, this.texCoordsType, this.stride, this.texCoordsOffset);
+					material.bindTexture();
+				}
+			}else
+			{
+				gl.glVertexPointer(3, GL11.GL_FLOAT, 0, 0);
+			
+			     // enable non-mandatory arrays if found
+				if(this.hasColorsBuffer()) {
+					gl.glBindBuffer(GL11.GL_ARRAY_BUFFER, this.colorsBufferIndex);
+					gl.glColorPointer(4, GL11.GL_FLOAT, 0, 0);
 				
-				gl.glBindBuffer(GL11.GL_ARRAY_BUFFER, this.texCoordsBufferIndex);
-				gl.glTexCoordPointer(this.texCoordsSize, GL11.GL_FLOAT, 0, 0);
-				gl.glBindTexture(GL10.GL_TEXTURE_2D, this.getCurrentMaterial().textureIndex);
+				}
+				if(this.hasNormalsBuffer()) {
+					gl.glBindBuffer(GL11.GL_ARRAY_BUFFER, this.normalsBufferIndex);
+					gl.glNormalPointer(GL11.GL_FLOAT, 0, 0);
+				}
+				if(this.hasTexCoordsBuffer() && this.hasTexture()) {
+					gl.glBindBuffer(GL11.GL_ARRAY_BUFFER, this.texCoordsBufferIndex);
+					gl.glTexCoordPointer(this.texCoordsSize, GL11.GL_FLOAT, 0, 0);
+					material.bindTexture();
 				
+				}
 			}
 			gl.glBindBuffer(GL11.GL_ELEMENT_ARRAY_BUFFER, this.indexesBufferIndex);
 			
-			gl.glDrawElements(GL10.GL_TRIANGLES, this.indexesBuffer.capacity(), GL11.GL_UNSIGNED_SHORT, 0);
+			gl.glDrawElements(GL10.GL_TRIANGLES, this.getNumIndexes(), this.wideIndexes?GLES20.GL_UNSIGNED_INT:GL11.GL_UNSIGNED_SHORT, 0);
 		     
 			gl.glBindBuffer(GL11.GL_ARRAY_BUFFER, 0);
 			gl.glBindBuffer(GL11.GL_ELEMENT_ARRAY_BUFFER, 0);
 		}else
 		{
-			if(this.hasVerticesBuffer())
+			if(this.interleaved)
 			{
-				gl.glVertexPointer(3, GL10.GL_FLOAT, 0, this.verticesBuffer);
-			}
-			if(this.hasNormalsBuffer()) 
-			{
-				gl.glNormalPointer(GL11.GL_FLOAT, 0, this.normalsBuffer);
-			}
-			if(this.hasColorsBuffer())
+				//the pointers start at the position of the buffer
+				if(this.hasVerticesBuffer())
+				{
+					this.interleavedBuffer.position(0);
+					gl.glVertexPointer(3, this.verticesType, this.stride, this.interleavedBuffer);
+				}
+				if(this.hasNormalsBuffer())
+				{
+					this.interleavedBuffer.position(this.normalsOffset);
+					gl.glNormalPointer(this.normalsType, this.stride, this.interleavedBuffer);
+				}
+				if(this.hasColorsBuffer())
+				{
+					this.interleavedBuffer.position(this.colorsOffset);
+					gl.glColorPointer(4, this.colorsType, this.stride, this.interleavedBuffer);
+				}
+				if(this.hasTexCoordsBuffer() && this.hasTexture())
+				{
+					this.interleavedBuffer.position(this.texCoordsOffset);
+					gl.glTexCoordPointer(this.texCoordsSize, this.texCoordsType, this.stride, this.interleavedBuffer);
+					material.bindTexture();
+				}
+				if(this.hasVerticesBuffer())
+				{
+					this.interleavedBuffer.position(0);
+				}
+			}else
 			{
-				gl.glColorPointer(4, GL10.GL_FLOAT, 0, this.colorsBuffer);
-			}
+				if(this.hasVerticesBuffer())
+				{
+					gl.glVertexPointer(3, GL10.GL_FLOAT, 0, this.verticesBuffer);
+				}
+				if(this.hasNormalsBuffer()) 
+				{
+					gl.glNormalPointer(GL11.GL_FLOAT, 0, this.normalsBuffer);
+				}
+				if(this.hasColorsBuffer())
+				{
+					gl.glColorPointer(4, GL10.GL_FLOAT, 0, this.colorsBuffer);
+				}
 			
-			if(this.hasTexCoordsBuffer() && this.hasTexture())
-			{
-				gl.glTexCoordPointer(this.texCoordsSize, GL10.GL_FLOAT, 0, this.texCoordsBuffer);
-				if(!this.getCurrentMaterial().textureSent)
+				if(this.hasTexCoordsBuffer() && this.hasTexture())
 				{
-					this.getCurrentMaterial().sendTexture();
+					gl.glTexCoordPointer(this.texCoordsSize, GL10.GL_FLOAT, 0, this.texCoordsBuffer);
+					material.bindTexture();
 				}
-					gl.glBindTexture(GL10.GL_TEXTURE_2D, this.getCurrentMaterial().textureIndex);
 			}
-		
-			gl.glDrawElements(GL10.GL_TRIANGLES, this.indexesBuffer.capacity(), 
-					GL10.GL_UNSIGNED_SHORT, this.indexesBuffer);
+			
+			if(this.wideIndexes)
+			{
+				gl.glDrawElements(GL10.GL_TRIANGLES, this.getNumIndexes(), 
+						GLES20.GL_UNSIGNED_INT, this.wideIndexesBuffer);
+			}else
+			{
+				gl.glDrawElements(GL10.GL_TRIANGLES, this.getNumIndexes(), 
+						GL10.GL_UNSIGNED_SHORT, this.indexesBuffer);
+			}
 		}	
+		this.endDequantization(gl);
 		if(this.hasMaterial())
 		{
 		//	gl.glDisable(GL10.GL_COLOR_MATERIAL);
@@ -402,13 +747,68 @@ public class Mesh implements Serializable {
 			gl.glDisable(GL10.GL_TEXTURE_2D);
 		}
 		
+		if(subMeshes != null)
+		{
+			for(final Mesh mesh : subMeshes)
+			{
+				mesh.draw();
+			}
+		}
 		gl.glPopMatrix();
 	}
 	
+	/**
+	 * Sets the transforms that dequantize the positions (modelview matrix) and the texture coordinates (texture matrix)
+	 * @param gl GL
+	 */
+	private void beginDequantization(GL11 gl)
+	{
+		if(this.verticesDequantization != null)
+		{
+			gl.glPushMatrix();
+			gl.glTranslatef(this.verticesDequantization[0], this.verticesDequantization[1], this.verticesDequantization[2]);
+			gl.glScalef(this.verticesDequantization[3], this.verticesDequantization[3], this.verticesDequantization[3]);
+			if(this.hasNormalsBuffer())
+			{
+				//the scale is uniform : the normals only have to be rescaled
+				gl.glEnable(GL10.GL_RESCALE_NORMAL);
+			}
+		}
+		if(this.texCoordsDequantization != null && this.hasTexCoordsBuffer() && this.hasTexture())
+		{
+			gl.glMatrixMode(GL10.GL_TEXTURE);
+			gl.glPushMatrix();
+			gl.glTranslatef(this.texCoordsDequantization[0], this.texCoordsDequantization[1], this.texCoordsDequantization[2]);
+			gl.glScalef(this.texCoordsDequantization[3], this.texCoordsDequantization[4], this.texCoordsDequantization[5]);
+			gl.glMatrixMode(GL10.GL_MODELVIEW);
+		}
+	}
+	/**
+	 * Restores the transforms changed by beginDequantization()
+	 * @param gl GL
+	 */
+	private void endDequantization(GL11 gl)
+	{
+		if(this.verticesDequantization != null)
+		{
+			if(this.hasNormalsBuffer())
+			{
+				gl.glDisable(GL10.GL_RESCALE_NORMAL);
+			}
+			gl.glPopMatrix();
+		}
+		if(this.texCoordsDequantization != null && this.hasTexCoordsBuffer() && this.hasTexture())
+		{
+			gl.glMatrixMode(GL10.GL_TEXTURE);
+			gl.glPopMatrix();
+			gl.glMatrixMode(GL10.GL_MODELVIEW);
+		}
+	}
 	/**
 	 * Bufferizes this mesh if it is not already 
+	 * Must be called by the render thread
 	 */
-	private void bufferize()
+	public void bufferize()
 	{
 		GL11 gl = Scene.gl;
 		
@@ -423,11 +823,19 @@ public class Mesh implements Serializable {
 				gl.glGenBuffers(1, buffer, 0);
 				this.verticesBufferIndex = buffer[0];
 				gl.glBindBuffer(GL11.GL_ARRAY_BUFFER, this.verticesBufferIndex);
-				this.verticesBuffer.rewind();
-				gl.glBufferData(GL11.GL_ARRAY_BUFFER,this.verticesBuffer.capacity()*Buffer.FLOAT_SIZE, this.verticesBuffer, GL11.GL_STATIC_DRAW);
+				if(this.interleaved)
+				{
+					//one buffer for all the attributes
+					this.interleavedBuffer.rewind();
+					gl.glBufferData(GL11.GL_ARRAY_BUFFER,this.interleavedBuffer.capacity(), this.interleavedBuffer, GL11.GL_STATIC_DRAW);
+				}else
+				{
+					this.verticesBuffer.rewind();
+					gl.glBufferData(GL11.GL_ARRAY_BUFFER,this.verticesBuffer.capacity()*Buffer.FLOAT_SIZE, this.verticesBuffer, GL11.GL_STATIC_DRAW);
+				}
 			}
 			//normals
-			if(this.hasNormalsBuffer())
+			if(!this.interleaved && this.hasNormalsBuffer())
 			{
 			//	Log.verbose("Creating normals buffer");
 				gl.glGenBuffers(1, buffer, 0);
@@ -437,7 +845,7 @@ public class Mesh implements Serializable {
 				gl.glBufferData(GL11.GL_ARRAY_BUFFER,this.normalsBuffer.capacity()*Buffer.FLOAT_SIZE, this.normalsBuffer, GL11.GL_STATIC_DRAW);
 			}
 			//colors
-			if(this.hasColorsBuffer())
+			if(!this.interleaved && this.hasColorsBuffer())
 			{
 				//Log.verbose("Creating colors buffer");
 				gl.glGenBuffers(1, buffer, 0);
@@ -448,7 +856,7 @@ public class Mesh implements Serializable {
 				gl.glBufferData(GL11.GL_ARRAY_BUFFER,this.colorsBuffer.capacity()*Buffer.FLOAT_SIZE, this.colorsBuffer, GL11.GL_STATIC_DRAW);
 			}
 			//texture coordinates
-			if(this.hasTexCoordsBuffer())
+			if(!this.interleaved && this.hasTexCoordsBuffer())
 			{
 			//	Log.verbose("Creating texture coordinates buffer");
 				gl.glGenBuffers(1, buffer, 0);
@@ -465,9 +873,16 @@ public class Mesh implements Serializable {
 				gl.glGenBuffers(1, buffer, 0);
 				this.indexesBufferIndex = buffer[0];
 				gl.glBindBuffer(GL11.GL_ELEMENT_ARRAY_BUFFER, this.indexesBufferIndex);
-				this.indexesBuffer.rewind();
-				//TODO : maybe colors will be a CharVuffer so will use this.colorsBuffer.capacity()*Buffer.CHAR_SIZE instead
-				gl.glBufferData(GL11.GL_ELEMENT_ARRAY_BUFFER,this.indexesBuffer.capacity()*Buffer.SHORT_SIZE, this.indexesBuffer, GL11.GL_STATIC_DRAW);
+				if(this.wideIndexes)
+				{
+					this.wideIndexesBuffer.rewind();
+					gl.glBufferData(GL11.GL_ELEMENT_ARRAY_BUFFER,this.wideIndexesBuffer.capacity()*Buffer.INT_SIZE, this.wideIndexesBuffer, GL11.GL_STATIC_DRAW);
+				}else
+				{
+					this.indexesBuffer.rewind();
+					//TODO : maybe colors will be a CharVuffer so will use this.colorsBuffer.capacity()*Buffer.CHAR_SIZE instead
+					gl.glBufferData(GL11.GL_ELEMENT_ARRAY_BUFFER,this.indexesBuffer.capacity()*Buffer.SHORT_SIZE, this.indexesBuffer, GL11.GL_STATIC_DRAW);
+				}
 				
 				
 			}
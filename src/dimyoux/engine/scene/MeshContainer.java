@@ -0,0 +1,840 @@
+package dimyoux.engine.scene;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.microedition.khronos.opengles.GL10;
+
+import dimyoux.engine.managers.FileManager;
+import dimyoux.engine.utils.Buffer;
+import dimyoux.engine.utils.Log;
+import dimyoux.engine.utils.math.BoundingVolume;
+import dimyoux.engine.utils.parsers.Material;
+/**
+ * Binary container of a node tree and its meshes
+ * The file is memory-mapped when it is loaded : the buffers of the meshes are slices of the mapping,
+ * they are sent to OpenGL without being copied or decoded (they are read-only).
+ *
+ * Layout (values in the byte order of the header) :
+ * - header : magic "D3DM", byte order (0 big endian, 1 little endian), 3 bytes of padding, version,
+ *   offset and length of the materials (java serialization of the used materials), fingerprint of the source
+ * - node : x, y, z, angleX, angleY, angleZ, mesh (0 or 1) [mesh], number of children [nodes]
+ * - mesh : name, material, texCoordsSize, flags (1 : 32 bits indexes, 2 : interleaved attributes, 4 : quantized attributes,
+ *   8 : bounds), [bounds : minimum, maximum, center of the sphere, radius (10 floats)], vertices, normals, colors, texture coordinates (interleaved : stride, offsets of the normals, texture coordinates and colors,
+ *   [quantized : types of the positions, normals, texture coordinates and colors, dequantization of the positions (4 floats)
+ *   and of the texture coordinates (6 floats, -1 if none)], attributes), indexes, number of parts [meshes]
+ * - string : length in bytes (-1 if null), UTF-8 bytes, padding to 4 bytes
+ * - block : number of values (-1 if none), padding to BLOCK_ALIGNMENT, values
+ */
+public class MeshContainer {
+	/**
+	 * Magic number
+	 */
+	private static final byte[] MAGIC = {'D', '3', 'D', 'M'};
+	/**
+	 * Version of the format
+	 */
+	public static final int VERSION = 1;
+	/**
+	 * Alignment of the blocks in the file
+	 */
+	private static final int BLOCK_ALIGNMENT = 16;
+	/**
+	 * Size of the header
+	 */
+	private static final int HEADER_SIZE = 28;
+	/**
+	 * Flag : the mesh uses 32 bits indexes
+	 */
+	private static final int FLAG_WIDE_INDEXES = 1;
+	/**
+	 * Flag : the attributes of the mesh are interleaved
+	 */
+	private static final int FLAG_INTERLEAVED = 2;
+	/**
+	 * Flag : the interleaved attributes of the mesh are quantized
+	 */
+	private static final int FLAG_QUANTIZED = 4;
+	/**
+	 * Flag : the bounds of the mesh follow its flags
+	 */
+	private static final int FLAG_BOUNDS = 8;
+	/**
+	 * Loads a container stored in the application's files directory (see FileManager.getStoredFile())
+	 * @param name File's name
+	 * @return Root node, null if the file doesn't exist or is not valid
+	 */
+	public static Node load(String name)
+	{
+		return load(name, 0);
+	}
+	/**
+	 * Loads a container stored in the application's files directory (see FileManager.getStoredFile())
+	 * @param name File's name
+	 * @param source Fingerprint of the source of the container (see FileManager.getFingerprint()), 0 if it isn't checked
+	 * @return Root node, null if the file doesn't exist, is not valid or was saved from another source
+	 */
+	public static Node load(String name, long source)
+	{
+		File file = FileManager.getInstance().getStoredFile(name);
+		if(file == null)
+		{
+			return null;
+		}
+		return load(file, source);
+	}
+	/**
+	 * Loads a container. The file is mapped in memory
+	 * @param file File
+	 * @return Root node, null if the file is not valid
+	 */
+	public static Node load(File file)
+	{
+		return load(file, 0);
+	}
+	/**
+	 * Loads a container. The file is mapped in memory
+	 * @param file File
+	 * @param source Fingerprint of the source of the container (see FileManager.getFingerprint()), 0 if it isn't checked
+	 * @return Root node, null if the file is not valid or was saved from another source
+	 */
+	@SuppressWarnings("unchecked")
+	public static Node load(File file, long source)
+	{
+		try
+		{
+			MappedByteBuffer map = FileManager.getInstance().mapFile(file);
+			boolean valid = map.remaining() >= HEADER_SIZE;
+			for(int i=0; valid && i<MAGIC.length; i++)
+			{
+				valid = map.get(i) == MAGIC[i];
+			}
+			if(!valid)
+			{
+				throw new IOException(file.getPath()+" is not a mesh container");
+			}
+			map.order(map.get(MAGIC.length) == 0?ByteOrder.BIG_ENDIAN:ByteOrder.LITTLE_ENDIAN);
+			map.position(MAGIC.length+4);
+			int version = map.getInt();
+			if(version != VERSION)
+			{
+				throw new IOException(file.getPath()+" : version "+version+" is not supported");
+			}
+			int materialsOffset = map.getInt();
+			int materialsLength = map.getInt();
+			long fingerprint = map.getLong();
+			if(source != 0 && fingerprint != source)
+			{
+				//the source has changed since the container was saved
+				Log.verbose("Mesh container "+file.getPath()+" is out of date");
+				return null;
+			}
+			if(materialsLength > 0)
+			{
+				byte[] materials = new byte[materialsLength];
+				ByteBuffer slice = map.duplicate();
+				slice.position(materialsOffset);
+				slice.get(materials);
+				ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(materials));
+				for(final Material material : ((Map<String, Material>)in.readObject()).values())
+				{
+					Material.addMaterial(material);
+				}
+				in.close();
+			}
+			Node node = readNode(map);
+			Log.verbose("Mesh container loaded : "+file.getPath());
+			return node;
+		}catch(Exception e)
+		{
+			Log.error("Error while loading mesh container "+file.getPath());
+			Log.error(e);
+		}
+		return null;
+	}
+	/**
+	 * Saves a node tree and its meshes
+	 * The file is written in the native byte order
+	 * @param file File
+	 * @param node Root node
+	 * @return True if the file is written
+	 */
+	public static boolean save(File file, Node node)
+	{
+		return save(file, node, 0);
+	}
+	/**
+	 * Saves a node tree and its meshes
+	 * The file is written in the native byte order
+	 * @param file File
+	 * @param node Root node
+	 * @param source Fingerprint of the source of the container (see FileManager.getFingerprint()), 0 if unknown
+	 * @return True if the file is written
+	 */
+	public static boolean save(File file, Node node, long source)
+	{
+		try
+		{
+			Map<String, Material> materials = new HashMap<String, Material>();
+			int size = measureNode(node, HEADER_SIZE, materials);
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ObjectOutputStream out = new ObjectOutputStream(bytes);
+			out.writeObject(materials);
+			out.close();
+			byte[] serializedMaterials = bytes.toByteArray();
+
+			RandomAccessFile access = new RandomAccessFile(file, "rw");
+			try
+			{
+				access.setLength(size + serializedMaterials.length);
+				FileChannel channel = access.getChannel();
+				MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_WRITE, 0, size + serializedMaterials.length);
+				map.order(ByteOrder.nativeOrder());
+				map.put(MAGIC);
+				map.put((byte)(ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN?0:1));
+				map.put((byte)0).put((byte)0).put((byte)0);
+				map.putInt(VERSION);
+				map.putInt(size);
+				map.putInt(serializedMaterials.length);
+				map.putLong(source);
+				writeNode(map, node);
+				map.put(serializedMaterials);
+				map.force();
+			}
+			finally
+			{
+				access.close();
+			}
+			Log.verbose("Mesh container saved : "+file.getPath()+" ("+(size + serializedMaterials.length)+" bytes)");
+			return true;
+		}catch(Exception e)
+		{
+			Log.error("Error while saving mesh container "+file.getPath());
+			Log.error(e);
+		}
+		return false;
+	}
+	/**
+	 * Reads a node and its children
+	 * @param map Content
+	 * @return Node
+	 * @throws IOException Invalid content
+	 */
+	private static Node readNode(ByteBuffer map) throws IOException
+	{
+		Node node = new Node();
+		node.x = map.getFloat();
+		node.y = map.getFloat();
+		node.z = map.getFloat();
+		node.angleX = map.getFloat();
+		node.angleY = map.getFloat();
+		node.angleZ = map.getFloat();
+		if(map.getInt() != 0)
+		{
+			Entity entity = new Entity();
+			entity.setMesh(readMesh(map));
+			node.attachEntity(entity);
+		}
+		int count = map.getInt();
+		for(int i=0; i<count; i++)
+		{
+			node.attachChildNode(readNode(map));
+		}
+		return node;
+	}
+	/**
+	 * Reads a mesh and its parts
+	 * @param map Content
+	 * @return Mesh
+	 * @throws IOException Invalid content
+	 */
+	private static Mesh readMesh(ByteBuffer map) throws IOException
+	{
+		Mesh mesh = new Mesh();
+		mesh.name = readString(map);
+		String material = readString(map);
+		if(material != null)
+		{
+			mesh.setCurrentMaterial(material);
+		}
+		mesh.texCoordsSize = map.getInt();
+		int flags = map.getInt();
+		if((flags & FLAG_BOUNDS) != 0)
+		{
+			mesh.setBounds(readBounds(map));
+		}
+		ByteBuffer block;
+		if((flags & FLAG_INTERLEAVED) != 0)
+		{
+			int stride = map.getInt();
+			int normalsOffset = map.getInt();
+			int texCoordsOffset = map.getInt();
+			int colorsOffset = map.getInt();
+			if((flags & FLAG_QUANTIZED) != 0)
+			{
+				mesh.verticesType = map.getInt();
+				mesh.normalsType = map.getInt();
+				mesh.texCoordsType = map.getInt();
+				mesh.colorsType = map.getInt();
+				mesh.verticesDequantization = readFloats(map, 4);
+				mesh.texCoordsDequantization = readFloats(map, 6);
+			}
+			if((block = readBlock(map, Buffer.BYTE_SIZE)) != null)
+			{
+				mesh.setInterleavedBuffer(toByteBuffer(block), stride, normalsOffset, texCoordsOffset, colorsOffset);
+				if(block.order() != ByteOrder.nativeOrder())
+				{
+					mesh.reverseInterleavedBytes();
+				}
+			}
+		}else
+		{
+			if((block = readBlock(map, Buffer.FLOAT_SIZE)) != null)
+			{
+				mesh.verticesBuffer = toFloatBuffer(block);
+			}
+			if((block = readBlock(map, Buffer.FLOAT_SIZE)) != null)
+			{
+				mesh.normalsBuffer = toFloatBuffer(block);
+			}
+			if((block = readBlock(map, Buffer.FLOAT_SIZE)) != null)
+			{
+				mesh.colorsBuffer = toFloatBuffer(block);
+			}
+			if((block = readBlock(map, Buffer.FLOAT_SIZE)) != null)
+			{
+				mesh.texCoordsBuffer = toFloatBuffer(block);
+			}
+		}
+		if((flags & FLAG_WIDE_INDEXES) != 0)
+		{
+			if((block = readBlock(map, Buffer.INT_SIZE)) != null)
+			{
+				mesh.setWideIndexesBuffer(toIntBuffer(block));
+			}
+		}else
+		if((block = readBlock(map, Buffer.SHORT_SIZE)) != null)
+		{
+			mesh.indexesBuffer = toShortBuffer(block);
+		}
+		int count = map.getInt();
+		for(int i=0; i<count; i++)
+		{
+			mesh.addSubMesh(readMesh(map));
+		}
+		return mesh;
+	}
+	/**
+	 * Reads a block
+	 * @param map Content
+	 * @param elementSize Size of a value
+	 * @return Slice of the content, null if there is no block
+	 * @throws IOException Invalid content
+	 */
+	private static ByteBuffer readBlock(ByteBuffer map, int elementSize) throws IOException
+	{
+		int count = map.getInt();
+		if(count < 0)
+		{
+			return null;
+		}
+		int start = align(map.position(), BLOCK_ALIGNMENT);
+		int end = start + count * elementSize;
+		if(end > map.limit())
+		{
+			throw new IOException("Truncated mesh container");
+		}
+		ByteBuffer slice = map.duplicate();
+		slice.limit(end);
+		slice.position(start);
+		map.position(end);
+		return slice.slice().order(map.order());
+	}
+	/**
+	 * Reads bounds
+	 * @param map Content
+	 * @return Bounds
+	 */
+	private static BoundingVolume readBounds(ByteBuffer map)
+	{
+		BoundingVolume bounds = new BoundingVolume();
+		bounds.minX = map.getFloat();
+		bounds.minY = map.getFloat();
+		bounds.minZ = map.getFloat();
+		bounds.maxX = map.getFloat();
+		bounds.maxY = map.getFloat();
+		bounds.maxZ = map.getFloat();
+		bounds.centerX = map.getFloat();
+		bounds.centerY = map.getFloat();
+		bounds.centerZ = map.getFloat();
+		bounds.radius = map.getFloat();
+		return bounds;
+	}
+	/**
+	 * Reads some floats
+	 * @param map Content
+	 * @param count Number of floats
+	 * @return Floats, null if there are none
+	 */
+	private static float[] readFloats(ByteBuffer map, int count)
+	{
+		if(map.getInt() < 0)
+		{
+			return null;
+		}
+		float[] values = new float[count];
+		for(int i=0; i<count; i++)
+		{
+			values[i] = map.getFloat();
+		}
+		return values;
+	}
+	/**
+	 * Reads a string
+	 * @param map Content
+	 * @return String
+	 * @throws IOException Invalid content
+	 */
+	private static String readString(ByteBuffer map) throws IOException
+	{
+		int length = map.getInt();
+		if(length < 0)
+		{
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		map.get(bytes);
+		map.position(align(map.position(), 4));
+		return new String(bytes, "UTF-8");
+	}
+	/**
+	 * Views a block as a ByteBuffer in the native byte order. The block is copied if its byte order is not the native one
+	 * (its values must then be reversed)
+	 * @param block Block
+	 * @return ByteBuffer
+	 */
+	private static ByteBuffer toByteBuffer(ByteBuffer block)
+	{
+		if(block.order() != ByteOrder.nativeOrder())
+		{
+			ByteBuffer copy = Buffer.createByteBuffer(block.capacity());
+			copy.put(block.duplicate());
+			copy.rewind();
+			return copy;
+		}
+		return block;
+	}
+	/**
+	 * Views a block as a FloatBuffer. The block is copied only if its byte order is not the native one
+	 * @param block Block
+	 * @return FloatBuffer
+	 */
+	private static FloatBuffer toFloatBuffer(ByteBuffer block)
+	{
+		FloatBuffer buffer = block.asFloatBuffer();
+		if(block.order() != ByteOrder.nativeOrder())
+		{
+			FloatBuffer copy = Buffer.createFloatBuffer(buffer.capacity());
+			copy.put(buffer);
+			copy.rewind();
+			return copy;
+		}
+		return buffer;
+	}
+	/**
+	 * Views a block as a ShortBuffer. The block is copied only if its byte order is not the native one
+	 * @param block Block
+	 * @return ShortBuffer
+	 */
+	private static ShortBuffer toShortBuffer(ByteBuffer block)
+	{
+		ShortBuffer buffer = block.asShortBuffer();
+		if(block.order() != ByteOrder.nativeOrder())
+		{
+			ShortBuffer copy = Buffer.createShortBuffer(buffer.capacity());
+			copy.put(buffer);
+			copy.rewind();
+			return copy;
+		}
+		return buffer;
+	}
+	/**
+	 * Views a block as an IntBuffer. The block is copied only if its byte order is not the native one
+	 * @param block Block
+	 * @return IntBuffer
+	 */
+	private static IntBuffer toIntBuffer(ByteBuffer block)
+	{
+		IntBuffer buffer = block.asIntBuffer();
+		if(block.order() != ByteOrder.nativeOrder())
+		{
+			IntBuffer copy = Buffer.createIntBuffer(buffer.capacity());
+			copy.put(buffer);
+			copy.rewind();
+			return copy;
+		}
+		return buffer;
+	}
+	/**
+	 * Computes the end of a node in the file and collects the materials of its meshes
+	 * @param node Node
+	 * @param position Start of the node in the file
+	 * @param materials Receives the materials
+	 * @return End of the node in the file
+	 * @throws IOException Error
+	 */
+	private static int measureNode(Node node, int position, Map<String, Material> materials) throws IOException
+	{
+		position += 6 * Buffer.FLOAT_SIZE + Buffer.INT_SIZE;
+		if(node.hasEntity() && node.getEntity().hasMesh())
+		{
+			position = measureMesh(node.getEntity().getMesh(), position, materials);
+		}
+		position += Buffer.INT_SIZE;
+		for(final Node child : node.getChildNodes())
+		{
+			position = measureNode(child, position, materials);
+		}
+		return position;
+	}
+	/**
+	 * Computes the end of a mesh in the file and collects its materials
+	 * @param mesh Mesh
+	 * @param position Start of the mesh in the file
+	 * @param materials Receives the materials
+	 * @return End of the mesh in the file
+	 * @throws IOException Error
+	 */
+	private static int measureMesh(Mesh mesh, int position, Map<String, Material> materials) throws IOException
+	{
+		Material material = mesh.hasMaterial()?mesh.getCurrentMaterial():null;
+		if(material != null)
+		{
+			materials.put(material.name, material);
+		}
+		position = measureString(mesh.name, position);
+		position = measureString(material == null?null:material.name, position);
+		position += 2 * Buffer.INT_SIZE;
+		if(mesh.bounds != null)
+		{
+			position += 10 * Buffer.FLOAT_SIZE;
+		}
+		if(mesh.interleaved)
+		{
+			position += 4 * Buffer.INT_SIZE;
+			if(isQuantized(mesh))
+			{
+				position += 6 * Buffer.INT_SIZE;
+				position += mesh.verticesDequantization == null?0:4 * Buffer.FLOAT_SIZE;
+				position += mesh.texCoordsDequantization == null?0:6 * Buffer.FLOAT_SIZE;
+			}
+			position = measureBlock(mesh.interleavedBuffer, Buffer.BYTE_SIZE, position);
+		}else
+		{
+			position = measureBlock(mesh.verticesBuffer, Buffer.FLOAT_SIZE, position);
+			position = measureBlock(mesh.normalsBuffer, Buffer.FLOAT_SIZE, position);
+			position = measureBlock(mesh.colorsBuffer, Buffer.FLOAT_SIZE, position);
+			position = measureBlock(mesh.texCoordsBuffer, Buffer.FLOAT_SIZE, position);
+		}
+		position = mesh.wideIndexes?measureBlock(mesh.wideIndexesBuffer, Buffer.INT_SIZE, position):measureBlock(mesh.indexesBuffer, Buffer.SHORT_SIZE, position);
+		position += Buffer.INT_SIZE;
+		if(mesh.subMeshes != null)
+		{
+			for(final Mesh subMesh : mesh.subMeshes)
+			{
+				position = measureMesh(subMesh, position, materials);
+			}
+		}
+		return position;
+	}
+	/**
+	 * Computes the end of a block in the file
+	 * @param buffer Values
+	 * @param elementSize Size of a value
+	 * @param position Start of the block
+	 * @return End of the block
+	 */
+	private static int measureBlock(java.nio.Buffer buffer, int elementSize, int position)
+	{
+		position += Buffer.INT_SIZE;
+		if(buffer == null)
+		{
+			return position;
+		}
+		return align(position, BLOCK_ALIGNMENT) + buffer.capacity() * elementSize;
+	}
+	/**
+	 * Computes the end of a string in the file
+	 * @param value String
+	 * @param position Start of the string
+	 * @return End of the string
+	 * @throws IOException Error
+	 */
+	private static int measureString(String value, int position) throws IOException
+	{
+		position += Buffer.INT_SIZE;
+		if(value == null)
+		{
+			return position;
+		}
+		return align(position + value.getBytes("UTF-8").length, 4);
+	}
+	/**
+	 * Writes a node and its children
+	 * @param map Content
+	 * @param node Node
+	 * @throws IOException Error
+	 */
+	private static void writeNode(ByteBuffer map, Node node) throws IOException
+	{
+		map.putFloat(node.x);
+		map.putFloat(node.y);
+		map.putFloat(node.z);
+		map.putFloat(node.angleX);
+		map.putFloat(node.angleY);
+		map.putFloat(node.angleZ);
+		if(node.hasEntity() && node.getEntity().hasMesh())
+		{
+			map.putInt(1);
+			writeMesh(map, node.getEntity().getMesh());
+		}else
+		{
+			map.putInt(0);
+		}
+		map.putInt(node.getNumChildNodes());
+		for(final Node child : node.getChildNodes())
+		{
+			writeNode(map, child);
+		}
+	}
+	/**
+	 * Writes a mesh and its parts
+	 * @param map Content
+	 * @param mesh Mesh
+	 * @throws IOException Error
+	 */
+	private static void writeMesh(ByteBuffer map, Mesh mesh) throws IOException
+	{
+		Material material = mesh.hasMaterial()?mesh.getCurrentMaterial():null;
+		writeString(map, mesh.name);
+		writeString(map, material == null?null:material.name);
+		map.putInt(mesh.texCoordsSize);
+		boolean quantized = mesh.interleaved && isQuantized(mesh);
+		map.putInt((mesh.wideIndexes?FLAG_WIDE_INDEXES:0) | (mesh.interleaved?FLAG_INTERLEAVED:0) | (quantized?FLAG_QUANTIZED:0) | (mesh.bounds != null?FLAG_BOUNDS:0));
+		if(mesh.bounds != null)
+		{
+			writeBounds(map, mesh.bounds);
+		}
+		if(mesh.interleaved)
+		{
+			map.putInt(mesh.stride);
+			map.putInt(mesh.normalsOffset);
+			map.putInt(mesh.texCoordsOffset);
+			map.putInt(mesh.colorsOffset);
+			if(quantized)
+			{
+				map.putInt(mesh.verticesType);
+				map.putInt(mesh.normalsType);
+				map.putInt(mesh.texCoordsType);
+				map.putInt(mesh.colorsType);
+				writeFloats(map, mesh.verticesDequantization);
+				writeFloats(map, mesh.texCoordsDequantization);
+			}
+			writeBlock(map, mesh.interleavedBuffer);
+		}else
+		{
+			writeBlock(map, mesh.verticesBuffer);
+			writeBlock(map, mesh.normalsBuffer);
+			writeBlock(map, mesh.colorsBuffer);
+			writeBlock(map, mesh.texCoordsBuffer);
+		}
+		if(mesh.wideIndexes)
+		{
+			writeBlock(map, mesh.wideIndexesBuffer);
+		}else
+		{
+			writeBlock(map, mesh.indexesBuffer);
+		}
+		if(mesh.subMeshes != null)
+		{
+			map.putInt(mesh.subMeshes.size());
+			for(final Mesh subMesh : mesh.subMeshes)
+			{
+				writeMesh(map, subMesh);
+			}
+		}else
+		{
+			map.putInt(0);
+		}
+	}
+	/**
+	 * Writes a ByteBuffer block
+	 * @param map Content
+	 * @param buffer Values
+	 */
+	private static void writeBlock(ByteBuffer map, ByteBuffer buffer)
+	{
+		if(startBlock(map, buffer))
+		{
+			ByteBuffer values = buffer.duplicate();
+			values.clear();
+			map.put(values);
+		}
+	}
+	/**
+	 * Writes a FloatBuffer block
+	 * @param map Content
+	 * @param buffer Values
+	 */
+	private static void writeBlock(ByteBuffer map, FloatBuffer buffer)
+	{
+		if(startBlock(map, buffer))
+		{
+			FloatBuffer values = buffer.duplicate();
+			values.clear();
+			map.asFloatBuffer().put(values);
+			map.position(map.position() + buffer.capacity() * Buffer.FLOAT_SIZE);
+		}
+	}
+	/**
+	 * Writes a ShortBuffer block
+	 * @param map Content
+	 * @param buffer Values
+	 */
+	private static void writeBlock(ByteBuffer map, ShortBuffer buffer)
+	{
+		if(startBlock(map, buffer))
+		{
+			ShortBuffer values = buffer.duplicate();
+			values.clear();
+			map.asShortBuffer().put(values);
+			map.position(map.position() + buffer.capacity() * Buffer.SHORT_SIZE);
+		}
+	}
+	/**
+	 * Writes an IntBuffer block
+	 * @param map Content
+	 * @param buffer Values
+	 */
+	private static void writeBlock(ByteBuffer map, IntBuffer buffer)
+	{
+		if(startBlock(map, buffer))
+		{
+			IntBuffer values = buffer.duplicate();
+			values.clear();
+			map.asIntBuffer().put(values);
+			map.position(map.position() + buffer.capacity() * Buffer.INT_SIZE);
+		}
+	}
+	/**
+	 * Writes the number of values of a block and the padding before its values
+	 * @param map Content
+	 * @param buffer Values
+	 * @return False if there is no block
+	 */
+	private static boolean startBlock(ByteBuffer map, java.nio.Buffer buffer)
+	{
+		if(buffer == null)
+		{
+			map.putInt(-1);
+			return false;
+		}
+		map.putInt(buffer.capacity());
+		pad(map, BLOCK_ALIGNMENT);
+		return true;
+	}
+	/**
+	 * Writes bounds
+	 * @param map Content
+	 * @param bounds Bounds
+	 */
+	private static void writeBounds(ByteBuffer map, BoundingVolume bounds)
+	{
+		map.putFloat(bounds.minX).putFloat(bounds.minY).putFloat(bounds.minZ);
+		map.putFloat(bounds.maxX).putFloat(bounds.maxY).putFloat(bounds.maxZ);
+		map.putFloat(bounds.centerX).putFloat(bounds.centerY).putFloat(bounds.centerZ);
+		map.putFloat(bounds.radius);
+	}
+	/**
+	 * Writes some floats
+	 * @param map Content
+	 * @param values Floats, null if there are none
+	 */
+	private static void writeFloats(ByteBuffer map, float[] values)
+	{
+		if(values == null)
+		{
+			map.putInt(-1);
+			return;
+		}
+		map.putInt(values.length);
+		for(final float value : values)
+		{
+			map.putFloat(value);
+		}
+	}
+	/**
+	 * Indicates if the interleaved attributes of a mesh are not all floats
+	 * @param mesh Mesh
+	 * @return True or false
+	 */
+	private static boolean isQuantized(Mesh mesh)
+	{
+		return mesh.verticesType != GL10.GL_FLOAT || mesh.normalsType != GL10.GL_FLOAT || mesh.texCoordsType != GL10.GL_FLOAT || mesh.colorsType != GL10.GL_FLOAT;
+	}
+	/**
+	 * Writes a string
+	 * @param map Content
+	 * @param value String
+	 * @throws IOException Error
+	 */
+	private static void writeString(ByteBuffer map, String value) throws IOException
+	{
+		if(value == null)
+		{
+			map.putInt(-1);
+			return;
+		}
+		byte[] bytes = value.getBytes("UTF-8");
+		map.putInt(bytes.length);
+		map.put(bytes);
+		pad(map, 4);
+	}
+	/**
+	 * Writes zeros until the position is aligned
+	 * @param map Content
+	 * @param alignment Alignment
+	 */
+	private static void pad(ByteBuffer map, int alignment)
+	{
+		int end = align(map.position(), alignment);
+		while(map.position() < end)
+		{
+			map.put((byte)0);
+		}
+	}
+	/**
+	 * Aligns a position
+	 * @param position Position
+	 * @param alignment Alignment (power of 2)
+	 * @return Aligned position
+	 */
+	private static int align(int position, int alignment)
+	{
+		return (position + alignment - 1) & ~(alignment - 1);
+	}
+}
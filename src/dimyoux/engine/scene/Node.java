@@ -7,6 +7,7 @@ import java.util.List;
 import javax.microedition.khronos.opengles.GL11;
 
 import dimyoux.engine.utils.Log;
+import dimyoux.engine.utils.math.BoundingVolume;
 import dimyoux.engine.utils.math.Coord3D;
 import dimyoux.engine.utils.math.Matrix;
 import dimyoux.engine.utils.math.Math;
@@ -43,6 +44,18 @@ public class Node implements Serializable {
 	 * ParentNode (can be null)
 	 */
 	private Node parentNode;
+	/**
+	 * Bounds of the entity and of the child nodes in the space of this node, null until they are computed (see getBounds())
+	 */
+	transient private BoundingVolume bounds;
+	/**
+	 * Bounds in the world space, null until they are computed (see getWorldBounds())
+	 */
+	transient private BoundingVolume worldBounds;
+	/**
+	 * Transform from the space of this node to the world space, null until it is computed (see getWorldTransform())
+	 */
+	transient private float[] worldTransform;
 	/**
 	 * Constructor
 	 */
@@ -66,6 +79,7 @@ public class Node implements Serializable {
 	public void attachEntity(Entity entity)
 	{
 		this.entity = entity;
+		invalidateBounds();
 	}
 	/**
 	 * Returns the entity attached to the node if it exists
@@ -97,6 +111,7 @@ public class Node implements Serializable {
 				childNodes.add(node);
 				node.setParentNode(this);
 				node.parentNode = this;
+				node.invalidateBounds();
 			}else
 			{
 				if(this.isChildNode(node))
@@ -273,6 +288,7 @@ public class Node implements Serializable {
 		this.x = x;
 		this.y = y;
 		this.z = z;
+		invalidateBounds();
 	}
 	/**
 	 * Moves the node to the specified location
@@ -283,6 +299,7 @@ public class Node implements Serializable {
 		this.x = point.x;
 		this.y = point.y;
 		this.z = point.z;
+		invalidateBounds();
 	}
 	
 	/**
@@ -296,6 +313,7 @@ public class Node implements Serializable {
 		this.x += x;
 		this.y += y;
 		this.z += z;
+		invalidateBounds();
 	}
 
 	/**
@@ -307,6 +325,7 @@ public class Node implements Serializable {
 		this.x += point.x;
 		this.y += point.y;
 		this.z += point.z;
+		invalidateBounds();
 	}
 	
 	/**
@@ -320,6 +339,7 @@ public class Node implements Serializable {
 		this.angleX += angleX;
 		this.angleY += angleY;
 		this.angleZ += angleZ;
+		invalidateBounds();
 	}
 
 	/**
@@ -333,6 +353,7 @@ public class Node implements Serializable {
 		this.angleX = angleX;
 		this.angleY = angleY;
 		this.angleZ = angleZ;
+		invalidateBounds();
 	}
 	
 	/**
@@ -374,6 +395,123 @@ public class Node implements Serializable {
 		case AXIS_Z: rotateTo(angleX, angleY, angle); break;
 		}
 	}
+	/**
+	 * Returns the bounds of the entity and of the child nodes, in the space of this node
+	 * They are computed once, until the node tree changes (see invalidateBounds())
+	 * @return Bounds (empty if there is no mesh)
+	 */
+	public BoundingVolume getBounds()
+	{
+		if(bounds == null)
+		{
+			BoundingVolume volume = new BoundingVolume();
+			if(entity != null && entity.hasMesh())
+			{
+				volume.include(entity.getMesh().getBounds());
+			}
+			for(final Node node : childNodes)
+			{
+				volume.include(node.getBounds().transform(node.getTransform()));
+			}
+			bounds = volume;
+		}
+		return bounds;
+	}
+	/**
+	 * Returns the bounds of the entity and of the child nodes, in the world space
+	 * @return Bounds (empty if there is no mesh)
+	 */
+	public BoundingVolume getWorldBounds()
+	{
+		if(worldBounds == null)
+		{
+			worldBounds = getBounds().transform(getWorldTransform());
+		}
+		return worldBounds;
+	}
+	/**
+	 * Discards the bounds that depend on this node : its bounds, the ones of its parents and the world bounds of its children
+	 * It must be called after a direct change of the position, of the angles or of the mesh of the entity
+	 */
+	public void invalidateBounds()
+	{
+		invalidateWorldTransform();
+		for(Node node = this; node != null; node = node.parentNode)
+		{
+			node.bounds = null;
+			node.worldBounds = null;
+		}
+	}
+	/**
+	 * Discards the world transforms and the world bounds of this node and of its children
+	 */
+	private void invalidateWorldTransform()
+	{
+		worldTransform = null;
+		worldBounds = null;
+		for(final Node node : childNodes)
+		{
+			node.invalidateWorldTransform();
+		}
+	}
+	/**
+	 * Returns the transform from the space of this node to the space of its parent, as applied by draw() :
+	 * rotations on X, Y and Z then translation
+	 * @return Rotation (3x3, row-major) followed by the translation (x, y, z)
+	 */
+	public float[] getTransform()
+	{
+		float cx = (float)Math.cosd(angleX), sx = (float)Math.sind(angleX);
+		float cy = (float)Math.cosd(angleY), sy = (float)Math.sind(angleY);
+		float cz = (float)Math.cosd(angleZ), sz = (float)Math.sind(angleZ);
+		float[] transform = new float[12];
+		//Rx * Ry * Rz
+		transform[0] = cy*cz;
+		transform[1] = -cy*sz;
+		transform[2] = sy;
+		transform[3] = sx*sy*cz + cx*sz;
+		transform[4] = -sx*sy*sz + cx*cz;
+		transform[5] = -sx*cy;
+		transform[6] = -cx*sy*cz + sx*sz;
+		transform[7] = cx*sy*sz + sx*cz;
+		transform[8] = cx*cy;
+		//the translation is applied in the rotated space
+		for(int i=0; i<3; i++)
+		{
+			transform[9+i] = transform[i*3]*x + transform[i*3+1]*y + transform[i*3+2]*z;
+		}
+		return transform;
+	}
+	/**
+	 * Returns the transform from the space of this node to the world space
+	 * It is computed once, until the node tree changes (see invalidateBounds())
+	 * @return Rotation (3x3, row-major) followed by the translation (x, y, z)
+	 */
+	public float[] getWorldTransform()
+	{
+		if(worldTransform == null)
+		{
+			float[] local = getTransform();
+			if(parentNode == null)
+			{
+				worldTransform = local;
+			}else
+			{
+				float[] parent = parentNode.getWorldTransform();
+				float[] transform = new float[12];
+				for(int i=0; i<3; i++)
+				{
+					for(int j=0; j<3; j++)
+					{
+						transform[i*3+j] = parent[i*3]*local[j] + parent[i*3+1]*local[3+j] + parent[i*3+2]*local[6+j];
+					}
+					transform[9+i] = parent[i*3]*local[9] + parent[i*3+1]*local[10] + parent[i*3+2]*local[11] + parent[9+i];
+				}
+				worldTransform = transform;
+			}
+		}
+		return worldTransform;
+	}
 	public Matrix getPosition()
 	{
 		float[] position = new float[3];
@@ -236,7 +236,10 @@ public class Scene implements Serializable {
 	private void readObject(java.io.ObjectInputStream in) throws IOException, ClassNotFoundException
 	{
 		in.defaultReadObject();
-		Material.getMaterialList().putAll((Map<String, Material>)in.readObject());
+		for(final Material material : ((Map<String, Material>)in.readObject()).values())
+		{
+			Material.addMaterial(material);
+		}
 		Light.getAllLight().addAll((List<Light>)in.readObject());
 	}
 	/**
@@ -263,7 +266,14 @@ public class Scene implements Serializable {
 		this.childNodes = scene.childNodes;
 		return true;
 	}
-
+	/**
+	 * Unloads the scene : removes its nodes and the materials of the library (their textures are released)
+	 */
+	public void unload()
+	{
+		childNodes.clear();
+		Material.clearMaterials();
+	}
 	/**
 	 * Deletes a save
 	 * @param name Save's name
@@ -48,6 +48,20 @@ public class Buffer {
 	 * Boolean's size
 	 */
 	static public final int BOOLEAN_SIZE = 1;
+	/**
+	 * Size of the array used to serialize buffers by chunks
+	 */
+	static private final int STAGING_SIZE = 16*1024;
+	/**
+	 * Array used to serialize buffers by chunks (one per thread). Values are big endian like in DataOutput
+	 */
+	static private final ThreadLocal<ByteBuffer> staging = new ThreadLocal<ByteBuffer>() {
+		@Override
+		protected ByteBuffer initialValue()
+		{
+			return ByteBuffer.wrap(new byte[STAGING_SIZE]).order(ByteOrder.BIG_ENDIAN);
+		}
+	};
 	/**
 	 * Creates a DoubleBuffer
 	 * @param size Size of the DoubleBuffer
@@ -335,9 +349,19 @@ public class Buffer {
 			if(buffer!=null)
 			{
 				out.writeInt(buffer.capacity());
-				for(int i=0; i<buffer.capacity(); i++)
+				ByteBuffer bytes = staging.get();
+				FloatBuffer chunk = bytes.asFloatBuffer();
+				FloatBuffer values = buffer.duplicate();
+				values.clear();
+				//written by chunks : same bytes as a writeFloat() per value
+				while(values.hasRemaining())
 				{
-					out.writeFloat(buffer.get(i));
+					int count = Math.min(values.remaining(), chunk.capacity());
+					values.limit(values.position() + count);
+					chunk.clear();
+					chunk.put(values);
+					values.limit(values.capacity());
+					out.write(bytes.array(), 0, count * FLOAT_SIZE);
 				}
 			}else
 			{
@@ -358,9 +382,80 @@ public class Buffer {
 			if(buffer!=null)
 			{
 				out.writeInt(buffer.capacity());
-				for(int i=0; i<buffer.capacity(); i++)
+				ByteBuffer bytes = staging.get();
+				ShortBuffer chunk = bytes.asShortBuffer();
+				ShortBuffer values = buffer.duplicate();
+				values.clear();
+				//written by chunks : same bytes as a writeShort() per value
+				while(values.hasRemaining())
+				{
+					int count = Math.min(values.remaining(), chunk.capacity());
+					values.limit(values.position() + count);
+					chunk.clear();
+					chunk.put(values);
+					values.limit(values.capacity());
+					out.write(bytes.array(), 0, count * SHORT_SIZE);
+				}
+			}else
+			{
+				out.writeInt(-1);
+			}
+		}
+	}
+	/**
+	 * Serializes a IntBuffer
+	 * @param buffer IntBuffer
+	 * @param out ObjectOutputSteam
+	 * @throws IOException
+	 */
+	public static void serialize(IntBuffer buffer, ObjectOutputStream out) throws IOException
+	{
+		if(out != null)
+		{
+			if(buffer!=null)
+			{
+				out.writeInt(buffer.capacity());
+				ByteBuffer bytes = staging.get();
+				IntBuffer chunk = bytes.asIntBuffer();
+				IntBuffer values = buffer.duplicate();
+				values.clear();
+				//written by chunks : same bytes as a writeInt() per value
+				while(values.hasRemaining())
+				{
+					int count = Math.min(values.remaining(), chunk.capacity());
+					values.limit(values.position() + count);
+					chunk.clear();
+					chunk.put(values);
+					values.limit(values.capacity());
+					out.write(bytes.array(), 0, count * INT_SIZE);
+				}
+			}else
+			{
+				out.writeInt(-1);
+			}
+		}
+	}
+	/**
+	 * Serializes a ByteBuffer. Its bytes are written as they are
+	 * @param buffer ByteBuffer
+	 * @param out ObjectOutputSteam
+	 * @throws IOException
+	 */
+	public static void serialize(ByteBuffer buffer, ObjectOutputStream out) throws IOException
+	{
+		if(out != null)
+		{
+			if(buffer!=null)
+			{
+				out.writeInt(buffer.capacity());
+				ByteBuffer bytes = staging.get();
+				ByteBuffer values = buffer.duplicate();
+				values.clear();
+				while(values.hasRemaining())
 				{
-					out.writeShort(buffer.get(i));
+					int count = Math.min(values.remaining(), bytes.capacity());
+					values.get(bytes.array(), 0, count);
+					out.write(bytes.array(), 0, count);
 				}
 			}else
 			{
@@ -382,9 +477,15 @@ public class Buffer {
 			if(bufferSize>=0)
 			{
 				FloatBuffer buffer = Buffer.createFloatBuffer(bufferSize);
-				for(int i=0; i<buffer.capacity(); i++)
+				ByteBuffer bytes = staging.get();
+				FloatBuffer chunk = bytes.asFloatBuffer();
+				while(buffer.hasRemaining())
 				{
-					buffer.put(in.readFloat());
+					int count = Math.min(buffer.remaining(), chunk.capacity());
+					in.readFully(bytes.array(), 0, count * FLOAT_SIZE);
+					chunk.clear();
+					chunk.limit(count);
+					buffer.put(chunk);
 				}
 				buffer.rewind();
 				return buffer;
@@ -406,9 +507,70 @@ public class Buffer {
 			if(bufferSize>=0)
 			{
 				ShortBuffer buffer = Buffer.createShortBuffer(bufferSize);
-				for(int i=0; i<buffer.capacity(); i++)
+				ByteBuffer bytes = staging.get();
+				ShortBuffer chunk = bytes.asShortBuffer();
+				while(buffer.hasRemaining())
+				{
+					int count = Math.min(buffer.remaining(), chunk.capacity());
+					in.readFully(bytes.array(), 0, count * SHORT_SIZE);
+					chunk.clear();
+					chunk.limit(count);
+					buffer.put(chunk);
+				}
+				buffer.rewind();
+				return buffer;
+			}
+		}
+		return null;
+	}
+	/**
+	 * Deserializes a IntBuffer
+	 * @param in ObjectInputStream
+	 * @throws IOException
+	 */
+	public static IntBuffer deserializeIntBuffer(ObjectInputStream in) throws IOException
+	{
+		if(in != null)
+		{
+			int bufferSize = in.readInt();
+			if(bufferSize>=0)
+			{
+				IntBuffer buffer = Buffer.createIntBuffer(bufferSize);
+				ByteBuffer bytes = staging.get();
+				IntBuffer chunk = bytes.asIntBuffer();
+				while(buffer.hasRemaining())
+				{
+					int count = Math.min(buffer.remaining(), chunk.capacity());
+					in.readFully(bytes.array(), 0, count * INT_SIZE);
+					chunk.clear();
+					chunk.limit(count);
+					buffer.put(chunk);
+				}
+				buffer.rewind();
+				return buffer;
+			}
+		}
+		return null;
+	}
+	/**
+	 * Deserializes a ByteBuffer (native byte order)
+	 * @param in ObjectInputStream
+	 * @throws IOException
+	 */
+	public static ByteBuffer deserializeByteBuffer(ObjectInputStream in) throws IOException
+	{
+		if(in != null)
+		{
+			int bufferSize = in.readInt();
+			if(bufferSize>=0)
+			{
+				ByteBuffer buffer = Buffer.createByteBuffer(bufferSize);
+				ByteBuffer bytes = staging.get();
+				while(buffer.hasRemaining())
 				{
-					buffer.put(in.readShort());
+					int count = Math.min(buffer.remaining(), bytes.capacity());
+					in.readFully(bytes.array(), 0, count);
+					buffer.put(bytes.array(), 0, count);
 				}
 				buffer.rewind();
 				return buffer;
@@ -0,0 +1,686 @@
+package dimyoux.engine.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import android.graphics.Bitmap;
+import dimyoux.engine.managers.FileManager;
+/**
+ * ETC1 encoder and decoder (OES_compressed_ETC1_RGB8_texture)
+ * A block of 4x4 pixels is stored on 64 bits (big endian) : 6 times smaller than RGB, 8 times smaller than RGBA.
+ * The block is cut into two parts of 2x4 pixels (flip 0) or 4x2 pixels (flip 1). Each part has a base color
+ * (individual mode : 2x RGB444, differential mode : RGB555 and a 3 bits delta) and a table of modifiers.
+ * Pixels indexes (2 bits) select a modifier added to the base color. ETC1 has no alpha channel.
+ * Blocks are encoded by several threads. Encoded textures of the resources are stored in the application's files directory
+ */
+public class ETC1Codec {
+	/**
+	 * Quality : base colors are the average colors of the parts
+	 */
+	public static final int QUALITY_FAST = 0;
+	/**
+	 * Quality : base colors are refined along the luminance
+	 */
+	public static final int QUALITY_MEDIUM = 1;
+	/**
+	 * Quality : base colors are refined on each channel
+	 */
+	public static final int QUALITY_HIGH = 2;
+	/**
+	 * Quality of the encoded textures
+	 */
+	public static int QUALITY = QUALITY_MEDIUM;
+	/**
+	 * Stores the encoded textures (see FileManager.getStorageFile())
+	 */
+	public static boolean USE_CACHE = true;
+	/**
+	 * Size of an encoded block (in bytes)
+	 */
+	public static final int BLOCK_SIZE = 8;
+	/**
+	 * Magic number of the cache files
+	 */
+	private static final int MAGIC = 0x45544331;
+	/**
+	 * Version of the cache files
+	 */
+	private static final int VERSION = 1;
+	/**
+	 * Size of the header of the cache files : magic, version, width, height, checksum, quality, number of levels
+	 */
+	private static final int HEADER_SIZE = 28;
+	/**
+	 * Modifiers of each table, by pixel index : +small, +large, -small, -large
+	 */
+	private static final int[][] MODIFIERS = {
+		{2, 8, -2, -8},
+		{5, 17, -5, -17},
+		{9, 29, -9, -29},
+		{13, 42, -13, -42},
+		{18, 60, -18, -60},
+		{24, 80, -24, -80},
+		{33, 106, -33, -106},
+		{47, 183, -47, -183}
+	};
+	/**
+	 * Pixels (y*4+x) of the parts of a block, by flip
+	 */
+	private static final int[][][] PARTS = new int[2][2][8];
+	/**
+	 * Refinements of the base colors (r, g, b), by quality
+	 */
+	private static final int[][][] REFINEMENTS = new int[3][][];
+	static
+	{
+		int[] counts = new int[4];
+		for(int y=0; y<4; y++)
+		{
+			for(int x=0; x<4; x++)
+			{
+				int part = x < 2?0:1;
+				PARTS[0][part][counts[part]++] = y * 4 + x;
+				part = y < 2?0:1;
+				PARTS[1][part][counts[2 + part]++] = y * 4 + x;
+			}
+		}
+		REFINEMENTS[QUALITY_FAST] = new int[][]{{0, 0, 0}};
+		REFINEMENTS[QUALITY_MEDIUM] = new int[][]{{0, 0, 0}, {1, 1, 1}, {-1, -1, -1}};
+		REFINEMENTS[QUALITY_HIGH] = new int[27][];
+		for(int i=0; i<27; i++)
+		{
+			REFINEMENTS[QUALITY_HIGH][i] = new int[]{i % 3 - 1, (i / 3) % 3 - 1, i / 9 - 1};
+		}
+	}
+	/**
+	 * Size of an encoded texture
+	 * @param width Width
+	 * @param height Height
+	 * @return Size in bytes
+	 */
+	public static int getEncodedSize(int width, int height)
+	{
+		return ((width + 3) / 4) * ((height + 3) / 4) * BLOCK_SIZE;
+	}
+	/**
+	 * Indicates if pixels are opaque (ETC1 has no alpha channel)
+	 * @param pixels Pixels (ARGB)
+	 * @return True or false
+	 */
+	public static boolean isOpaque(int[] pixels)
+	{
+		for(final int pixel : pixels)
+		{
+			if((pixel >>> 24) != 0xFF)
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+	/**
+	 * Encodes a texture and its mipmaps. The result is read from the cache if the texture has already been encoded
+	 * @param bitmap Texture
+	 * @param resourceId Resource id of the texture, used as cache key. 0 or negative : not cached
+	 * @param mipmaps Encodes the mipmaps too (see MipmapGenerator), only for the textures whose sizes are powers of 2
+	 * @return Encoded levels, null if the texture is not opaque
+	 */
+	public static ByteBuffer[] compress(Bitmap bitmap, int resourceId, boolean mipmaps)
+	{
+		int width = bitmap.getWidth();
+		int height = bitmap.getHeight();
+		int[] pixels = new int[width * height];
+		bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+		if(bitmap.hasAlpha() && !isOpaque(pixels))
+		{
+			return null;
+		}
+		long start = System.currentTimeMillis();
+		boolean withMipmaps = mipmaps && (width & (width - 1)) == 0 && (height & (height - 1)) == 0;
+		int count = withMipmaps?MipmapGenerator.getLevelCount(width, height):0;
+		int checksum = Arrays.hashCode(pixels);
+		//one file by quality : changing QUALITY doesn't overwrite the other encodings
+		File file = USE_CACHE && resourceId > 0?FileManager.getInstance().getStorageFile("etc1_"+resourceId+"_"+QUALITY+".bin"):null;
+		ByteBuffer[] encoded = file == null?null:read(file, width, height, checksum, count + 1);
+		if(encoded == null)
+		{
+			//the mipmaps are only generated when they are encoded
+			int[][] levels = withMipmaps?MipmapGenerator.generate(pixels, width, height):new int[0][];
+			encoded = new ByteBuffer[levels.length + 1];
+			encoded[0] = encode(pixels, width, height, QUALITY);
+			for(int level=0; level<levels.length; level++)
+			{
+				encoded[level + 1] = encode(levels[level], MipmapGenerator.getSize(width, level + 1), MipmapGenerator.getSize(height, level + 1), QUALITY);
+			}
+			Log.verbose("Texture "+resourceId+" encoded in "+(System.currentTimeMillis() - start)+"ms (PSNR "+java.lang.Math.round(getPSNR(pixels, decode(encoded[0], width, height)))+"dB)");
+			if(file != null)
+			{
+				write(file, width, height, checksum, encoded);
+			}
+		}
+		return encoded;
+	}
+	/**
+	 * Encodes an image. Rows of blocks are encoded by several threads
+	 * @param pixels Pixels (ARGB)
+	 * @param width Width
+	 * @param height Height
+	 * @param quality Quality (QUALITY_FAST, QUALITY_MEDIUM or QUALITY_HIGH)
+	 * @return Encoded image (direct buffer)
+	 */
+	public static ByteBuffer encode(final int[] pixels, final int width, final int height, final int quality)
+	{
+		final int blocksWidth = (width + 3) / 4;
+		final int blocksHeight = (height + 3) / 4;
+		final long[] blocks = new long[blocksWidth * blocksHeight];
+		int bands = java.lang.Math.min(Workers.PROCESSORS, blocksHeight);
+		if(bands < 2 || blocks.length < 64)
+		{
+			encode(pixels, width, height, quality, blocks, blocksWidth, 0, blocksHeight);
+		}else
+		{
+			List<Future<?>> results = new ArrayList<Future<?>>(bands);
+			int rows = (blocksHeight + bands - 1) / bands;
+			for(int start=0; start<blocksHeight; start+=rows)
+			{
+				final int first = start;
+				final int last = java.lang.Math.min(blocksHeight, start + rows);
+				results.add(Workers.getPool().submit(new Runnable() {
+					@Override
+					public void run()
+					{
+						encode(pixels, width, height, quality, blocks, blocksWidth, first, last);
+					}
+				}));
+			}
+			try
+			{
+				for(final Future<?> result : results)
+				{
+					result.get();
+				}
+			}catch(Exception e)
+			{
+				throw new RuntimeException(e);
+			}
+		}
+		ByteBuffer buffer = ByteBuffer.allocateDirect(blocks.length * BLOCK_SIZE).order(ByteOrder.BIG_ENDIAN);
+		buffer.asLongBuffer().put(blocks);
+		return buffer;
+	}
+	/**
+	 * Encodes rows of blocks
+	 * @param pixels Pixels (ARGB)
+	 * @param width Width
+	 * @param height Height
+	 * @param quality Quality
+	 * @param blocks Encoded blocks
+	 * @param blocksWidth Number of blocks by row
+	 * @param first First row of blocks
+	 * @param last Last row of blocks (excluded)
+	 */
+	private static void encode(int[] pixels, int width, int height, int quality, long[] blocks, int blocksWidth, int first, int last)
+	{
+		int[] block = new int[16];
+		int[] scratch = new int[17];
+		for(int by=first; by<last; by++)
+		{
+			for(int bx=0; bx<blocksWidth; bx++)
+			{
+				//pixels outside of the image repeat the edges
+				for(int y=0; y<4; y++)
+				{
+					for(int x=0; x<4; x++)
+					{
+						block[y * 4 + x] = pixels[java.lang.Math.min(by * 4 + y, height - 1) * width + java.lang.Math.min(bx * 4 + x, width - 1)];
+					}
+				}
+				blocks[by * blocksWidth + bx] = encodeBlock(block, quality, scratch);
+			}
+		}
+	}
+	/**
+	 * Encodes a block
+	 * @param block Pixels (ARGB, y*4+x)
+	 * @param quality Quality (QUALITY_FAST, QUALITY_MEDIUM or QUALITY_HIGH)
+	 * @return Encoded block
+	 */
+	public static long encodeBlock(int[] block, int quality)
+	{
+		return encodeBlock(block, quality, new int[17]);
+	}
+	/**
+	 * Encodes a block
+	 * @param block Pixels (ARGB, y*4+x)
+	 * @param quality Quality
+	 * @param scratch Work array (17 values)
+	 * @return Encoded block
+	 */
+	private static long encodeBlock(int[] block, int quality, int[] scratch)
+	{
+		int[][] refinements = REFINEMENTS[quality];
+		long best = 0;
+		long bestError = Long.MAX_VALUE;
+		float[][] averages = new float[2][3];
+		int[][] individual = new int[2][];
+		int[][][] candidates = new int[2][refinements.length][];
+		int[][] errors = new int[2][refinements.length];
+		for(int flip=0; flip<2; flip++)
+		{
+			for(int part=0; part<2; part++)
+			{
+				averages[part][0] = averages[part][1] = averages[part][2] = 0;
+				for(final int position : PARTS[flip][part])
+				{
+					averages[part][0] += (block[position] >> 16) & 0xFF;
+					averages[part][1] += (block[position] >> 8) & 0xFF;
+					averages[part][2] += block[position] & 0xFF;
+				}
+				for(int c=0; c<3; c++)
+				{
+					averages[part][c] /= 8;
+				}
+			}
+			//individual mode : each part has its own RGB444 color
+			long error = 0;
+			for(int part=0; part<2; part++)
+			{
+				int partError = Integer.MAX_VALUE;
+				for(final int[] refinement : refinements)
+				{
+					int[] color = quantize(averages[part], refinement, 15);
+					int e = evaluate(block, PARTS[flip][part], expand4(color[0]), expand4(color[1]), expand4(color[2]), scratch, partError);
+					if(e < partError)
+					{
+						partError = e;
+						individual[part] = color;
+					}
+				}
+				error += partError;
+			}
+			if(error < bestError)
+			{
+				bestError = error;
+				best = pack(block, flip, false, individual[0], individual[1], scratch);
+			}
+			//differential mode : RGB555 and a delta between -4 and 3 for the second part
+			for(int part=0; part<2; part++)
+			{
+				for(int i=0; i<refinements.length; i++)
+				{
+					int[] color = quantize(averages[part], refinements[i], 31);
+					candidates[part][i] = color;
+					errors[part][i] = evaluate(block, PARTS[flip][part], expand5(color[0]), expand5(color[1]), expand5(color[2]), scratch, Integer.MAX_VALUE);
+				}
+			}
+			int[] first = null, second = null;
+			error = Long.MAX_VALUE;
+			for(int i=0; i<refinements.length; i++)
+			{
+				for(int j=0; j<refinements.length; j++)
+				{
+					if((long)errors[0][i] + errors[1][j] < error && isDeltaValid(candidates[0][i], candidates[1][j]))
+					{
+						error = (long)errors[0][i] + errors[1][j];
+						first = candidates[0][i];
+						second = candidates[1][j];
+					}
+				}
+			}
+			if(first != null && error < bestError)
+			{
+				bestError = error;
+				best = pack(block, flip, true, first, second, scratch);
+			}
+		}
+		return best;
+	}
+	/**
+	 * Quantizes a color
+	 * @param average Color (r, g, b between 0 and 255)
+	 * @param refinement Offset added to each quantized channel
+	 * @param max Maximum quantized value (15 or 31)
+	 * @return Quantized color
+	 */
+	private static int[] quantize(float[] average, int[] refinement, int max)
+	{
+		int[] color = new int[3];
+		for(int c=0; c<3; c++)
+		{
+			color[c] = java.lang.Math.round(average[c] * max / 255f) + refinement[c];
+			color[c] = color[c] < 0?0:(color[c] > max?max:color[c]);
+		}
+		return color;
+	}
+	/**
+	 * Indicates if the second color of the differential mode can be stored as a delta
+	 * @param first First color (RGB555)
+	 * @param second Second color (RGB555)
+	 * @return True or false
+	 */
+	private static boolean isDeltaValid(int[] first, int[] second)
+	{
+		int delta;
+		for(int c=0; c<3; c++)
+		{
+			delta = second[c] - first[c];
+			if(delta < -4 || delta > 3)
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+	/**
+	 * Finds the best table of modifiers and the best pixels indexes of a part
+	 * @param block Pixels (ARGB, y*4+x)
+	 * @param positions Pixels of the part
+	 * @param r Red of the base color
+	 * @param g Green of the base color
+	 * @param b Blue of the base color
+	 * @param result Receives the table (0) and the indexes (1 to 8). 9 to 16 are used as work values
+	 * @param limit Error above which the search stops
+	 * @return Squared error, at least limit if the search has been stopped
+	 */
+	private static int evaluate(int[] block, int[] positions, int r, int g, int b, int[] result, int limit)
+	{
+		int best = limit;
+		int error, pixelError, bestPixel, color, modifier, dr, dg, db;
+		for(int table=0; table<8; table++)
+		{
+			error = 0;
+			for(int i=0; i<8 && error<best; i++)
+			{
+				color = block[positions[i]];
+				bestPixel = Integer.MAX_VALUE;
+				for(int index=0; index<4; index++)
+				{
+					modifier = MODIFIERS[table][index];
+					dr = clamp(r + modifier) - ((color >> 16) & 0xFF);
+					dg = clamp(g + modifier) - ((color >> 8) & 0xFF);
+					db = clamp(b + modifier) - (color & 0xFF);
+					pixelError = dr * dr + dg * dg + db * db;
+					if(pixelError < bestPixel)
+					{
+						bestPixel = pixelError;
+						result[9 + i] = index;
+					}
+				}
+				error += bestPixel;
+			}
+			if(error < best)
+			{
+				best = error;
+				result[0] = table;
+				System.arraycopy(result, 9, result, 1, 8);
+			}
+		}
+		return best;
+	}
+	/**
+	 * Builds an encoded block
+	 * @param block Pixels (ARGB, y*4+x)
+	 * @param flip Flip bit (0 : parts of 2x4 pixels, 1 : parts of 4x2 pixels)
+	 * @param differential Differential mode
+	 * @param first Color of the first part (RGB444 or RGB555)
+	 * @param second Color of the second part (RGB444 or RGB555)
+	 * @param scratch Work array (17 values)
+	 * @return Encoded block
+	 */
+	private static long pack(int[] block, int flip, boolean differential, int[] first, int[] second, int[] scratch)
+	{
+		int high, low = 0;
+		int[] tables = new int[2];
+		int[] colors = new int[6];
+		for(int c=0; c<3; c++)
+		{
+			colors[c] = differential?expand5(first[c]):expand4(first[c]);
+			colors[3 + c] = differential?expand5(second[c]):expand4(second[c]);
+		}
+		int position, index;
+		for(int part=0; part<2; part++)
+		{
+			evaluate(block, PARTS[flip][part], colors[part * 3], colors[part * 3 + 1], colors[part * 3 + 2], scratch, Integer.MAX_VALUE);
+			tables[part] = scratch[0];
+			for(int i=0; i<8; i++)
+			{
+				position = PARTS[flip][part][i];
+				//pixels are numbered by column : x*4+y
+				index = (position & 3) * 4 + (position >> 2);
+				low |= ((scratch[1 + i] >> 1) << (index + 16)) | ((scratch[1 + i] & 1) << index);
+			}
+		}
+		if(differential)
+		{
+			high = (first[0] << 27) | (((second[0] - first[0]) & 7) << 24)
+				| (first[1] << 19) | (((second[1] - first[1]) & 7) << 16)
+				| (first[2] << 11) | (((second[2] - first[2]) & 7) << 8)
+				| 2;
+		}else
+		{
+			high = (first[0] << 28) | (second[0] << 24)
+				| (first[1] << 20) | (second[1] << 16)
+				| (first[2] << 12) | (second[2] << 8);
+		}
+		high |= (tables[0] << 5) | (tables[1] << 2) | flip;
+		return ((long)high << 32) | (low & 0xFFFFFFFFL);
+	}
+	/**
+	 * Decodes a block
+	 * @param data Encoded block
+	 * @param block Receives the pixels (ARGB, y*4+x)
+	 */
+	public static void decodeBlock(long data, int[] block)
+	{
+		int high = (int)(data >>> 32);
+		int low = (int)data;
+		boolean flip = (high & 1) != 0;
+		int[] tables = {(high >> 5) & 7, (high >> 2) & 7};
+		int[] colors = new int[6];
+		if((high & 2) != 0)
+		{
+			int base, delta;
+			for(int c=0; c<3; c++)
+			{
+				base = (high >>> (27 - c * 8)) & 31;
+				//signed 3 bits
+				delta = ((high >>> (24 - c * 8)) << 29) >> 29;
+				colors[c] = expand5(base);
+				colors[3 + c] = expand5(base + delta);
+			}
+		}else
+		{
+			for(int c=0; c<3; c++)
+			{
+				colors[c] = expand4((high >>> (28 - c * 8)) & 15);
+				colors[3 + c] = expand4((high >>> (24 - c * 8)) & 15);
+			}
+		}
+		int index, part, modifier;
+		for(int y=0; y<4; y++)
+		{
+			for(int x=0; x<4; x++)
+			{
+				index = x * 4 + y;
+				part = (flip?y:x) < 2?0:1;
+				modifier = MODIFIERS[tables[part]][(((low >>> (index + 16)) & 1) << 1) | ((low >>> index) & 1)];
+				block[y * 4 + x] = 0xFF000000 | (clamp(colors[part * 3] + modifier) << 16) | (clamp(colors[part * 3 + 1] + modifier) << 8) | clamp(colors[part * 3 + 2] + modifier);
+			}
+		}
+	}
+	/**
+	 * Decodes an image (verification, or fallback when ETC1 is not supported)
+	 * @param data Encoded image
+	 * @param width Width
+	 * @param height Height
+	 * @return Pixels (ARGB)
+	 */
+	public static int[] decode(ByteBuffer data, int width, int height)
+	{
+		int[] pixels = new int[width * height];
+		int[] block = new int[16];
+		int blocksWidth = (width + 3) / 4;
+		int blocksHeight = (height + 3) / 4;
+		ByteBuffer buffer = data.duplicate().order(ByteOrder.BIG_ENDIAN);
+		int px, py;
+		for(int by=0; by<blocksHeight; by++)
+		{
+			for(int bx=0; bx<blocksWidth; bx++)
+			{
+				decodeBlock(buffer.getLong((by * blocksWidth + bx) * BLOCK_SIZE), block);
+				for(int y=0; y<4; y++)
+				{
+					for(int x=0; x<4; x++)
+					{
+						px = bx * 4 + x;
+						py = by * 4 + y;
+						if(px < width && py < height)
+						{
+							pixels[py * width + px] = block[y * 4 + x];
+						}
+					}
+				}
+			}
+		}
+		return pixels;
+	}
+	/**
+	 * Peak signal-to-noise ratio between two images (RGB)
+	 * @param original Original pixels
+	 * @param decoded Decoded pixels
+	 * @return PSNR in dB, infinite if the images are identical
+	 */
+	public static double getPSNR(int[] original, int[] decoded)
+	{
+		double error = 0;
+		int dr, dg, db;
+		for(int i=0; i<original.length; i++)
+		{
+			dr = ((original[i] >> 16) & 0xFF) - ((decoded[i] >> 16) & 0xFF);
+			dg = ((original[i] >> 8) & 0xFF) - ((decoded[i] >> 8) & 0xFF);
+			db = (original[i] & 0xFF) - (decoded[i] & 0xFF);
+			error += dr * dr + dg * dg + db * db;
+		}
+		error /= original.length * 3.0;
+		return 10 * java.lang.Math.log10(255 * 255 / error);
+	}
+	/**
+	 * Reads encoded levels from the cache. The levels are slices of the mapped file
+	 * @param file Cache file
+	 * @param width Width of the level 0
+	 * @param height Height of the level 0
+	 * @param checksum Checksum of the level 0
+	 * @param count Number of levels
+	 * @return Encoded levels, null if the file doesn't exist or doesn't match the texture
+	 */
+	private static ByteBuffer[] read(File file, int width, int height, int checksum, int count)
+	{
+		if(!file.isFile())
+		{
+			return null;
+		}
+		try
+		{
+			MappedByteBuffer map = FileManager.getInstance().mapFile(file);
+			map.order(ByteOrder.nativeOrder());
+			if(map.capacity() < HEADER_SIZE || map.getInt(0) != MAGIC || map.getInt(4) != VERSION || map.getInt(8) != width
+					|| map.getInt(12) != height || map.getInt(16) != checksum || map.getInt(20) != QUALITY || map.getInt(24) != count)
+			{
+				return null;
+			}
+			ByteBuffer[] levels = new ByteBuffer[count];
+			int offset = HEADER_SIZE, size;
+			for(int level=0; level<count; level++)
+			{
+				size = getEncodedSize(MipmapGenerator.getSize(width, level), MipmapGenerator.getSize(height, level));
+				map.limit(offset + size).position(offset);
+				levels[level] = map.slice();
+				map.limit(map.capacity());
+				offset += size;
+			}
+			Log.verbose("ETC1 texture read from "+file.getName());
+			return levels;
+		}catch(Exception e)
+		{
+			Log.error("ETC1 cache "+file.getName()+" can't be read");
+			Log.error(e);
+		}
+		return null;
+	}
+	/**
+	 * Writes encoded levels into the cache
+	 * @param file Cache file
+	 * @param width Width of the level 0
+	 * @param height Height of the level 0
+	 * @param checksum Checksum of the level 0
+	 * @param levels Encoded levels
+	 */
+	private static void write(File file, int width, int height, int checksum, ByteBuffer[] levels)
+	{
+		long size = HEADER_SIZE;
+		for(final ByteBuffer level : levels)
+		{
+			size += level.capacity();
+		}
+		try
+		{
+			RandomAccessFile access = new RandomAccessFile(file, "rw");
+			try
+			{
+				access.setLength(0);
+				FileChannel channel = access.getChannel();
+				ByteBuffer map = channel.map(FileChannel.MapMode.READ_WRITE, 0, size).order(ByteOrder.nativeOrder());
+				map.putInt(MAGIC).putInt(VERSION).putInt(width).putInt(height).putInt(checksum).putInt(QUALITY).putInt(levels.length);
+				for(final ByteBuffer level : levels)
+				{
+					map.put((ByteBuffer)level.duplicate().clear());
+				}
+			}
+			finally
+			{
+				access.close();
+			}
+		}catch(IOException e)
+		{
+			Log.error("ETC1 cache "+file.getName()+" can't be written");
+			Log.error(e);
+			file.delete();
+		}
+	}
+	/**
+	 * Expands a 4 bits value to 8 bits
+	 * @param value Value
+	 * @return Expanded value
+	 */
+	private static int expand4(int value)
+	{
+		return (value << 4) | value;
+	}
+	/**
+	 * Expands a 5 bits value to 8 bits
+	 * @param value Value
+	 * @return Expanded value
+	 */
+	private static int expand5(int value)
+	{
+		return (value << 3) | (value >> 2);
+	}
+	/**
+	 * Clamps a value between 0 and 255
+	 * @param value Value
+	 * @return Clamped value
+	 */
+	private static int clamp(int value)
+	{
+		return value < 0?0:(value > 255?255:value);
+	}
+}
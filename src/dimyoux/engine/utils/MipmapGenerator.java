@@ -0,0 +1,347 @@
+package dimyoux.engine.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import android.graphics.Bitmap;
+import dimyoux.engine.managers.FileManager;
+/**
+ * Generates the mipmaps of a texture on the CPU (works where glGenerateMipmap is missing)
+ * Each level is a gamma-correct 2x2 box filter of the previous one : colors are averaged in linear space,
+ * weighted by their alpha. The rows of a level are filtered by several threads.
+ * The levels of the resources are stored in the application's files directory and mapped when they are used again
+ */
+public class MipmapGenerator {
+	/**
+	 * Stores the generated levels (see FileManager.getStorageFile())
+	 */
+	public static boolean USE_CACHE = true;
+	/**
+	 * Minimum number of pixels of a level filtered by several threads
+	 */
+	public static int PARALLEL_MIN_PIXELS = 64*64;
+	/**
+	 * Magic number of the cache files
+	 */
+	private static final int MAGIC = 0x4433444D;
+	/**
+	 * Version of the cache files
+	 */
+	private static final int VERSION = 1;
+	/**
+	 * Size of the header of the cache files : magic, version, width, height, checksum, number of levels
+	 */
+	private static final int HEADER_SIZE = 24;
+	/**
+	 * sRGB to linear (8 bits to [0,1])
+	 */
+	private static final float[] TO_LINEAR = new float[256];
+	/**
+	 * Precision of the linear to sRGB table
+	 */
+	private static final int LINEAR_STEPS = 4096;
+	/**
+	 * Linear ([0,1] on LINEAR_STEPS steps) to sRGB (8 bits)
+	 */
+	private static final int[] TO_SRGB = new int[LINEAR_STEPS + 1];
+	static
+	{
+		double value;
+		for(int i=0; i<256; i++)
+		{
+			value = i / 255.0;
+			TO_LINEAR[i] = (float)(value <= 0.04045?value / 12.92:java.lang.Math.pow((value + 0.055) / 1.055, 2.4));
+		}
+		for(int i=0; i<=LINEAR_STEPS; i++)
+		{
+			value = (double)i / LINEAR_STEPS;
+			value = value <= 0.0031308?value * 12.92:1.055 * java.lang.Math.pow(value, 1 / 2.4) - 0.055;
+			TO_SRGB[i] = (int)java.lang.Math.round(value * 255);
+		}
+	}
+	/**
+	 * Generates the mipmaps of a texture
+	 * @param bitmap Texture (level 0)
+	 * @param resourceId Resource id of the texture, used as cache key. 0 or negative : not cached
+	 * @return Levels 1 to n (down to 1x1), null if the texture's sizes are not powers of 2
+	 */
+	public static Bitmap[] generate(Bitmap bitmap, int resourceId)
+	{
+		int width = bitmap.getWidth();
+		int height = bitmap.getHeight();
+		if(!isPowerOfTwo(width) || !isPowerOfTwo(height) || (width == 1 && height == 1))
+		{
+			return null;
+		}
+		long start = System.currentTimeMillis();
+		int[] pixels = new int[width * height];
+		bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+		int checksum = Arrays.hashCode(pixels);
+		File file = USE_CACHE && resourceId > 0?FileManager.getInstance().getStorageFile("mipmaps_"+resourceId+".bin"):null;
+		int[][] levels = file == null?null:read(file, width, height, checksum);
+		if(levels == null)
+		{
+			levels = generate(pixels, width, height);
+			if(file != null)
+			{
+				write(file, width, height, checksum, levels);
+			}
+			Log.verbose("Mipmaps of "+resourceId+" generated in "+(System.currentTimeMillis() - start)+"ms");
+		}
+		Bitmap[] bitmaps = new Bitmap[levels.length];
+		for(int level=0; level<levels.length; level++)
+		{
+			bitmaps[level] = Bitmap.createBitmap(levels[level], getSize(width, level + 1), getSize(height, level + 1), Bitmap.Config.ARGB_8888);
+		}
+		return bitmaps;
+	}
+	/**
+	 * Generates the mipmaps of a texture
+	 * @param pixels Pixels (ARGB) of the level 0
+	 * @param width Width of the level 0
+	 * @param height Height of the level 0
+	 * @return Pixels of the levels 1 to n
+	 */
+	public static int[][] generate(int[] pixels, int width, int height)
+	{
+		int count = getLevelCount(width, height);
+		int[][] levels = new int[count][];
+		int[] source = pixels;
+		int sourceWidth = width, sourceHeight = height;
+		for(int level=0; level<count; level++)
+		{
+			int levelWidth = getSize(width, level + 1);
+			int levelHeight = getSize(height, level + 1);
+			levels[level] = new int[levelWidth * levelHeight];
+			downsample(source, sourceWidth, sourceHeight, levels[level], levelWidth, levelHeight);
+			source = levels[level];
+			sourceWidth = levelWidth;
+			sourceHeight = levelHeight;
+		}
+		return levels;
+	}
+	/**
+	 * Filters a level into the next one. Bands of rows are filtered by several threads
+	 * @param source Pixels of the level
+	 * @param sourceWidth Width of the level
+	 * @param sourceHeight Height of the level
+	 * @param destination Pixels of the next level
+	 * @param width Width of the next level
+	 * @param height Height of the next level
+	 */
+	private static void downsample(final int[] source, final int sourceWidth, final int sourceHeight, final int[] destination, final int width, final int height)
+	{
+		int bands = java.lang.Math.min(Workers.PROCESSORS, height);
+		if(bands < 2 || width * height < PARALLEL_MIN_PIXELS)
+		{
+			downsample(source, sourceWidth, sourceHeight, destination, width, 0, height);
+			return;
+		}
+		List<Future<?>> results = new ArrayList<Future<?>>(bands);
+		int rows = (height + bands - 1) / bands;
+		for(int start=0; start<height; start+=rows)
+		{
+			final int first = start;
+			final int last = java.lang.Math.min(height, start + rows);
+			results.add(Workers.getPool().submit(new Runnable() {
+				@Override
+				public void run()
+				{
+					downsample(source, sourceWidth, sourceHeight, destination, width, first, last);
+				}
+			}));
+		}
+		try
+		{
+			for(final Future<?> result : results)
+			{
+				result.get();
+			}
+		}catch(Exception e)
+		{
+			throw new RuntimeException(e);
+		}
+	}
+	/**
+	 * Filters rows of the next level
+	 * @param source Pixels of the level
+	 * @param sourceWidth Width of the level
+	 * @param sourceHeight Height of the level
+	 * @param destination Pixels of the next level
+	 * @param width Width of the next level
+	 * @param first First row
+	 * @param last Last row (excluded)
+	 */
+	private static void downsample(int[] source, int sourceWidth, int sourceHeight, int[] destination, int width, int first, int last)
+	{
+		//a size of 1 is not halved : its pixels are used twice
+		int stepX = sourceWidth > 1?1:0;
+		int stepY = sourceHeight > 1?sourceWidth:0;
+		int offset, color, alpha;
+		float weight, alphaSum, red, green, blue;
+		int[] samples = new int[4];
+		for(int y=first; y<last; y++)
+		{
+			for(int x=0; x<width; x++)
+			{
+				offset = 2 * y * sourceWidth + 2 * x;
+				samples[0] = source[offset];
+				samples[1] = source[offset + stepX];
+				samples[2] = source[offset + stepY];
+				samples[3] = source[offset + stepY + stepX];
+				alphaSum = red = green = blue = 0;
+				for(int i=0; i<4; i++)
+				{
+					color = samples[i];
+					alpha = color >>> 24;
+					//transparent pixels don't darken their neighbours
+					weight = alpha == 0?0.0001f:alpha;
+					alphaSum += weight;
+					red += TO_LINEAR[(color >> 16) & 0xFF] * weight;
+					green += TO_LINEAR[(color >> 8) & 0xFF] * weight;
+					blue += TO_LINEAR[color & 0xFF] * weight;
+				}
+				alpha = ((samples[0] >>> 24) + (samples[1] >>> 24) + (samples[2] >>> 24) + (samples[3] >>> 24) + 2) >> 2;
+				destination[y * width + x] = (alpha << 24) | (toSRGB(red / alphaSum) << 16) | (toSRGB(green / alphaSum) << 8) | toSRGB(blue / alphaSum);
+			}
+		}
+	}
+	/**
+	 * Converts a linear value to sRGB
+	 * @param value Linear value ([0,1])
+	 * @return sRGB value (8 bits)
+	 */
+	private static int toSRGB(float value)
+	{
+		int index = (int)(value * LINEAR_STEPS + 0.5f);
+		return TO_SRGB[index < 0?0:(index > LINEAR_STEPS?LINEAR_STEPS:index)];
+	}
+	/**
+	 * Reads levels from the cache
+	 * @param file Cache file
+	 * @param width Width of the level 0
+	 * @param height Height of the level 0
+	 * @param checksum Checksum of the level 0
+	 * @return Pixels of the levels 1 to n, null if the file doesn't exist or doesn't match the texture
+	 */
+	private static int[][] read(File file, int width, int height, int checksum)
+	{
+		if(!file.isFile())
+		{
+			return null;
+		}
+		try
+		{
+			MappedByteBuffer map = FileManager.getInstance().mapFile(file);
+			map.order(ByteOrder.nativeOrder());
+			int count = getLevelCount(width, height);
+			if(map.capacity() < HEADER_SIZE || map.getInt(0) != MAGIC || map.getInt(4) != VERSION || map.getInt(8) != width
+					|| map.getInt(12) != height || map.getInt(16) != checksum || map.getInt(20) != count)
+			{
+				return null;
+			}
+			map.position(HEADER_SIZE);
+			IntBuffer buffer = map.slice().order(ByteOrder.nativeOrder()).asIntBuffer();
+			int[][] levels = new int[count][];
+			for(int level=0; level<count; level++)
+			{
+				levels[level] = new int[getSize(width, level + 1) * getSize(height, level + 1)];
+				buffer.get(levels[level]);
+			}
+			Log.verbose("Mipmaps read from "+file.getName());
+			return levels;
+		}catch(Exception e)
+		{
+			Log.error("Mipmaps cache "+file.getName()+" can't be read");
+			Log.error(e);
+		}
+		return null;
+	}
+	/**
+	 * Writes levels into the cache
+	 * @param file Cache file
+	 * @param width Width of the level 0
+	 * @param height Height of the level 0
+	 * @param checksum Checksum of the level 0
+	 * @param levels Pixels of the levels 1 to n
+	 */
+	private static void write(File file, int width, int height, int checksum, int[][] levels)
+	{
+		long size = HEADER_SIZE;
+		for(final int[] level : levels)
+		{
+			size += level.length * 4;
+		}
+		try
+		{
+			RandomAccessFile access = new RandomAccessFile(file, "rw");
+			try
+			{
+				access.setLength(0);
+				FileChannel channel = access.getChannel();
+				ByteBuffer map = channel.map(FileChannel.MapMode.READ_WRITE, 0, size).order(ByteOrder.nativeOrder());
+				map.putInt(MAGIC).putInt(VERSION).putInt(width).putInt(height).putInt(checksum).putInt(levels.length);
+				IntBuffer buffer = map.slice().order(ByteOrder.nativeOrder()).asIntBuffer();
+				for(final int[] level : levels)
+				{
+					buffer.put(level);
+				}
+			}
+			finally
+			{
+				access.close();
+			}
+		}catch(IOException e)
+		{
+			Log.error("Mipmaps cache "+file.getName()+" can't be written");
+			Log.error(e);
+			file.delete();
+		}
+	}
+	/**
+	 * Number of levels after the level 0
+	 * @param width Width of the level 0
+	 * @param height Height of the level 0
+	 * @return Number of levels
+	 */
+	public static int getLevelCount(int width, int height)
+	{
+		int count = 0;
+		int size = java.lang.Math.max(width, height);
+		while(size > 1)
+		{
+			size >>= 1;
+			count++;
+		}
+		return count;
+	}
+	/**
+	 * Size of a level
+	 * @param size Size of the level 0
+	 * @param level Level
+	 * @return Size
+	 */
+	public static int getSize(int size, int level)
+	{
+		return java.lang.Math.max(1, size >> level);
+	}
+	/**
+	 * Indicates if a value is a power of 2
+	 * @param value Value
+	 * @return True or false
+	 */
+	private static boolean isPowerOfTwo(int value)
+	{
+		return value > 0 && (value & (value - 1)) == 0;
+	}
+}
@@ -0,0 +1,189 @@
+package dimyoux.engine.utils;
+
+import java.nio.ShortBuffer;
+
+import android.graphics.Bitmap;
+/**
+ * Converts textures to 16 bits formats (RGB565, RGBA4444) chosen from their content
+ * Channels are quantized with an ordered dithering (4x4 Bayer matrix). The 16 bits pixels are packed here :
+ * the conversions of Android are not used since they apply their own dithering.
+ * The work arrays are kept by each thread and reused
+ */
+public class TextureConverter {
+	/**
+	 * Uses an ordered dithering
+	 */
+	public static boolean DITHERING = true;
+	/**
+	 * 4x4 Bayer matrix
+	 */
+	private static final int[] BAYER = {
+		0, 8, 2, 10,
+		12, 4, 14, 6,
+		3, 11, 1, 9,
+		15, 7, 13, 5
+	};
+	/**
+	 * Pixels (ARGB), by thread
+	 */
+	private static final ThreadLocal<int[]> pixelsBuffers = new ThreadLocal<int[]>();
+	/**
+	 * Converted pixels, by thread
+	 */
+	private static final ThreadLocal<short[]> convertedBuffers = new ThreadLocal<short[]>();
+	/**
+	 * Chooses the format of a texture
+	 * Opaque textures use RGB565. Textures with alpha use RGBA4444 if their alpha is not blended
+	 * (opaque material) or if it has no more than 16 levels, RGBA8888 otherwise
+	 * @param bitmap Texture
+	 * @param translucent Indicates if a material using the texture is translucent (d or Tr lower than 1)
+	 * @return Format
+	 */
+	public static Bitmap.Config selectConfig(Bitmap bitmap, boolean translucent)
+	{
+		if(bitmap.getConfig() == Bitmap.Config.RGB_565)
+		{
+			return Bitmap.Config.RGB_565;
+		}
+		int[] pixels = getPixels(bitmap);
+		int count = bitmap.getWidth() * bitmap.getHeight();
+		boolean opaque = true;
+		boolean fourBits = true;
+		int alpha;
+		for(int i=0; i<count && (opaque || fourBits); i++)
+		{
+			alpha = pixels[i] >>> 24;
+			if(alpha != 0xFF)
+			{
+				opaque = false;
+			}
+			if(alpha % 17 != 0)
+			{
+				fourBits = false;
+			}
+		}
+		if(opaque)
+		{
+			return Bitmap.Config.RGB_565;
+		}
+		return !translucent || fourBits?Bitmap.Config.ARGB_4444:Bitmap.Config.ARGB_8888;
+	}
+	/**
+	 * Converts a texture
+	 * @param bitmap Texture (recycled if it is converted)
+	 * @param config Format (RGB_565 or ARGB_4444, other formats are not converted)
+	 * @return Converted texture
+	 */
+	public static Bitmap convert(Bitmap bitmap, Bitmap.Config config)
+	{
+		if(bitmap.getConfig() == config || (config != Bitmap.Config.RGB_565 && config != Bitmap.Config.ARGB_4444))
+		{
+			return bitmap;
+		}
+		int width = bitmap.getWidth();
+		int height = bitmap.getHeight();
+		int[] pixels = getPixels(bitmap);
+		short[] converted = convertedBuffers.get();
+		if(converted == null || converted.length < width * height)
+		{
+			converted = new short[width * height];
+			convertedBuffers.set(converted);
+		}
+		if(config == Bitmap.Config.RGB_565)
+		{
+			toRGB565(pixels, converted, width, height);
+		}else
+		{
+			toRGBA4444(pixels, converted, width, height);
+		}
+		Bitmap result = Bitmap.createBitmap(width, height, config);
+		result.copyPixelsFromBuffer(ShortBuffer.wrap(converted, 0, width * height));
+		bitmap.recycle();
+		return result;
+	}
+	/**
+	 * Converts pixels to RGB565
+	 * @param pixels Pixels (ARGB)
+	 * @param converted Converted pixels
+	 * @param width Width
+	 * @param height Height
+	 */
+	public static void toRGB565(int[] pixels, short[] converted, int width, int height)
+	{
+		int pixel, threshold;
+		for(int y=0; y<height; y++)
+		{
+			for(int x=0; x<width; x++)
+			{
+				pixel = pixels[y * width + x];
+				threshold = getThreshold(x, y);
+				converted[y * width + x] = (short)((quantize((pixel >> 16) & 0xFF, 31, threshold) << 11)
+						| (quantize((pixel >> 8) & 0xFF, 63, threshold) << 5)
+						| quantize(pixel & 0xFF, 31, threshold));
+			}
+		}
+	}
+	/**
+	 * Converts pixels to RGBA4444 (premultiplied colors, as the bitmaps of Android)
+	 * @param pixels Pixels (ARGB)
+	 * @param converted Converted pixels
+	 * @param width Width
+	 * @param height Height
+	 */
+	public static void toRGBA4444(int[] pixels, short[] converted, int width, int height)
+	{
+		int pixel, alpha, threshold;
+		for(int y=0; y<height; y++)
+		{
+			for(int x=0; x<width; x++)
+			{
+				pixel = pixels[y * width + x];
+				alpha = pixel >>> 24;
+				threshold = getThreshold(x, y);
+				converted[y * width + x] = (short)((quantize(((pixel >> 16) & 0xFF) * alpha / 255, 15, threshold) << 12)
+						| (quantize(((pixel >> 8) & 0xFF) * alpha / 255, 15, threshold) << 8)
+						| (quantize((pixel & 0xFF) * alpha / 255, 15, threshold) << 4)
+						| quantize(alpha, 15, threshold));
+			}
+		}
+	}
+	/**
+	 * Dithering threshold of a pixel
+	 * @param x X
+	 * @param y Y
+	 * @return Threshold (0 to 255), 127 without dithering
+	 */
+	private static int getThreshold(int x, int y)
+	{
+		return DITHERING?BAYER[((y & 3) << 2) | (x & 3)] * 16 + 8:127;
+	}
+	/**
+	 * Quantizes a channel
+	 * @param value Value (8 bits)
+	 * @param max Maximum quantized value
+	 * @param threshold Dithering threshold (0 to 255)
+	 * @return Quantized value
+	 */
+	private static int quantize(int value, int max, int threshold)
+	{
+		return (value * max + threshold) / 255;
+	}
+	/**
+	 * Reads the pixels of a bitmap into the array of the thread
+	 * @param bitmap Bitmap
+	 * @return Pixels (ARGB)
+	 */
+	private static int[] getPixels(Bitmap bitmap)
+	{
+		int width = bitmap.getWidth();
+		int height = bitmap.getHeight();
+		int[] pixels = pixelsBuffers.get();
+		if(pixels == null || pixels.length < width * height)
+		{
+			pixels = new int[width * height];
+			pixelsBuffers.set(pixels);
+		}
+		bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+		return pixels;
+	}
+}
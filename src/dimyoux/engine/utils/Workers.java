@@ -0,0 +1,55 @@
+package dimyoux.engine.utils;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+/**
+ * Threads shared by the engine
+ * - the pool runs the parts of the CPU-bound works (parts of the .obj files, bands of the mipmaps and of the ETC1 blocks),
+ *   it has one thread per processor. A part must not wait for another task of the pool : all its threads could be waiting
+ * - the background tasks waiting for these parts (loading, decoding of the textures) have their own threads,
+ *   created by createThreadFactory()
+ */
+public class Workers {
+	/**
+	 * Number of processors
+	 */
+	public static final int PROCESSORS = Runtime.getRuntime().availableProcessors();
+	/**
+	 * Threads running the parts of the works
+	 */
+	private static ExecutorService pool;
+	/**
+	 * Returns the threads running the parts of the works
+	 * @return Executor
+	 */
+	public static synchronized ExecutorService getPool()
+	{
+		if(pool == null)
+		{
+			pool = Executors.newFixedThreadPool(PROCESSORS, createThreadFactory("Worker", Thread.NORM_PRIORITY));
+		}
+		return pool;
+	}
+	/**
+	 * Creates a factory of daemon threads
+	 * @param name Name of the threads (followed by their number)
+	 * @param priority Priority of the threads
+	 * @return Factory
+	 */
+	public static ThreadFactory createThreadFactory(final String name, final int priority)
+	{
+		return new ThreadFactory() {
+			private int count = 0;
+			@Override
+			public synchronized Thread newThread(Runnable runnable)
+			{
+				Thread thread = new Thread(runnable, name+"-"+(count++));
+				//doesn't prevent the application from exiting
+				thread.setDaemon(true);
+				thread.setPriority(priority);
+				return thread;
+			}
+		};
+	}
+}
@@ -0,0 +1,246 @@
+package dimyoux.engine.utils.math;
+
+import java.io.Serializable;
+import java.util.List;
+/**
+ * Bounding volume : axis-aligned box and sphere
+ * The sphere is centered on the box and reaches the farthest point (tighter than the box's corners)
+ * An empty volume has a negative radius
+ */
+public class BoundingVolume implements Serializable {
+	/**
+	 * Serial version
+	 */
+	private static final long serialVersionUID = 1L;
+	/**
+	 * Minimum X
+	 */
+	public float minX = Float.MAX_VALUE;
+	/**
+	 * Minimum Y
+	 */
+	public float minY = Float.MAX_VALUE;
+	/**
+	 * Minimum Z
+	 */
+	public float minZ = Float.MAX_VALUE;
+	/**
+	 * Maximum X
+	 */
+	public float maxX = -Float.MAX_VALUE;
+	/**
+	 * Maximum Y
+	 */
+	public float maxY = -Float.MAX_VALUE;
+	/**
+	 * Maximum Z
+	 */
+	public float maxZ = -Float.MAX_VALUE;
+	/**
+	 * X of the sphere's center
+	 */
+	public float centerX;
+	/**
+	 * Y of the sphere's center
+	 */
+	public float centerY;
+	/**
+	 * Z of the sphere's center
+	 */
+	public float centerZ;
+	/**
+	 * Radius of the sphere, negative if the volume is empty
+	 */
+	public float radius = -1;
+	/**
+	 * Constructor of an empty volume
+	 */
+	public BoundingVolume()
+	{
+	}
+	/**
+	 * Constructor
+	 * @param points Points
+	 */
+	public BoundingVolume(List<Coord3D> points)
+	{
+		this(points, null, points.size());
+	}
+	/**
+	 * Constructor
+	 * @param points Points
+	 * @param remap Points used, null to use all of them
+	 * @param count Number of points used
+	 */
+	public BoundingVolume(List<Coord3D> points, int[] remap, int count)
+	{
+		if(remap == null)
+		{
+			count = points.size();
+		}
+		Coord3D point;
+		for(int i=0; i<count; i++)
+		{
+			point = points.get(remap == null?i:remap[i]);
+			includeBox(point.x, point.y, point.z);
+		}
+		if(count > 0)
+		{
+			centerX = (minX + maxX) / 2;
+			centerY = (minY + maxY) / 2;
+			centerZ = (minZ + maxZ) / 2;
+			float distance = 0;
+			for(int i=0; i<count; i++)
+			{
+				point = points.get(remap == null?i:remap[i]);
+				distance = java.lang.Math.max(distance, getSquaredDistance(point.x, point.y, point.z));
+			}
+			radius = (float)java.lang.Math.sqrt(distance);
+		}
+	}
+	/**
+	 * Indicates if the volume is empty
+	 * @return True or false
+	 */
+	public boolean isEmpty()
+	{
+		return radius < 0;
+	}
+	/**
+	 * Extends this volume to contain another one
+	 * @param volume Volume
+	 */
+	public void include(BoundingVolume volume)
+	{
+		if(volume == null || volume.isEmpty())
+		{
+			return;
+		}
+		if(isEmpty())
+		{
+			set(volume);
+			return;
+		}
+		includeBox(volume.minX, volume.minY, volume.minZ);
+		includeBox(volume.maxX, volume.maxY, volume.maxZ);
+		float dx = volume.centerX - centerX;
+		float dy = volume.centerY - centerY;
+		float dz = volume.centerZ - centerZ;
+		float distance = (float)java.lang.Math.sqrt(dx*dx + dy*dy + dz*dz);
+		if(distance + volume.radius <= radius)
+		{
+			return;
+		}
+		if(distance + radius <= volume.radius)
+		{
+			centerX = volume.centerX;
+			centerY = volume.centerY;
+			centerZ = volume.centerZ;
+			radius = volume.radius;
+			return;
+		}
+		//smallest sphere containing both spheres
+		float newRadius = (distance + radius + volume.radius) / 2;
+		float ratio = (newRadius - radius) / distance;
+		centerX += dx * ratio;
+		centerY += dy * ratio;
+		centerZ += dz * ratio;
+		radius = newRadius;
+	}
+	/**
+	 * Copies another volume
+	 * @param volume Volume
+	 */
+	public void set(BoundingVolume volume)
+	{
+		minX = volume.minX;
+		minY = volume.minY;
+		minZ = volume.minZ;
+		maxX = volume.maxX;
+		maxY = volume.maxY;
+		maxZ = volume.maxZ;
+		centerX = volume.centerX;
+		centerY = volume.centerY;
+		centerZ = volume.centerZ;
+		radius = volume.radius;
+	}
+	/**
+	 * Transforms this volume by a rotation and a translation. The box contains the transformed box
+	 * @param transform Rotation (3x3, row-major) followed by the translation (x, y, z)
+	 * @return Transformed volume
+	 */
+	public BoundingVolume transform(float[] transform)
+	{
+		BoundingVolume volume = new BoundingVolume();
+		if(isEmpty())
+		{
+			return volume;
+		}
+		float[] min = {minX, minY, minZ};
+		float[] max = {maxX, maxY, maxZ};
+		float[] newMin = new float[3];
+		float[] newMax = new float[3];
+		float a, b;
+		//each coordinate of the box is the sum of the extremes of the rotated axes (Arvo)
+		for(int i=0; i<3; i++)
+		{
+			newMin[i] = newMax[i] = transform[9+i];
+			for(int j=0; j<3; j++)
+			{
+				a = transform[i*3+j] * min[j];
+				b = transform[i*3+j] * max[j];
+				newMin[i] += java.lang.Math.min(a, b);
+				newMax[i] += java.lang.Math.max(a, b);
+			}
+		}
+		volume.minX = newMin[0];
+		volume.minY = newMin[1];
+		volume.minZ = newMin[2];
+		volume.maxX = newMax[0];
+		volume.maxY = newMax[1];
+		volume.maxZ = newMax[2];
+		volume.centerX = transform[0]*centerX + transform[1]*centerY + transform[2]*centerZ + transform[9];
+		volume.centerY = transform[3]*centerX + transform[4]*centerY + transform[5]*centerZ + transform[10];
+		volume.centerZ = transform[6]*centerX + transform[7]*centerY + transform[8]*centerZ + transform[11];
+		volume.radius = radius;
+		return volume;
+	}
+	/**
+	 * Extends the box to contain a point
+	 * @param x X
+	 * @param y Y
+	 * @param z Z
+	 */
+	private void includeBox(float x, float y, float z)
+	{
+		minX = java.lang.Math.min(minX, x);
+		minY = java.lang.Math.min(minY, y);
+		minZ = java.lang.Math.min(minZ, z);
+		maxX = java.lang.Math.max(maxX, x);
+		maxY = java.lang.Math.max(maxY, y);
+		maxZ = java.lang.Math.max(maxZ, z);
+	}
+	/**
+	 * Squared distance between a point and the sphere's center
+	 * @param x X
+	 * @param y Y
+	 * @param z Z
+	 * @return Squared distance
+	 */
+	private float getSquaredDistance(float x, float y, float z)
+	{
+		return (x - centerX) * (x - centerX) + (y - centerY) * (y - centerY) + (z - centerZ) * (z - centerZ);
+	}
+	/**
+	 * Returns a string containing a concise, human-readable description of this object.
+	 */
+	@Override
+	public String toString()
+	{
+		if(isEmpty())
+		{
+			return "[BoundingVolume empty]";
+		}
+		return "[BoundingVolume min=\""+minX+";"+minY+";"+minZ+"\" max=\""+maxX+";"+maxY+";"+maxZ+"\" center=\""+centerX+";"+centerY+";"+centerZ+"\" radius=\""+radius+"\"]";
+	}
+}
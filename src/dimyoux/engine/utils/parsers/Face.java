@@ -3,7 +3,6 @@ package dimyoux.engine.utils.parsers;
 import java.util.ArrayList;
 import java.util.List;
 
-import dimyoux.engine.utils.Log;
 /**
  * Face object
  *
@@ -27,21 +26,42 @@ public class Face
 	 */
 	public List<Integer> colors;
 	/**
-	 * Constructor
-	 * @param face "v[/t][/n][/c] v2..."
+	 * Constructor of an empty face
 	 */
-	public Face(String face)
+	public Face()
 	{
-		int id;
-		String[] metaVertices = face.split(" ");
 		vertices = new ArrayList<Integer>();
 		normals = new ArrayList<Integer>();
 		textures = new ArrayList<Integer>();
 		colors = new ArrayList<Integer>();
+	}
+	/**
+	 * Constructor
+	 * @param face "v[/t][/n][/c] v2..."
+	 */
+	public Face(String face)
+	{
+		this(new Tokenizer(face));
+	}
+	/**
+	 * Constructor
+	 * @param tokenizer Tokenizer whose remaining tokens on the current line are "v[/t][/n][/c] v2..."
+	 */
+	public Face(Tokenizer tokenizer)
+	{
+		this();
+		add(tokenizer);
+	}
+	/**
+	 * Adds all the remaining metaVertices of the tokenizer's current line to the face
+	 * @param tokenizer Tokenizer whose remaining tokens are "v[/t][/n][/c] v2..."
+	 */
+	public void add(Tokenizer tokenizer)
+	{
 		//foreach "metaVertex"
-		for(id=0; id<metaVertices.length; id++)
+		while(tokenizer.nextToken())
 		{
-			add(metaVertices[id]);
+			add(tokenizer.parseIndices());
 		}
 	}
 	/**
@@ -50,29 +70,11 @@ public class Face
 	 */
 	public void add(String metaVertex)
 	{
-		String[] metaVertexParts;
-		int i;
-		int[] indices = new int[4];
-		for(i=0; i<4; i++)
-		{
-			indices[i] = -1;
-		}
-		metaVertexParts = metaVertex.split("/");		
-		for(i=0; i<metaVertexParts.length; i++)
+		Tokenizer tokenizer = new Tokenizer(metaVertex);
+		if(tokenizer.nextToken())
 		{
-			try
-			{
-				if(metaVertexParts[i].length()>0)
-				{
-					indices[i] = Integer.parseInt(metaVertexParts[i]);
-				}
-			}
-			catch(NumberFormatException e)
-			{
-				Log.warning(e);
-			}
+			add(tokenizer.parseIndices());
 		}
-		add(indices);
 	}
 	/**
 	 * Adds a metaVertex to the face
@@ -0,0 +1,206 @@
+package dimyoux.engine.utils.parsers;
+
+import java.nio.ByteBuffer;
+/**
+ * Decimal to float conversion for the numeric fields of .obj and .mtl files
+ * ([-+]digits[.digits][(e|E)[-+]digits])
+ * Values are read straight from ASCII bytes and are correctly rounded :
+ * the result is always the one given by Float.parseFloat.
+ * Exact operations on float or double are used when they give the right result,
+ * which is the case of nearly every number written by exporters ("%f" like syntax).
+ * Other numbers (more than 18 significant digits, huge exponents, NaN...) fall back on Float.parseFloat
+ */
+public class FloatParser {
+	/**
+	 * Greatest integer such as every integer below is exactly represented by a float
+	 */
+	private static final long MAX_FLOAT_MANTISSA = 1L<<24;
+	/**
+	 * Greatest integer such as every integer below is exactly represented by a double
+	 */
+	private static final long MAX_DOUBLE_MANTISSA = 1L<<53;
+	/**
+	 * Maximum number of significant digits kept in the mantissa
+	 */
+	private static final int MAX_DIGITS = 18;
+	/**
+	 * Powers of ten exactly represented by a float
+	 */
+	private static final float[] FLOAT_POWERS_OF_TEN = {
+		1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f
+	};
+	/**
+	 * Powers of ten exactly represented by a double
+	 */
+	private static final double[] DOUBLE_POWERS_OF_TEN = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+		1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+	/**
+	 * Converts a part of a buffer to a float
+	 * @param buffer Buffer containing ASCII characters (absolute reads only)
+	 * @param start Start of the number
+	 * @param end End of the number (exclusive)
+	 * @return Value
+	 * @throws NumberFormatException The part is not a float
+	 */
+	public static float parse(ByteBuffer buffer, int start, int end)
+	{
+		int i = start;
+		boolean negative = false;
+		byte b;
+		if(i < end && ((b = buffer.get(i)) == '-' || b == '+'))
+		{
+			negative = b == '-';
+			i++;
+		}
+		long mantissa = 0;
+		int digits = 0;
+		int exponent = 0;
+		boolean truncated = false;
+		boolean point = false;
+		boolean hasDigit = false;
+		int digit;
+		for(; i<end; i++)
+		{
+			b = buffer.get(i);
+			if(b == '.')
+			{
+				if(point)
+				{
+					break;
+				}
+				point = true;
+				continue;
+			}
+			digit = b - '0';
+			if(digit < 0 || digit > 9)
+			{
+				break;
+			}
+			hasDigit = true;
+			if(digits < MAX_DIGITS)
+			{
+				mantissa = mantissa*10 + digit;
+				if(mantissa != 0)
+				{
+					digits++;
+				}
+				if(point)
+				{
+					exponent--;
+				}
+			}else
+			{
+				//digits beyond MAX_DIGITS only matter for rounding
+				truncated |= digit != 0;
+				if(!point)
+				{
+					exponent++;
+				}
+			}
+		}
+		if(hasDigit && i < end && ((b = buffer.get(i)) == 'e' || b == 'E'))
+		{
+			i++;
+			boolean negativeExponent = false;
+			if(i < end && ((b = buffer.get(i)) == '-' || b == '+'))
+			{
+				negativeExponent = b == '-';
+				i++;
+			}
+			int value = 0;
+			int exponentStart = i;
+			for(; i<end; i++)
+			{
+				digit = buffer.get(i) - '0';
+				if(digit < 0 || digit > 9)
+				{
+					break;
+				}
+				if(value < 100000)
+				{
+					value = value*10 + digit;
+				}
+			}
+			if(i == exponentStart)
+			{
+				return slowParse(buffer, start, end);
+			}
+			exponent += negativeExponent?-value:value;
+		}
+		if(!hasDigit || i < end || truncated)
+		{
+			return slowParse(buffer, start, end);
+		}
+		if(mantissa == 0)
+		{
+			return negative?-0.0f:0.0f;
+		}
+		float value;
+		if(mantissa <= MAX_FLOAT_MANTISSA && exponent >= -10 && exponent <= 10)
+		{
+			//exact operands, only one rounding
+			value = exponent < 0?(float)mantissa / FLOAT_POWERS_OF_TEN[-exponent]:(float)mantissa * FLOAT_POWERS_OF_TEN[exponent];
+		}else
+		if(mantissa <= MAX_DOUBLE_MANTISSA && exponent >= -22 && exponent <= 22)
+		{
+			double result = exponent < 0?(double)mantissa / DOUBLE_POWERS_OF_TEN[-exponent]:(double)mantissa * DOUBLE_POWERS_OF_TEN[exponent];
+			value = (float)result;
+			//the double rounding is only wrong if the double is exactly between two floats
+			if(isHalfway(result, value))
+			{
+				return slowParse(buffer, start, end);
+			}
+		}else
+		{
+			return slowParse(buffer, start, end);
+		}
+		return negative?-value:value;
+	}
+	/**
+	 * Indicates if a double is exactly in the middle of two consecutive floats
+	 * @param value Double
+	 * @param rounded Double converted to float
+	 * @return True or false
+	 */
+	private static boolean isHalfway(double value, float rounded)
+	{
+		if(Float.isInfinite(rounded))
+		{
+			return true;
+		}
+		if((double)rounded == value)
+		{
+			return false;
+		}
+		//neighbour towards value (Math.nextAfter is not available before Android 2.3)
+		float other;
+		if(rounded == 0)
+		{
+			other = value > 0?Float.MIN_VALUE:-Float.MIN_VALUE;
+		}else
+		{
+			//the bits of a float grow with its magnitude
+			int bits = Float.floatToRawIntBits(rounded);
+			other = Float.intBitsToFloat((value > rounded) == (rounded > 0)?bits + 1:bits - 1);
+		}
+		return ((double)rounded + (double)other) * 0.5 == value;
+	}
+	/**
+	 * Uses Float.parseFloat for numbers out of the fast paths
+	 * @param buffer Buffer
+	 * @param start Start of the number
+	 * @param end End of the number (exclusive)
+	 * @return Value
+	 */
+	private static float slowParse(ByteBuffer buffer, int start, int end)
+	{
+		char[] chars = new char[end - start];
+		for(int i=0; i<chars.length; i++)
+		{
+			chars[i] = (char)(buffer.get(start+i) & 0xFF);
+		}
+		return Float.parseFloat(new String(chars));
+	}
+}
@@ -0,0 +1,270 @@
+package dimyoux.engine.utils.parsers;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+/**
+ * Standalone check of FloatParser, run on a desktop JVM (not used by the application) :
+ * java dimyoux.engine.utils.parsers.FloatParserHarness [res/raw/house_obj]
+ * - correctness : a fixed corpus (halfway cases, subnormals, overflows, invalid numbers) and random numbers
+ *   (random bit patterns, midpoints between floats, long mantissas, exponents) must give the same bits as Float.parseFloat
+ * - throughput : the numbers of the v, vt and vn records of a .obj file are parsed by both parsers
+ * Exits with 1 if a value differs
+ */
+public class FloatParserHarness {
+	/**
+	 * Number of random values checked
+	 */
+	private static final int RANDOM_VALUES = 3000000;
+	/**
+	 * Number of timed passes on the file
+	 */
+	private static final int PASSES = 5;
+	/**
+	 * Fixed corpus
+	 */
+	private static final String[] CORPUS = {
+		"0", "-0", "0.0", "-0.000000", "1", "-1", "1.5", "+1.5", ".5", "5.", "0.1", "0.2", "0.3",
+		"1e10", "1e-10", "1E+5", "1e-5", "00000.000001234", "4.9999999e-7", "-0.707107", "0.577350",
+		//largest float, overflows
+		"3.4028235e38", "3.4028236e38", "3.40282357e38", "1e39",
+		//smallest normal, subnormals, underflows
+		"1.17549435E-38", "1.1754942E-38", "1.4e-45", "2.5e-45", "3.5e-45", "7e-46", "7.1e-46", "1e-50",
+		//integers around 2^24 and 2^25, halfway cases
+		"16777216", "16777217", "16777216.5", "16777218", "33554431", "33554433", "8388608.5", "8388609.5",
+		"1.00000005960464477539062", "1.000000059604644775390625", "1.0000000596046448", "1.00000017881393432617187",
+		//long mantissas
+		"123456789", "9007199254740993", "123456789012345678901234567890", "0.000000000000000000000000000001",
+		"3.141592653589793238462643383279", "2.718281828459045235360287471352",
+		//special values and invalid numbers
+		"NaN", "Infinity", "-Infinity", "1.0f", "1e", "e5", ".", "-", "+", "1.2.3", "--1", "1e+", ""
+	};
+	/**
+	 * Number of values checked
+	 */
+	private static int checked = 0;
+	/**
+	 * Number of values which differ
+	 */
+	private static int mismatches = 0;
+	/**
+	 * Runs the harness
+	 * @param args Path of a .obj file (res/raw/house_obj by default)
+	 * @throws IOException The file can't be read
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		for(final String value : CORPUS)
+		{
+			check(value);
+		}
+		Random random = new Random(42);
+		for(int i=0; i<RANDOM_VALUES; i++)
+		{
+			check(randomValue(random, i % 8));
+		}
+		System.out.println("Correctness : "+checked+" values, "+mismatches+" mismatches");
+		benchmark(new File(args.length > 0?args[0]:"res/raw/house_obj"));
+		if(mismatches > 0)
+		{
+			System.exit(1);
+		}
+	}
+	/**
+	 * Compares FloatParser with Float.parseFloat
+	 * @param value Number
+	 */
+	private static void check(String value)
+	{
+		byte[] bytes = value.getBytes();
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		float expected;
+		try
+		{
+			expected = Float.parseFloat(value);
+		}catch(NumberFormatException e)
+		{
+			expected = Float.NaN;
+		}
+		float result;
+		try
+		{
+			result = FloatParser.parse(buffer, 0, bytes.length);
+		}catch(NumberFormatException e)
+		{
+			result = Float.NaN;
+		}
+		checked++;
+		//NaN is both the result of "NaN" and of invalid numbers
+		if(Float.floatToIntBits(result) != Float.floatToIntBits(expected))
+		{
+			if(mismatches++ < 20)
+			{
+				System.out.println("Mismatch : \""+value+"\" -> "+result+" instead of "+expected);
+			}
+		}
+	}
+	/**
+	 * Generates a random number
+	 * @param random Generator
+	 * @param kind Kind of number
+	 * @return Number
+	 */
+	private static String randomValue(Random random, int kind)
+	{
+		switch(kind)
+		{
+			case 0:
+				//exporters' syntax
+				return String.format(Locale.US, "%.6f", (random.nextDouble() - 0.5) * java.lang.Math.pow(10, random.nextInt(12) - 4));
+			case 1:
+				//random bit patterns (subnormals included)
+				return Float.toString(Float.intBitsToFloat(random.nextInt()));
+			case 2:
+				return Double.toString(random.nextDouble() * java.lang.Math.pow(10, random.nextInt(40) - 20));
+			case 3:
+			{
+				//midpoint between two floats, exact or rounded to a few digits
+				int bits = random.nextInt(0x7F000000);
+				BigDecimal midpoint = new BigDecimal(Float.intBitsToFloat(bits)).add(new BigDecimal(Float.intBitsToFloat(bits + 1))).divide(new BigDecimal(2));
+				if(random.nextBoolean())
+				{
+					midpoint = midpoint.round(new MathContext(random.nextInt(20) + 5));
+				}
+				return midpoint.toString();
+			}
+			case 4:
+			{
+				//long mantissas
+				StringBuilder value = new StringBuilder();
+				int length = random.nextInt(20) + 1;
+				for(int i=0; i<length; i++)
+				{
+					value.append((char)('0' + random.nextInt(10)));
+				}
+				if(random.nextBoolean())
+				{
+					value.insert(random.nextInt(value.length() + 1), '.');
+				}
+				if(random.nextInt(3) == 0)
+				{
+					value.append('e').append(random.nextInt(90) - 45);
+				}
+				return value.toString();
+			}
+			case 5:
+				return String.format(Locale.US, "%.6f", random.nextFloat());
+			case 6:
+				return (random.nextInt(2000000) - 1000000)+"."+String.format("%06d", random.nextInt(1000000));
+			default:
+				return String.format(Locale.US, "%."+random.nextInt(10)+"e", random.nextGaussian() * java.lang.Math.pow(10, random.nextInt(76) - 38));
+		}
+	}
+	/**
+	 * Times both parsers on the numbers of the v, vt and vn records of a file
+	 * @param file .obj file
+	 * @throws IOException The file can't be read
+	 */
+	private static void benchmark(File file) throws IOException
+	{
+		if(!file.isFile())
+		{
+			System.out.println("Throughput : "+file.getPath()+" not found");
+			return;
+		}
+		byte[] content = new byte[(int)file.length()];
+		FileInputStream in = new FileInputStream(file);
+		try
+		{
+			int read = 0;
+			while(read < content.length)
+			{
+				read += in.read(content, read, content.length - read);
+			}
+		}
+		finally
+		{
+			in.close();
+		}
+		ByteBuffer buffer = ByteBuffer.wrap(content);
+		int[] numbers = findNumbers(content);
+		int count = numbers.length / 2;
+		for(int i=0; i<count; i++)
+		{
+			check(new String(content, numbers[i*2], numbers[i*2+1] - numbers[i*2]));
+		}
+		float sum = 0;
+		long start, parseFloat, floatParser;
+		for(int pass=0; pass<PASSES; pass++)
+		{
+			start = System.nanoTime();
+			for(int i=0; i<count; i++)
+			{
+				sum += Float.parseFloat(new String(content, numbers[i*2], numbers[i*2+1] - numbers[i*2]));
+			}
+			parseFloat = System.nanoTime() - start;
+			start = System.nanoTime();
+			for(int i=0; i<count; i++)
+			{
+				sum += FloatParser.parse(buffer, numbers[i*2], numbers[i*2+1]);
+			}
+			floatParser = System.nanoTime() - start;
+			System.out.println(String.format(Locale.US, "Throughput %s (%d values, pass %d) : Float.parseFloat %.1f ns/value, FloatParser %.1f ns/value",
+					file.getName(), count, pass + 1, parseFloat / (double)count, floatParser / (double)count));
+		}
+		//keeps the loops from being removed
+		System.out.println("Checksum : "+sum+", "+checked+" values checked, "+mismatches+" mismatches");
+	}
+	/**
+	 * Finds the numbers of the v, vt and vn records
+	 * @param content Content of a .obj file
+	 * @return Start and end of each number
+	 */
+	private static int[] findNumbers(byte[] content)
+	{
+		List<Integer> bounds = new ArrayList<Integer>();
+		int i = 0, start;
+		boolean record;
+		while(i < content.length)
+		{
+			record = content[i] == 'v' && i + 1 < content.length && (content[i+1] == ' ' || ((content[i+1] == 't' || content[i+1] == 'n') && i + 2 < content.length && content[i+2] == ' '));
+			//skips the keyword
+			while(i < content.length && content[i] > ' ')
+			{
+				i++;
+			}
+			while(i < content.length && content[i] != '\n')
+			{
+				if(content[i] <= ' ')
+				{
+					i++;
+					continue;
+				}
+				start = i;
+				while(i < content.length && content[i] > ' ')
+				{
+					i++;
+				}
+				if(record)
+				{
+					bounds.add(start);
+					bounds.add(i);
+				}
+			}
+			i++;
+		}
+		int[] numbers = new int[bounds.size()];
+		for(i=0; i<numbers.length; i++)
+		{
+			numbers[i] = bounds.get(i);
+		}
+		return numbers;
+	}
+}
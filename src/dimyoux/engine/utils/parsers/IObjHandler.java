@@ -0,0 +1,59 @@
+package dimyoux.engine.utils.parsers;
+
+/**
+ * Receives the records of a .obj file in the order they are read
+ * @see ObjParser#parse(Tokenizer, IObjHandler)
+ */
+public interface IObjHandler {
+	/**
+	 * Called for a "v" record
+	 * @param x X
+	 * @param y Y
+	 * @param z Z
+	 */
+	public void onVertex(float x, float y, float z);
+	/**
+	 * Called for a "vn" record
+	 * @param x X
+	 * @param y Y
+	 * @param z Z
+	 */
+	public void onNormal(float x, float y, float z);
+	/**
+	 * Called for a "vt" record
+	 * @param size Number of coordinates (2 or 3)
+	 * @param u U
+	 * @param v V (already inverted)
+	 * @param w W (0 if size is 2)
+	 */
+	public void onTexCoord(int size, float u, float v, float w);
+	/**
+	 * Called for a "vc" record
+	 * @param r Red
+	 * @param g Green
+	 * @param b Blue
+	 * @param a Alpha (1 if it is not given)
+	 */
+	public void onColor(float r, float g, float b, float a);
+	/**
+	 * Called for a "f" record
+	 * @param corners Indexes [vertex, texture, normal, color] of each corner as written in the file, -1 if an element doesn't exist
+	 * @param count Number of corners
+	 */
+	public void onFace(int[] corners, int count);
+	/**
+	 * Called for a "o" record
+	 * @param name Object name
+	 */
+	public void onObject(String name);
+	/**
+	 * Called for a "usemtl" record
+	 * @param name Material name, null for "(null)"
+	 */
+	public void onUseMaterial(String name);
+	/**
+	 * Called for a "mtllib" record
+	 * @param name Material file name
+	 */
+	public void onMaterialFile(String name);
+}
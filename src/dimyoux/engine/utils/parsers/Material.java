@@ -1,18 +1,15 @@
 package dimyoux.engine.utils.parsers;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
-import javax.microedition.khronos.opengles.GL10;
-import javax.microedition.khronos.opengles.GL11;
-
-import android.graphics.Bitmap;
-import android.opengl.GLUtils;
 import dimyoux.engine.managers.FileManager;
-import dimyoux.engine.scene.Scene;
+import dimyoux.engine.managers.TextureManager;
 import dimyoux.engine.utils.Color;
 import dimyoux.engine.utils.Log;
 //see http://paulbourke.net/dataformats/mtl/ for more details and complete the parser
@@ -40,6 +37,10 @@ public class Material implements Serializable {
 	 * Material's name
 	 */
 	public String name;
+	/**
+	 * Id in the library (see getMaterial(int)), -1 if the material is not in the library
+	 */
+	transient public int id = -1;
 	/**
 	 * Shininess
 	 */
@@ -49,25 +50,17 @@ public class Material implements Serializable {
 	 */
 	public boolean useSpecularColor;
 	/**
-	 * Id of the texture file
+	 * Id of the texture file (negative for a generated texture, see TextureManager.add())
 	 */
 	public int idTextureFile = 0;
 	/**
-	 * OpenGL index of the texture
+	 * OpenGL index of the texture (see TextureManager)
 	 */
 	transient public int textureIndex = 0;
 	/**
 	 * Optical Density or index of refraction. 1.0f means there is no refraction.
 	 */
 	public float opticalDensity = 1.0f;
-	/**
-	 * Texture sent to openGL ?
-	 */
-	transient public boolean textureSent = false;
-	/**
-	 * Texture Bitmap
-	 */
-	transient public Bitmap textureBitmap;
 	/**
 	 * Indicates if the material has a diffuse color
 	 * @return True or false
@@ -93,34 +86,46 @@ public class Material implements Serializable {
 		return specularColor != null;
 	}
 	/**
-	 * Sends the texture to openGL
+	 * Indicates if the material has a texture
+	 * @return True or false
 	 */
-	public void sendTexture()
+	public boolean hasTexture()
 	{
-		GL11 gl = Scene.gl;
-
-		int[] textures = new int[1];
-		gl.glGenTextures(1, textures, 0);
-		textureIndex = textures[0];
-
-		// ...and bind it to our array
-		gl.glBindTexture(GL10.GL_TEXTURE_2D, textureIndex);
-
-
-		gl.glTexParameterf(GL10.GL_TEXTURE_2D, GL10.GL_TEXTURE_MIN_FILTER,
-				GL10.GL_LINEAR);
-		gl.glTexParameterf(GL10.GL_TEXTURE_2D, GL10.GL_TEXTURE_MAG_FILTER,
-				GL10.GL_LINEAR);
-
-
-		gl.glTexParameterf(GL10.GL_TEXTURE_2D, GL10.GL_TEXTURE_WRAP_S,
-				GL10.GL_CLAMP_TO_EDGE);
-		gl.glTexParameterf(GL10.GL_TEXTURE_2D, GL10.GL_TEXTURE_WRAP_T,
-				GL10.GL_REPEAT);
-		Log.warning(textureBitmap.getWidth());
-		GLUtils.texImage2D(GL10.GL_TEXTURE_2D, 0, textureBitmap, 0);
-		textureSent = true;
-		Log.warning("texture sent:"+textureIndex);
+		return idTextureFile != 0;
+	}
+	/**
+	 * Indicates if the material is translucent (d or Tr lower than 1)
+	 * @return True or false
+	 */
+	public boolean isTranslucent()
+	{
+		return diffuseColor != null && diffuseColor.a < 1.0f;
+	}
+	/**
+	 * Binds the texture. It is sent to openGL if needed (see TextureManager)
+	 * Must be called by the render thread
+	 */
+	public void bindTexture()
+	{
+		textureIndex = TextureManager.getInstance().bind(idTextureFile);
+	}
+	/**
+	 * Copies the material. The copy is not in the library and shares the colors of the material
+	 * @param name Name of the copy
+	 * @return Copy
+	 */
+	public Material copy(String name)
+	{
+		Material copy = new Material();
+		copy.name = name;
+		copy.diffuseColor = diffuseColor;
+		copy.ambientColor = ambientColor;
+		copy.specularColor = specularColor;
+		copy.shininess = shininess;
+		copy.useSpecularColor = useSpecularColor;
+		copy.idTextureFile = idTextureFile;
+		copy.opticalDensity = opticalDensity;
+		return copy;
 	}
 	/**
 	 * Returns a string containing a concise, human-readable description of this object.
@@ -169,7 +174,15 @@ public class Material implements Serializable {
 	/**
 	 * Materials Library
 	 */
-	private static Map<String, Material> materials = new HashMap<String, Material>();
+	private static Map<String, Material> materials = Collections.synchronizedMap(new HashMap<String, Material>());
+	/**
+	 * Materials Library by id
+	 */
+	private static List<Material> materialsById = new ArrayList<Material>();
+	/**
+	 * Parsed material files (last material of each file), by file id
+	 */
+	private static Map<Integer, Material> libraries = new HashMap<Integer, Material>();
 	/**
 	 * Defines a new material
 	 */
@@ -225,12 +238,30 @@ public class Material implements Serializable {
 	}
 	/**
 	 * Return a Material if the name is correct
-	 * @param name Name of the material (file)
-	 * @return Material
+	 * Only the library is used : material files are not searched
+	 * @param name Name of the material
+	 * @return Material, null if the material is not in the library
 	 */
 	public static Material getMaterial(String name)
 	{
-		return Material.parse(name);
+		return name == null?null:materials.get(name);
+	}
+	/**
+	 * Return a Material from its id
+	 * @param id Id of the material (see Material.id)
+	 * @return Material, null if the id is not correct or the material was removed
+	 */
+	public static synchronized Material getMaterial(int id)
+	{
+		return id >= 0 && id < materialsById.size()?materialsById.get(id):null;
+	}
+	/**
+	 * Returns the number of ids used by the library (removed materials included)
+	 * @return Number of ids
+	 */
+	public static synchronized int getNumMaterials()
+	{
+		return materialsById.size();
 	}
 	/**
 	 * Parses a material
@@ -251,14 +282,71 @@ public class Material implements Serializable {
 		return null;
 	}
 	/**
-	 * Adds a material to the list
+	 * Adds a material to the list. The library uses its texture (see TextureManager.acquire())
 	 * @param material Material
+	 * @return True if the material is added, false if the library already has a material with the same name
 	 */
-	public static void addMaterial(Material material)
+	public static synchronized boolean addMaterial(Material material)
 	{
-		if(!materials.containsKey(material.name))
+		if(materials.containsKey(material.name))
 		{
-			materials.put(material.name, material);
+			return false;
+		}
+		material.id = materialsById.size();
+		materialsById.add(material);
+		materials.put(material.name, material);
+		if(material.hasTexture())
+		{
+			TextureManager.getInstance().acquire(material.idTextureFile, material.isTranslucent());
+		}
+		return true;
+	}
+	/**
+	 * Removes a material from the list and releases its texture (see TextureManager.release())
+	 * Its id is not reused
+	 * @param name Name of the material
+	 * @return Removed material, null if the material is not in the library
+	 */
+	public static synchronized Material removeMaterial(String name)
+	{
+		Material material = materials.remove(name);
+		if(material == null)
+		{
+			return null;
+		}
+		materialsById.set(material.id, null);
+		material.id = -1;
+		synchronized(libraries)
+		{
+			libraries.values().removeAll(Collections.singleton(material));
+		}
+		if(material.hasTexture())
+		{
+			TextureManager.getInstance().release(material.idTextureFile);
+		}
+		return material;
+	}
+	/**
+	 * Removes all the materials and releases their textures (see TextureManager.release())
+	 */
+	public static synchronized void clearMaterials()
+	{
+		for(final Material material : materialsById)
+		{
+			if(material != null)
+			{
+				material.id = -1;
+				if(material.hasTexture())
+				{
+					TextureManager.getInstance().release(material.idTextureFile);
+				}
+			}
+		}
+		materials.clear();
+		materialsById.clear();
+		synchronized(libraries)
+		{
+			libraries.clear();
 		}
 	}
 	/**
@@ -268,55 +356,59 @@ public class Material implements Serializable {
 	 */
 	public static Material parse(int id)
 	{
+		synchronized(libraries)
+		{
+			if(libraries.containsKey(id))
+			{
+				return libraries.get(id);
+			}
+		}
 		try
 		{
-			BufferedReader buffer = FileManager.getInstance().openTextFile(id);
+			Tokenizer tokenizer = new Tokenizer(FileManager.getInstance().openFile(id));
 			Log.verbose("Material file found : "+FileManager.getInstance().getFileName(id));
-			String line;
-			String[] values;
 			Material material = new Material();
 			float alpha = 1.0f;
-			while((line = buffer.readLine()) != null)
+			//textures are acquired once their materials are complete (d or Tr can follow map_Kd)
+			List<Material> textured = new ArrayList<Material>();
+			while(tokenizer.nextLine())
 			{
-				values = line.split(" ");
-				if(values[0].equals(ignore))
+				if(!tokenizer.nextToken() || tokenizer.tokenEquals(ignore))
 				{
 					continue;
 				}
-				if(values[0].equals(materialName))
+				if(tokenizer.tokenEquals(materialName))
 				{
 					material = new Material();
-					material.name = values[1];
+					material.name = tokenizer.nextToken()?tokenizer.getToken():null;
 					if(materials.containsKey(material.name))
 					{
+						//the definition is read but the material of the library is kept
 						Log.verbose("Material["+material.name+"] already exists");
-						return materials.get(material.name);
+					}else
+					{
+						addMaterial(material);
 					}
-					materials.put(values[1], material);
-				}
-				if(values[0].equals(materialShininess))
-				{
-					material.shininess = Float.parseFloat(values[1]);
-				}
-				if(values[0].equals(materialShininess))
+				}else
+				if(tokenizer.tokenEquals(materialShininess))
 				{
-					material.shininess = Float.parseFloat(values[1]);
-				}
-				if(values[0].equals(materialAmbientColor))
+					material.shininess = tokenizer.nextFloat();
+				}else
+				if(tokenizer.tokenEquals(materialAmbientColor))
 				{
-					material.ambientColor = new Color(Float.parseFloat(values[1]), Float.parseFloat(values[2]), Float.parseFloat(values[3]), alpha);
-				}
-				if(values[0].equals(materialDiffuseColor))
+					material.ambientColor = new Color(tokenizer.nextFloat(), tokenizer.nextFloat(), tokenizer.nextFloat(), alpha);
+				}else
+				if(tokenizer.tokenEquals(materialDiffuseColor))
 				{
-					material.diffuseColor = new Color(Float.parseFloat(values[1]), Float.parseFloat(values[2]), Float.parseFloat(values[3]), alpha);
-				}
-				if(values[0].equals(materialSpecularColor))
+					material.diffuseColor = new Color(tokenizer.nextFloat(), tokenizer.nextFloat(), tokenizer.nextFloat(), alpha);
+				}else
+				if(tokenizer.tokenEquals(materialSpecularColor))
 				{
-					material.specularColor = new Color(Float.parseFloat(values[1]), Float.parseFloat(values[2]), Float.parseFloat(values[3]), alpha);
-				}
-				if(values[0].equals(materialAlpha) || values[0].equals(materialAlpha2))
+					material.specularColor = new Color(tokenizer.nextFloat(), tokenizer.nextFloat(), tokenizer.nextFloat(), alpha);
+				}else
+				if(tokenizer.tokenEquals(materialAlpha) || tokenizer.tokenEquals(materialAlpha2))
 				{
-					alpha = Float.parseFloat(values[1]);
+					alpha = tokenizer.nextFloat();
 					if(material.hasAmbientColor())
 					{
 						material.ambientColor.a = alpha;
@@ -329,23 +421,52 @@ public class Material implements Serializable {
 					{
 						material.specularColor.a = alpha;
 					}
-				}
-				if(values[0].equals(materialIlluminationModel))
+				}else
+				if(tokenizer.tokenEquals(materialIlluminationModel))
 				{
-					material.useSpecularColor = Integer.parseInt(values[1])==2;
-				}
-				if(values[0].equals(materialTexture))
+					material.useSpecularColor = tokenizer.nextInt()==2;
+				}else
+				if(tokenizer.tokenEquals(materialTexture))
+				{
+					if(tokenizer.nextToken())
+					{
+						String texture = tokenizer.getToken();
+						Log.verbose("Load a texture file :"+texture);
+						material.idTextureFile = FileManager.getInstance().getFileID(texture);
+						//a redefinition of a material of the library doesn't use the texture
+						if(material.idTextureFile > 0 && getMaterial(material.name) == material && !textured.contains(material))
+						{
+							textured.add(material);
+						}
+					}
+				}else
+				if(tokenizer.tokenEquals(materialOpticalDensity))
 				{
-					Log.verbose("Load a texture file :"+values[1]);
-					material.idTextureFile = FileManager.getInstance().getFileID(values[1]);
-					material.textureBitmap = FileManager.getInstance().loadBitmap(material.idTextureFile);
+					material.opticalDensity = tokenizer.nextFloat();
 				}
-				if(values[0].equals(materialOpticalDensity))
+			}
+			tokenizer.close();
+			if(material.name == null)
+			{
+				//file without newmtl : complete, its texture is acquired if it is added
+				addMaterial(material);
+			}
+			for(final Material texturedMaterial : textured)
+			{
+				if(texturedMaterial.idTextureFile > 0)
 				{
-					material.opticalDensity = Float.parseFloat(values[1]);
+					TextureManager.getInstance().acquire(texturedMaterial.idTextureFile, texturedMaterial.isTranslucent());
 				}
 			}
-			materials.put(material.name, material);
+			if(material.name != null)
+			{
+				//the material of the library (a redefinition is not kept)
+				material = getMaterial(material.name);
+			}
+			synchronized(libraries)
+			{
+				libraries.put(id, material);
+			}
 			return material;
 		}catch(Exception e)
 		{
@@ -369,7 +490,12 @@ public class Material implements Serializable {
 	private void writeObject(java.io.ObjectOutputStream out) throws IOException
 	{
 		out.defaultWriteObject();
-		out.writeInt(idTextureFile);
+		if(idTextureFile < 0)
+		{
+			//a generated texture (see TextureManager.add()) doesn't exist once the application is restarted
+			Log.warning("Material["+name+"] : generated texture "+idTextureFile+" not saved");
+		}
+		out.writeInt(java.lang.Math.max(idTextureFile, 0));
 	}
 	/**
 	 * Deserializes the object
@@ -379,10 +505,8 @@ public class Material implements Serializable {
 	private void readObject(java.io.ObjectInputStream in) throws IOException, ClassNotFoundException
 	{
 		in.defaultReadObject();
-		idTextureFile = in.readInt();
-		if(idTextureFile > 0)
-		{
-			this.textureBitmap = FileManager.getInstance().loadBitmap(idTextureFile);
-		}
+		//not in the library until it is added to it (its texture is acquired by addMaterial())
+		id = -1;
+		idTextureFile = java.lang.Math.max(in.readInt(), 0);
 	}
 }
\ No newline at end of file
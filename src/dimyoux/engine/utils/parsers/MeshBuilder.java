@@ -1,12 +1,20 @@
 package dimyoux.engine.utils.parsers;
 
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
+import javax.microedition.khronos.opengles.GL10;
+
+import dimyoux.engine.opengl.GLConstants;
 import dimyoux.engine.scene.Mesh;
 import dimyoux.engine.utils.Buffer;
 import dimyoux.engine.utils.Color;
 import dimyoux.engine.utils.Log;
+import dimyoux.engine.utils.math.BoundingVolume;
 import dimyoux.engine.utils.math.Coord2D;
 import dimyoux.engine.utils.math.Coord3D;
 /**
@@ -17,6 +25,15 @@ import dimyoux.engine.utils.math.Coord3D;
  */
 public class MeshBuilder
 {
+	/**
+	 * Maximum number of vertices of a mesh using 16 bits indexes
+	 */
+	public static final int MAX_SHORT_INDEXED_VERTICES = 65536;
+	/**
+	 * Builds meshes with interleaved attributes (one buffer for the position, normal, texture coordinates
+	 * and color of each vertex, quantized to the types of MeshQuantizer), separate buffers of floats otherwise
+	 */
+	public static boolean INTERLEAVED = false;
 	/**
 	 * Vertices List
 	 */
@@ -205,73 +222,357 @@ public class MeshBuilder
 	public Mesh toMesh()
 	{
 		Log.verbose("Buffering "+name);
-		Mesh mesh = new Mesh();
+		if(faces.size()>0 && vertices.size() > MAX_SHORT_INDEXED_VERTICES && !GLConstants.ELEMENT_INDEX_UINT && !isAligned())
+		{
+			//split() needs the i-th normal, texture coordinates and color of the i-th vertex
+			if(!align())
+			{
+				Log.error("Mesh "+name+" can't be split : its faces don't use a normal, texture coordinates and color for each vertex");
+				return new Mesh();
+			}
+			optimize();
+		}
 		if(faces.size()>0)
 		{
-			mesh.indexesBuffer = Buffer.createShortBuffer(faces.size()*faces.get(0).size());
-			if(vertices.size()>0)
+			int[] indexes = triangulate();
+			if(MeshOptimizer.OPTIMIZE_VERTEX_CACHE)
 			{
-				mesh.verticesBuffer = Buffer.createFloatBuffer(vertices.size()*vertices.get(0).size());
+				float acmr = MeshOptimizer.getACMR(indexes, vertices.size());
+				float atvr = MeshOptimizer.getATVR(indexes, vertices.size());
+				indexes = MeshOptimizer.optimizeVertexCache(indexes, vertices.size());
+				Log.verbose("Vertex cache "+name+" : ACMR "+acmr+" -> "+MeshOptimizer.getACMR(indexes, vertices.size())+", ATVR "+atvr+" -> "+MeshOptimizer.getATVR(indexes, vertices.size()));
 			}
-			if(this.normals.size()>0)
+			if(MeshOptimizer.OPTIMIZE_OVERDRAW && isOpaque())
 			{
-				mesh.normalsBuffer = Buffer.createFloatBuffer(normals.size()*normals.get(0).size());
+				indexes = MeshOptimizer.optimizeOverdraw(indexes, vertices);
 			}
-			if(this.textureCoordinates.size()>0)
+			int vertexCount = vertices.size();
+			int[] order = null;
+			if(MeshOptimizer.OPTIMIZE_VERTEX_FETCH && hasAlignedStreams())
 			{
-				mesh.texCoordsBuffer = Buffer.createFloatBuffer(textureCoordinates.size()*textureCoordinates.get(0).size());
+				float overfetch = MeshOptimizer.getOverfetch(indexes, vertexCount, getVertexSize());
+				order = MeshOptimizer.optimizeVertexFetch(indexes, vertexCount);
+				vertexCount = order.length;
+				Log.verbose("Vertex fetch "+name+" : overfetch "+overfetch+" -> "+MeshOptimizer.getOverfetch(indexes, vertexCount, getVertexSize()));
 			}
-			if(this.colors.size()>0)
+			if(vertexCount <= MAX_SHORT_INDEXED_VERTICES || GLConstants.ELEMENT_INDEX_UINT)
 			{
-				mesh.colorsBuffer = Buffer.createFloatBuffer(colors.size()*4);
+				return createMesh(order, vertexCount, indexes, indexes.length);
 			}
-			for(final Face face : faces)
+			return split(indexes, order, vertexCount);
+		}
+		return new Mesh();
+	}
+	/**
+	 * Indicates if the i-th normal, texture coordinates and color belong to the i-th vertex
+	 * @return True or false
+	 */
+	private boolean hasAlignedStreams()
+	{
+		return (normals.size() == 0 || normals.size() == vertices.size()) && (textureCoordinates.size() == 0 || textureCoordinates.size() == vertices.size()) && (colors.size() == 0 || colors.size() == vertices.size());
+	}
+	/**
+	 * Size of a vertex in the buffers
+	 * @return Size in bytes
+	 */
+	private int getVertexSize()
+	{
+		int size = 3;
+		if(normals.size() > 0)
+		{
+			size += 3;
+		}
+		if(textureCoordinates.size() > 0)
+		{
+			size += textureCoordinates.get(0).size();
+		}
+		if(colors.size() > 0)
+		{
+			size += 4;
+		}
+		return size * Buffer.FLOAT_SIZE;
+	}
+	/**
+	 * Indicates if the material of the mesh is opaque
+	 * @return True or false
+	 */
+	private boolean isOpaque()
+	{
+		return material == null || material.diffuseColor == null || material.diffuseColor.a >= 1.0f;
+	}
+	/**
+	 * Cuts the mesh in parts small enough for 16 bits indexes
+	 * The first part is returned, the other ones are its sub meshes
+	 * @param indexes Vertices indexes of the triangles
+	 * @param order Vertex used for each index, null if the indexes are the vertices ones
+	 * @param vertexCount Number of indexed vertices
+	 * @return Mesh
+	 */
+	private Mesh split(int[] indexes, int[] order, int vertexCount)
+	{
+		if(!hasAlignedStreams())
+		{
+			//16 bits indexes can't address the vertices of a single mesh (see toMesh() and align())
+			Log.error("Mesh "+name+" can't be split : its vertices, normals, texture coordinates and colors don't match");
+			return new Mesh();
+		}
+		Mesh mesh = null;
+		Mesh part;
+		//index of each vertex inside the current part, -1 if it isn't in the part
+		int[] local = new int[vertexCount];
+		Arrays.fill(local, -1);
+		//indexed vertex and vertex used for each vertex of the current part
+		int[] partVertices = new int[MAX_SHORT_INDEXED_VERTICES];
+		int[] remap = new int[MAX_SHORT_INDEXED_VERTICES];
+		int[] partIndexes = new int[indexes.length];
+		int partVertexCount = 0, indexCount = 0, added, i, j, vertex;
+		for(i=0; i<=indexes.length; i+=3)
+		{
+			added = 0;
+			if(i < indexes.length)
 			{
-				for(Integer index : face.vertices)
+				for(j=0; j<3; j++)
 				{
-				/*	mesh.indexesBuffer.put((short)face.x);
-					mesh.indexesBuffer.put((short)face.y);
-					mesh.indexesBuffer.put((short)face.z);*/
-					mesh.indexesBuffer.put((short)((int)index));
+					if(local[indexes[i+j]] == -1)
+					{
+						added++;
+					}
 				}
 			}
-			for(final Coord3D vertex : vertices)
+			if(i == indexes.length || partVertexCount + added > MAX_SHORT_INDEXED_VERTICES)
 			{
-					mesh.verticesBuffer.put(vertex.x);
-					mesh.verticesBuffer.put(vertex.y);
-					mesh.verticesBuffer.put(vertex.z);
+				part = createMesh(remap, partVertexCount, partIndexes, indexCount);
+				if(mesh == null)
+				{
+					mesh = part;
+				}else
+				{
+					mesh.addSubMesh(part);
+				}
+				for(j=0; j<partVertexCount; j++)
+				{
+					local[partVertices[j]] = -1;
+				}
+				partVertexCount = indexCount = 0;
+				if(i == indexes.length)
+				{
+					break;
+				}
 			}
-			for(final Coord3D normal : normals)
+			for(j=0; j<3; j++)
 			{
-					mesh.normalsBuffer.put(normal.x);
-					mesh.normalsBuffer.put(normal.y);
-					mesh.normalsBuffer.put(normal.z);
+				vertex = indexes[i+j];
+				if(local[vertex] == -1)
+				{
+					local[vertex] = partVertexCount;
+					partVertices[partVertexCount] = vertex;
+					remap[partVertexCount++] = order == null?vertex:order[vertex];
+				}
+				partIndexes[indexCount++] = local[vertex];
 			}
-			for(final Coord2D text : textureCoordinates)
+		}
+		Log.verbose("Mesh "+name+" ("+vertices.size()+" vertices) split in "+(mesh.getSubMeshes() == null?1:mesh.getSubMeshes().size()+1)+" parts");
+		return mesh;
+	}
+	/**
+	 * Creates a mesh from some vertices of this MeshBuilder
+	 * @param remap Vertex used for each vertex of the mesh, null to use all the vertices
+	 * @param vertexCount Number of vertices of the mesh
+	 * @param indexes Indexes of the triangles in the mesh
+	 * @param indexCount Number of indexes
+	 * @return Mesh
+	 */
+	private Mesh createMesh(int[] remap, int vertexCount, int[] indexes, int indexCount)
+	{
+		Mesh mesh = new Mesh();
+		int i;
+		if(vertexCount > MAX_SHORT_INDEXED_VERTICES)
+		{
+			IntBuffer buffer = Buffer.createIntBuffer(indexCount);
+			buffer.put(indexes, 0, indexCount);
+			buffer.position(0);
+			mesh.setWideIndexesBuffer(buffer);
+		}else
+		{
+			mesh.indexesBuffer = Buffer.createShortBuffer(indexCount);
+			for(i=0; i<indexCount; i++)
 			{
-					mesh.texCoordsBuffer.put(text.x);
-					mesh.texCoordsBuffer.put(text.y);
-					if(mesh.texCoordsSize>2)
-					{
-						mesh.texCoordsBuffer.put(((Coord3D)text).z);
-					}
+				mesh.indexesBuffer.put((short)indexes[i]);
 			}
 			mesh.indexesBuffer.position(0);
+		}
+		if(INTERLEAVED && vertices.size()>0 && hasAlignedStreams())
+		{
+			interleave(mesh, remap, vertexCount);
+		}else
+		{
+			if(vertices.size()>0)
+			{
+				mesh.verticesBuffer = toFloatBuffer(vertices, remap, vertexCount, 3);
+			}
 			if(this.normals.size()>0)
 			{
-				mesh.normalsBuffer.position(0);
+				mesh.normalsBuffer = toFloatBuffer(normals, remap, vertexCount, 3);
 			}
 			if(this.textureCoordinates.size()>0)
 			{
-				mesh.texCoordsBuffer.position(0);
+				mesh.texCoordsSize = textureCoordinates.get(0).size();
+				mesh.texCoordsBuffer = toFloatBuffer(textureCoordinates, remap, vertexCount, mesh.texCoordsSize);
 			}
-			mesh.verticesBuffer.position(0);
-			
-			mesh.setCurrentMaterial(this.material);
-			mesh.name = this.name;			
+			if(this.colors.size()>0)
+			{
+				int count = remap == null?colors.size():vertexCount;
+				mesh.colorsBuffer = Buffer.createFloatBuffer(count*4);
+				Color color;
+				for(i=0; i<count; i++)
+				{
+					color = colors.get(remap == null?i:remap[i]);
+					mesh.colorsBuffer.put(color.r);
+					mesh.colorsBuffer.put(color.g);
+					mesh.colorsBuffer.put(color.b);
+					mesh.colorsBuffer.put(color.a);
+				}
+				mesh.colorsBuffer.position(0);
+			}
+		}
+		if(vertices.size()>0)
+		{
+			mesh.setBounds(new BoundingVolume(vertices, remap, vertexCount));
 		}
+		mesh.setCurrentMaterial(this.material);
+		mesh.name = this.name;
 		return mesh;
 	}
+	/**
+	 * Fills the interleaved attributes of a mesh : position, normal, texture coordinates and color of each vertex
+	 * The attributes are quantized to the types of MeshQuantizer. The streams must be aligned (see hasAlignedStreams())
+	 * @param mesh Mesh
+	 * @param remap Vertex used for each vertex of the mesh, null to use all the vertices
+	 * @param vertexCount Number of vertices of the mesh
+	 */
+	private void interleave(Mesh mesh, int[] remap, int vertexCount)
+	{
+		if(remap == null)
+		{
+			vertexCount = vertices.size();
+		}
+		boolean hasNormals = normals.size() > 0;
+		boolean hasTextures = textureCoordinates.size() > 0;
+		boolean hasColors = colors.size() > 0;
+		mesh.verticesType = MeshQuantizer.VERTICES_TYPE == GL10.GL_FLOAT?GL10.GL_FLOAT:GL10.GL_SHORT;
+		int offset = MeshQuantizer.getAttributeSize(mesh.verticesType, 3);
+		int normalsOffset = -1, texCoordsOffset = -1, colorsOffset = -1;
+		if(hasNormals)
+		{
+			mesh.normalsType = MeshQuantizer.NORMALS_TYPE == GL10.GL_FLOAT || MeshQuantizer.NORMALS_TYPE == GL10.GL_SHORT?MeshQuantizer.NORMALS_TYPE:GL10.GL_BYTE;
+			normalsOffset = offset;
+			offset += MeshQuantizer.getAttributeSize(mesh.normalsType, 3);
+		}
+		if(hasTextures)
+		{
+			mesh.texCoordsSize = textureCoordinates.get(0).size();
+			mesh.texCoordsType = MeshQuantizer.TEXCOORDS_TYPE == GL10.GL_FLOAT?GL10.GL_FLOAT:GL10.GL_SHORT;
+			texCoordsOffset = offset;
+			offset += MeshQuantizer.getAttributeSize(mesh.texCoordsType, mesh.texCoordsSize);
+		}
+		if(hasColors)
+		{
+			mesh.colorsType = MeshQuantizer.COLORS_TYPE == GL10.GL_FLOAT?GL10.GL_FLOAT:GL10.GL_UNSIGNED_BYTE;
+			colorsOffset = offset;
+			offset += MeshQuantizer.getAttributeSize(mesh.colorsType, 4);
+		}
+		int stride = offset;
+		float[] verticesDequantization = null, texCoordsDequantization = null;
+		if(mesh.verticesType != GL10.GL_FLOAT)
+		{
+			verticesDequantization = MeshQuantizer.getVerticesDequantization(vertices);
+		}
+		if(hasTextures && mesh.texCoordsType != GL10.GL_FLOAT)
+		{
+			texCoordsDequantization = MeshQuantizer.getTexCoordsDequantization(textureCoordinates, mesh.texCoordsSize);
+		}
+		ByteBuffer buffer = Buffer.createByteBuffer(vertexCount * stride);
+		float verticesError = 0, normalsError = 0, texCoordsError = 0, colorsError = 0;
+		int index;
+		for(int i=0; i<vertexCount; i++)
+		{
+			index = remap == null?i:remap[i];
+			buffer.position(i * stride);
+			verticesError = java.lang.Math.max(verticesError, MeshQuantizer.putVertex(buffer, vertices.get(index), mesh.verticesType, verticesDequantization));
+			if(hasNormals)
+			{
+				buffer.position(i * stride + normalsOffset);
+				normalsError = java.lang.Math.max(normalsError, MeshQuantizer.putNormal(buffer, normals.get(index), mesh.normalsType));
+			}
+			if(hasTextures)
+			{
+				buffer.position(i * stride + texCoordsOffset);
+				texCoordsError = java.lang.Math.max(texCoordsError, MeshQuantizer.putTexCoords(buffer, textureCoordinates.get(index), mesh.texCoordsSize, mesh.texCoordsType, texCoordsDequantization));
+			}
+			if(hasColors)
+			{
+				buffer.position(i * stride + colorsOffset);
+				colorsError = java.lang.Math.max(colorsError, MeshQuantizer.putColor(buffer, colors.get(index), mesh.colorsType));
+			}
+		}
+		buffer.position(0);
+		mesh.setInterleavedBuffer(buffer, stride, normalsOffset, texCoordsOffset, colorsOffset);
+		mesh.verticesDequantization = verticesDequantization;
+		mesh.texCoordsDequantization = texCoordsDequantization;
+		if(stride < getVertexSize())
+		{
+			Log.verbose("Quantization "+name+" : vertex size "+getVertexSize()+" -> "+stride+" bytes, max errors : positions "+verticesError+", normals "+normalsError+" degrees, texture coordinates "+texCoordsError+", colors "+colorsError);
+		}
+	}
+	/**
+	 * Creates a buffer from coordinates
+	 * @param coords Coordinates
+	 * @param remap Coordinates used, null to use all of them
+	 * @param count Number of coordinates used
+	 * @param size Number of values of each coordinates (2 or 3)
+	 * @return Buffer
+	 */
+	private static FloatBuffer toFloatBuffer(List<? extends Coord2D> coords, int[] remap, int count, int size)
+	{
+		if(remap == null)
+		{
+			count = coords.size();
+		}
+		FloatBuffer buffer = Buffer.createFloatBuffer(count*size);
+		Coord2D coord;
+		for(int i=0; i<count; i++)
+		{
+			coord = coords.get(remap == null?i:remap[i]);
+			buffer.put(coord.x);
+			buffer.put(coord.y);
+			if(size>2)
+			{
+				buffer.put(((Coord3D)coord).z);
+			}
+		}
+		buffer.position(0);
+		return buffer;
+	}
+	/**
+	 * Cuts the faces into triangles
+	 * @return Vertices indexes of the triangles
+	 */
+	public int[] triangulate()
+	{
+		int count = 0;
+		for(final Face face : faces)
+		{
+			count += Triangulator.getNumTriangles(face.size());
+		}
+		int[] indexes = new int[count*3];
+		Triangulator triangulator = new Triangulator();
+		int offset = 0;
+		for(final Face face : faces)
+		{
+			offset += triangulator.triangulate(vertices, face.vertices, indexes, offset);
+		}
+		return indexes;
+	}
 	/**
 	 * Translates the mesh to (0, 0, 0)
 	 */
@@ -301,32 +602,257 @@ public class MeshBuilder
 			translation.z = z;
 		}
 	}
-	//TODO:optimize function
+	/**
+	 * Welds the identical metaVertices (same position, texture coordinates, normal and color)
+	 * The faces indexes are replaced by the indexes of the kept metaVertices
+	 */
 	public void optimize()
 	{
-		/*
-		List<Coord4D> quadruplets = new ArrayList<Coord4D>();
-		Coord4D quadruplet;
+		int count = vertices.size();
+		if(count == 0)
+		{
+			return;
+		}
+		if(!isAligned())
+		{
+			Log.warning("Mesh "+name+" can't be optimized : its vertices, normals, texture coordinates and colors don't match");
+			return;
+		}
+		boolean hasTextures = textureCoordinates.size() > 0;
+		boolean hasNormals = normals.size() > 0;
+		boolean hasColors = colors.size() > 0;
+		int width = 3 + (hasTextures?4:0) + (hasNormals?3:0) + (hasColors?4:0);
+		//bits of each metaVertex
+		int[] keys = new int[count*width];
+		int i, j, k;
+		Coord3D coord;
+		Coord2D text;
+		Color color;
+		for(i=0, k=0; i<count; i++)
+		{
+			coord = vertices.get(i);
+			keys[k++] = Float.floatToIntBits(coord.x);
+			keys[k++] = Float.floatToIntBits(coord.y);
+			keys[k++] = Float.floatToIntBits(coord.z);
+			if(hasTextures)
+			{
+				text = textureCoordinates.get(i);
+				keys[k++] = text.size();
+				keys[k++] = Float.floatToIntBits(text.x);
+				keys[k++] = Float.floatToIntBits(text.y);
+				keys[k++] = text.size()>2?Float.floatToIntBits(((Coord3D)text).z):0;
+			}
+			if(hasNormals)
+			{
+				coord = normals.get(i);
+				keys[k++] = Float.floatToIntBits(coord.x);
+				keys[k++] = Float.floatToIntBits(coord.y);
+				keys[k++] = Float.floatToIntBits(coord.z);
+			}
+			if(hasColors)
+			{
+				color = colors.get(i);
+				keys[k++] = Float.floatToIntBits(color.r);
+				keys[k++] = Float.floatToIntBits(color.g);
+				keys[k++] = Float.floatToIntBits(color.b);
+				keys[k++] = Float.floatToIntBits(color.a);
+			}
+		}
+		//open addressing : each slot contains 1 + the index of the first metaVertex having this key, 0 if empty
+		int capacity = Integer.highestOneBit(count) << 2;
+		int[] table = new int[capacity];
+		int[] remap = new int[count];
+		List<Coord3D> newVertices = new ArrayList<Coord3D>();
+		List<Coord3D> newNormals = new ArrayList<Coord3D>();
+		List<Coord2D> newTextureCoordinates = new ArrayList<Coord2D>();
+		List<Color> newColors = new ArrayList<Color>();
+		int hash, slot, first;
+		for(i=0; i<count; i++)
+		{
+			hash = 0;
+			for(j=i*width; j<(i+1)*width; j++)
+			{
+				hash = hash*31 + keys[j];
+			}
+			hash ^= hash >>> 16;
+			hash *= 0x85EBCA6B;
+			hash ^= hash >>> 13;
+			slot = hash & (capacity-1);
+			while((first = table[slot]-1) > -1 && !sameKey(keys, first*width, i*width, width))
+			{
+				slot = (slot+1) & (capacity-1);
+			}
+			if(first > -1)
+			{
+				remap[i] = remap[first];
+			}else
+			{
+				table[slot] = i+1;
+				remap[i] = newVertices.size();
+				newVertices.add(vertices.get(i));
+				if(hasTextures)
+				{
+					newTextureCoordinates.add(textureCoordinates.get(i));
+				}
+				if(hasNormals)
+				{
+					newNormals.add(normals.get(i));
+				}
+				if(hasColors)
+				{
+					newColors.add(colors.get(i));
+				}
+			}
+		}
+		for(final Face face : faces)
+		{
+			remap(face.vertices, remap);
+			remap(face.textures, remap);
+			remap(face.normals, remap);
+			remap(face.colors, remap);
+		}
+		vertices = newVertices;
+		normals = newNormals;
+		textureCoordinates = newTextureCoordinates;
+		colors = newColors;
+		Log.verbose("Mesh "+name+" : "+count+" vertices welded to "+vertices.size());
+	}
+	/**
+	 * Gives its own vertex, normal, texture coordinates and color to each corner of the faces (see isAligned())
+	 * The identical corners can be welded afterwards (see optimize())
+	 * @return True if the streams are aligned, false if a face doesn't use all the streams of the mesh (nothing is changed)
+	 */
+	private boolean align()
+	{
+		boolean hasTextures = textureCoordinates.size() > 0;
+		boolean hasNormals = normals.size() > 0;
+		boolean hasColors = colors.size() > 0;
+		int i;
+		for(final Face face : faces)
+		{
+			if((hasTextures && face.textures.size() != face.size()) || (hasNormals && face.normals.size() != face.size()) || (hasColors && face.colors.size() != face.size()))
+			{
+				return false;
+			}
+			for(i=0; i<face.size(); i++)
+			{
+				if(!isIndex(face.vertices.get(i), vertices) || (hasTextures && !isIndex(face.textures.get(i), textureCoordinates))
+						|| (hasNormals && !isIndex(face.normals.get(i), normals)) || (hasColors && !isIndex(face.colors.get(i), colors)))
+				{
+					return false;
+				}
+			}
+		}
+		List<Coord3D> newVertices = new ArrayList<Coord3D>();
+		List<Coord3D> newNormals = new ArrayList<Coord3D>();
+		List<Coord2D> newTextureCoordinates = new ArrayList<Coord2D>();
+		List<Color> newColors = new ArrayList<Color>();
+		int corner;
 		for(final Face face : faces)
 		{
-			for(final Integer i : face.vertices)
+			for(i=0; i<face.size(); i++)
 			{
-				quadruplet = new Coord4D(-1, -1, 1, -1);
-				quadruplet.x = i;
-				if(face.hasTexturesCoordinates())
+				corner = newVertices.size();
+				newVertices.add(vertices.get(face.vertices.get(i)));
+				face.vertices.set(i, corner);
+				if(hasTextures)
+				{
+					newTextureCoordinates.add(textureCoordinates.get(face.textures.get(i)));
+					face.textures.set(i, corner);
+				}
+				if(hasNormals)
+				{
+					newNormals.add(normals.get(face.normals.get(i)));
+					face.normals.set(i, corner);
+				}
+				if(hasColors)
 				{
-					quadruplet.y = face.textures.get(i);
+					newColors.add(colors.get(face.colors.get(i)));
+					face.colors.set(i, corner);
 				}
-				if(face.hasNormals())
+			}
+		}
+		Log.verbose("Mesh "+name+" : "+vertices.size()+" vertices aligned to "+newVertices.size()+" corners");
+		vertices = newVertices;
+		normals = newNormals;
+		textureCoordinates = newTextureCoordinates;
+		colors = newColors;
+		return true;
+	}
+	/**
+	 * Indicates if an index is inside a list
+	 * @param index Index
+	 * @param list List
+	 * @return True or false
+	 */
+	private static boolean isIndex(int index, List<?> list)
+	{
+		return index >= 0 && index < list.size();
+	}
+	/**
+	 * Compares two keys
+	 * @param keys Keys
+	 * @param first Start of the first key
+	 * @param second Start of the second key
+	 * @param width Size of a key
+	 * @return True if the keys are equal
+	 */
+	private static boolean sameKey(int[] keys, int first, int second, int width)
+	{
+		for(int i=0; i<width; i++)
+		{
+			if(keys[first+i] != keys[second+i])
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+	/**
+	 * Replaces indexes
+	 * @param indexes Indexes
+	 * @param remap New index of each index
+	 */
+	private static void remap(List<Integer> indexes, int[] remap)
+	{
+		for(int i=0; i<indexes.size(); i++)
+		{
+			indexes.set(i, remap[indexes.get(i)]);
+		}
+	}
+	/**
+	 * Indicates if the i-th vertex, normal, texture coordinates and color describe the same metaVertex
+	 * and if the faces use the same index for all the elements of a metaVertex
+	 * @return True or false
+	 */
+	private boolean isAligned()
+	{
+		int count = vertices.size();
+		if((normals.size() > 0 && normals.size() != count) || (textureCoordinates.size() > 0 && textureCoordinates.size() != count) || (colors.size() > 0 && colors.size() != count))
+		{
+			return false;
+		}
+		int i, index;
+		for(final Face face : faces)
+		{
+			if((face.hasTexturesCoordinates() && face.textures.size() != face.size()) || (face.hasNormals() && face.normals.size() != face.size()) || (face.hasColors() && face.colors.size() != face.size()))
+			{
+				return false;
+			}
+			for(i=0; i<face.size(); i++)
+			{
+				index = face.vertices.get(i);
+				if(index < 0 || index >= count)
 				{
-					quadruplet.z = face.normals.get(i);
+					return false;
 				}
-				if(face.hasTexturesCoordinates())
+				if((face.hasTexturesCoordinates() && face.textures.get(i) != index) || (face.hasNormals() && face.normals.get(i) != index) || (face.hasColors() && face.colors.get(i) != index))
 				{
-					quadruplet.w = face.colors.get(i);
+					return false;
 				}
 			}
-		}*/
+		}
+		return true;
 	}
 	/**
 	 * Indicates if the building mesh has correct indexes
@@ -0,0 +1,388 @@
+package dimyoux.engine.utils.parsers;
+
+import java.nio.Buffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import dimyoux.engine.managers.TextureManager;
+import dimyoux.engine.scene.Mesh;
+import dimyoux.engine.utils.Log;
+import dimyoux.engine.utils.math.Coord3D;
+/**
+ * Cache of the parsed files (see ObjParser)
+ * The cache keeps either the MeshBuilders of the files or, if meshes are stored, only the built meshes
+ * (their buffers are much smaller than the builders' objects).
+ * The least recently used files are removed when the estimated size of the cache exceeds its budget.
+ * An entry uses the textures of its materials (see TextureManager.acquire()) until it is removed
+ */
+public class MeshCache {
+	/**
+	 * Default budget (in bytes)
+	 */
+	public static final long DEFAULT_BUDGET = 32*1024*1024;
+	/**
+	 * Estimated size of a coordinate or a color inside a list
+	 */
+	private static final int COORD_SIZE = 40;
+	/**
+	 * Estimated size of an index inside a face
+	 */
+	private static final int INDEX_SIZE = 20;
+	/**
+	 * Estimated size of an empty face
+	 */
+	private static final int FACE_SIZE = 120;
+	/**
+	 * Cached file
+	 */
+	public static class Entry
+	{
+		/**
+		 * MeshBuilders (null if meshes are stored)
+		 */
+		Map<String, MeshBuilder> builders;
+		/**
+		 * Meshes (null if builders are stored)
+		 */
+		List<Mesh> meshes;
+		/**
+		 * Translation of each mesh
+		 */
+		List<Coord3D> translations;
+		/**
+		 * Estimated size in bytes
+		 */
+		long size;
+		/**
+		 * Textures used by the materials (see TextureManager.acquire())
+		 */
+		List<Integer> textures = new ArrayList<Integer>();
+		/**
+		 * Indicates if this entry contains MeshBuilders
+		 * @return True or false
+		 */
+		public boolean hasBuilders()
+		{
+			return builders != null;
+		}
+		/**
+		 * Indicates if this entry contains built meshes
+		 * @return True or false
+		 */
+		public boolean hasMeshes()
+		{
+			return meshes != null;
+		}
+	}
+	/**
+	 * Entries by key, from the least recently used to the most recently used
+	 */
+	private LinkedHashMap<Object, Entry> entries;
+	/**
+	 * Budget in bytes
+	 */
+	private long budget;
+	/**
+	 * Estimated size in bytes
+	 */
+	private long size = 0;
+	/**
+	 * Indicates if built meshes are stored instead of MeshBuilders
+	 */
+	private boolean storingMeshes = false;
+	/**
+	 * Number of hits
+	 */
+	private int hits = 0;
+	/**
+	 * Number of misses
+	 */
+	private int misses = 0;
+	/**
+	 * Number of evictions
+	 */
+	private int evictions = 0;
+	/**
+	 * Constructor
+	 * @param budget Budget in bytes
+	 */
+	public MeshCache(long budget)
+	{
+		this.budget = budget;
+		entries = new LinkedHashMap<Object, Entry>(16, 0.75f, true);
+	}
+	/**
+	 * Returns an entry
+	 * @param key Key (resource id or path)
+	 * @return Entry, null if the file is not in the cache
+	 */
+	public synchronized Entry get(Object key)
+	{
+		Entry entry = entries.get(key);
+		if(entry != null)
+		{
+			hits++;
+		}else
+		{
+			misses++;
+		}
+		return entry;
+	}
+	/**
+	 * Stores the MeshBuilders of a file
+	 * @param key Key (resource id or path)
+	 * @param builders MeshBuilders
+	 */
+	public synchronized void putBuilders(Object key, Map<String, MeshBuilder> builders)
+	{
+		Entry entry = new Entry();
+		entry.builders = builders;
+		entry.size = estimateSize(builders);
+		for(final MeshBuilder builder : builders.values())
+		{
+			acquire(entry, builder.material);
+		}
+		put(key, entry);
+	}
+	/**
+	 * Stores the meshes of a file
+	 * @param key Key (resource id or path)
+	 * @param meshes Meshes
+	 * @param translations Translation of each mesh
+	 */
+	public synchronized void putMeshes(Object key, List<Mesh> meshes, List<Coord3D> translations)
+	{
+		Entry entry = new Entry();
+		entry.meshes = meshes;
+		entry.translations = translations;
+		entry.size = 0;
+		for(final Mesh mesh : meshes)
+		{
+			entry.size += estimateSize(mesh);
+			acquire(entry, mesh);
+		}
+		put(key, entry);
+	}
+	/**
+	 * Uses the textures of a mesh and of its parts
+	 * @param entry Entry
+	 * @param mesh Mesh
+	 */
+	private static void acquire(Entry entry, Mesh mesh)
+	{
+		acquire(entry, mesh.getCurrentMaterial());
+		if(mesh.getSubMeshes() != null)
+		{
+			for(final Mesh subMesh : mesh.getSubMeshes())
+			{
+				acquire(entry, subMesh);
+			}
+		}
+	}
+	/**
+	 * Uses the texture of a material
+	 * @param entry Entry
+	 * @param material Material, can be null
+	 */
+	private static void acquire(Entry entry, Material material)
+	{
+		if(material != null && material.hasTexture() && !entry.textures.contains(material.idTextureFile))
+		{
+			entry.textures.add(material.idTextureFile);
+			TextureManager.getInstance().acquire(material.idTextureFile, material.isTranslucent());
+		}
+	}
+	/**
+	 * Releases the textures of a removed entry
+	 * @param entry Entry
+	 */
+	private static void release(Entry entry)
+	{
+		for(final Integer texture : entry.textures)
+		{
+			TextureManager.getInstance().release(texture);
+		}
+		entry.textures.clear();
+	}
+	/**
+	 * Stores an entry and removes the least recently used ones if the budget is exceeded
+	 * @param key Key
+	 * @param entry Entry
+	 */
+	private void put(Object key, Entry entry)
+	{
+		Entry previous = entries.put(key, entry);
+		if(previous != null)
+		{
+			size -= previous.size;
+			release(previous);
+		}
+		size += entry.size;
+		trim();
+	}
+	/**
+	 * Removes the least recently used entries until the size fits in the budget
+	 */
+	private void trim()
+	{
+		Iterator<Map.Entry<Object, Entry>> iterator = entries.entrySet().iterator();
+		Map.Entry<Object, Entry> eldest;
+		while(size > budget && iterator.hasNext())
+		{
+			eldest = iterator.next();
+			size -= eldest.getValue().size;
+			release(eldest.getValue());
+			iterator.remove();
+			evictions++;
+			Log.verbose("Mesh cache : "+eldest.getKey()+" evicted");
+		}
+	}
+	/**
+	 * Removes a file from the cache
+	 * @param key Key (resource id or path)
+	 */
+	public synchronized void remove(Object key)
+	{
+		Entry entry = entries.remove(key);
+		if(entry != null)
+		{
+			size -= entry.size;
+			release(entry);
+		}
+	}
+	/**
+	 * Removes all the files
+	 */
+	public synchronized void clear()
+	{
+		for(final Entry entry : entries.values())
+		{
+			release(entry);
+		}
+		entries.clear();
+		size = 0;
+	}
+	/**
+	 * Sets the budget. Entries are removed if needed
+	 * @param budget Budget in bytes
+	 */
+	public synchronized void setBudget(long budget)
+	{
+		this.budget = budget;
+		trim();
+	}
+	/**
+	 * Returns the budget
+	 * @return Budget in bytes
+	 */
+	public synchronized long getBudget()
+	{
+		return budget;
+	}
+	/**
+	 * Returns the estimated size of the cache
+	 * @return Size in bytes
+	 */
+	public synchronized long getSize()
+	{
+		return size;
+	}
+	/**
+	 * Indicates if built meshes are stored instead of MeshBuilders
+	 * @return True or false
+	 */
+	public synchronized boolean isStoringMeshes()
+	{
+		return storingMeshes;
+	}
+	/**
+	 * Defines if built meshes are stored instead of MeshBuilders
+	 * Meshes are much smaller but loadMeshBuilders() has to parse their files again
+	 * @param storingMeshes True or false
+	 */
+	public synchronized void setStoringMeshes(boolean storingMeshes)
+	{
+		this.storingMeshes = storingMeshes;
+	}
+	/**
+	 * Returns the number of hits
+	 * @return Hits
+	 */
+	public synchronized int getHits()
+	{
+		return hits;
+	}
+	/**
+	 * Returns the number of misses
+	 * @return Misses
+	 */
+	public synchronized int getMisses()
+	{
+		return misses;
+	}
+	/**
+	 * Returns the number of evictions
+	 * @return Evictions
+	 */
+	public synchronized int getEvictions()
+	{
+		return evictions;
+	}
+	/**
+	 * Estimates the memory used by MeshBuilders
+	 * @param builders MeshBuilders
+	 * @return Size in bytes
+	 */
+	public static long estimateSize(Map<String, MeshBuilder> builders)
+	{
+		long size = 0;
+		for(final MeshBuilder builder : builders.values())
+		{
+			size += (long)(builder.vertices.size() + builder.normals.size() + builder.textureCoordinates.size() + builder.colors.size()) * COORD_SIZE;
+			for(final Face face : builder.faces)
+			{
+				size += FACE_SIZE + (long)(face.vertices.size() + face.normals.size() + face.textures.size() + face.colors.size()) * INDEX_SIZE;
+			}
+		}
+		return size;
+	}
+	/**
+	 * Estimates the memory used by the buffers of a mesh
+	 * @param mesh Mesh
+	 * @return Size in bytes
+	 */
+	public static long estimateSize(Mesh mesh)
+	{
+		long size = getSize(mesh.verticesBuffer, 4) + getSize(mesh.normalsBuffer, 4) + getSize(mesh.colorsBuffer, 4)
+			+ getSize(mesh.texCoordsBuffer, 4) + getSize(mesh.interleavedBuffer, 1) + getSize(mesh.indexesBuffer, 2) + getSize(mesh.wideIndexesBuffer, 4);
+		if(mesh.getSubMeshes() != null)
+		{
+			for(final Mesh subMesh : mesh.getSubMeshes())
+			{
+				size += estimateSize(subMesh);
+			}
+		}
+		return size;
+	}
+	/**
+	 * Size of a buffer
+	 * @param buffer Buffer
+	 * @param elementSize Size of an element
+	 * @return Size in bytes
+	 */
+	private static long getSize(Buffer buffer, int elementSize)
+	{
+		return buffer == null?0:(long)buffer.capacity() * elementSize;
+	}
+	/**
+	 * Returns a string containing a concise, human-readable description of this object.
+	 */
+	@Override
+	public synchronized String toString()
+	{
+		return "[MeshCache files=\""+entries.size()+"\" size=\""+size+"/"+budget+"\" hits=\""+hits+"\" misses=\""+misses+"\" evictions=\""+evictions+"\"]";
+	}
+}
@@ -0,0 +1,507 @@
+package dimyoux.engine.utils.parsers;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import dimyoux.engine.utils.math.Coord3D;
+/**
+ * Reorders the triangles and the vertices of a mesh for the GPU
+ * The vertex cache optimization follows Tom Forsyth's "Linear-Speed Vertex Cache Optimisation" :
+ * triangles are greedily chosen according to the scores of their vertices, which depend
+ * on their position in a simulated LRU cache and on the number of triangles still using them.
+ * The overdraw optimization sorts clusters of triangles so that the ones facing outside are drawn first
+ * (Sander, Nehab and Barczak, "Fast Triangle Reordering for Vertex Locality and Reduced Overdraw").
+ * The vertex fetch optimization puts the vertices in the order the triangles use them
+ */
+public class MeshOptimizer {
+	/**
+	 * Reorders the triangles of the meshes for the post-transform vertex cache (see MeshBuilder.toMesh)
+	 */
+	public static boolean OPTIMIZE_VERTEX_CACHE = true;
+	/**
+	 * Sorts the clusters of triangles of the opaque meshes to reduce overdraw (see MeshBuilder.toMesh)
+	 */
+	public static boolean OPTIMIZE_OVERDRAW = false;
+	/**
+	 * Puts the vertices of the meshes in the order their triangles use them (see MeshBuilder.toMesh)
+	 */
+	public static boolean OPTIMIZE_VERTEX_FETCH = true;
+	/**
+	 * Minimum number of triangles of a cluster for the overdraw optimization
+	 */
+	public static int MIN_CLUSTER_SIZE = 32;
+	/**
+	 * Size of the FIFO cache used to measure ACMR/ATVR
+	 */
+	public static int SIMULATED_CACHE_SIZE = 16;
+	/**
+	 * Size of the LRU cache used to score the vertices
+	 */
+	private static final int CACHE_SIZE = 32;
+	/**
+	 * Score of the vertices of the last triangle
+	 */
+	private static final float LAST_TRIANGLE_SCORE = 0.75f;
+	/**
+	 * Decay of the score along the cache
+	 */
+	private static final float CACHE_DECAY_POWER = 1.5f;
+	/**
+	 * Bonus of the vertices used by few triangles
+	 */
+	private static final float VALENCE_BOOST_SCALE = 2.0f;
+	/**
+	 * Decay of the bonus with the number of triangles
+	 */
+	private static final float VALENCE_BOOST_POWER = 0.5f;
+	/**
+	 * Maximum number of triangles with a precomputed valence bonus
+	 */
+	private static final int MAX_VALENCE = 64;
+	/**
+	 * Score of a vertex according to its position in the cache
+	 */
+	private static final float[] CACHE_SCORES = new float[CACHE_SIZE];
+	/**
+	 * Bonus of a vertex according to the number of triangles still using it
+	 */
+	private static final float[] VALENCE_SCORES = new float[MAX_VALENCE];
+	static
+	{
+		int i;
+		for(i=0; i<CACHE_SIZE; i++)
+		{
+			if(i < 3)
+			{
+				CACHE_SCORES[i] = LAST_TRIANGLE_SCORE;
+			}else
+			{
+				CACHE_SCORES[i] = (float)java.lang.Math.pow(1.0f - (float)(i - 3) / (CACHE_SIZE - 3), CACHE_DECAY_POWER);
+			}
+		}
+		for(i=1; i<MAX_VALENCE; i++)
+		{
+			VALENCE_SCORES[i] = VALENCE_BOOST_SCALE * (float)java.lang.Math.pow(i, -VALENCE_BOOST_POWER);
+		}
+	}
+	/**
+	 * Score of a vertex
+	 * @param cachePosition Position in the cache, -1 if it is not in the cache
+	 * @param valence Number of triangles not drawn yet using the vertex
+	 * @return Score
+	 */
+	private static float getScore(int cachePosition, int valence)
+	{
+		if(valence == 0)
+		{
+			//no triangle left
+			return -1.0f;
+		}
+		float score = cachePosition < 0?0:CACHE_SCORES[cachePosition];
+		if(valence < MAX_VALENCE)
+		{
+			return score + VALENCE_SCORES[valence];
+		}
+		return score + VALENCE_BOOST_SCALE * (float)java.lang.Math.pow(valence, -VALENCE_BOOST_POWER);
+	}
+	/**
+	 * Reorders triangles for the post-transform vertex cache
+	 * @param indexes Vertices indexes of the triangles
+	 * @param vertexCount Number of vertices
+	 * @return Indexes of the same triangles in the new order
+	 */
+	public static int[] optimizeVertexCache(int[] indexes, int vertexCount)
+	{
+		int triangleCount = indexes.length / 3;
+		if(triangleCount < 2)
+		{
+			return indexes.clone();
+		}
+		int i, j, k, vertex, triangle;
+		//triangles of each vertex
+		int[] valences = new int[vertexCount];
+		for(i=0; i<triangleCount*3; i++)
+		{
+			valences[indexes[i]]++;
+		}
+		int[] offsets = new int[vertexCount+1];
+		for(i=0; i<vertexCount; i++)
+		{
+			offsets[i+1] = offsets[i] + valences[i];
+		}
+		int[] adjacency = new int[triangleCount*3];
+		int[] filled = new int[vertexCount];
+		for(i=0; i<triangleCount*3; i++)
+		{
+			vertex = indexes[i];
+			adjacency[offsets[vertex] + filled[vertex]++] = i/3;
+		}
+		//scores
+		int[] cachePositions = new int[vertexCount];
+		Arrays.fill(cachePositions, -1);
+		float[] vertexScores = new float[vertexCount];
+		for(i=0; i<vertexCount; i++)
+		{
+			vertexScores[i] = getScore(-1, valences[i]);
+		}
+		float[] triangleScores = new float[triangleCount];
+		boolean[] drawn = new boolean[triangleCount];
+		for(i=0; i<triangleCount; i++)
+		{
+			triangleScores[i] = vertexScores[indexes[i*3]] + vertexScores[indexes[i*3+1]] + vertexScores[indexes[i*3+2]];
+		}
+		int[] cache = new int[CACHE_SIZE+3];
+		int[] newCache = new int[CACHE_SIZE+3];
+		int[] swap;
+		int cacheCount = 0, newCacheCount, first;
+		int[] result = new int[triangleCount*3];
+		int bestTriangle = -1;
+		float bestScore = -1, score;
+		int cursor = 0;
+		for(i=0; i<triangleCount; i++)
+		{
+			score = triangleScores[i];
+			if(score > bestScore)
+			{
+				bestScore = score;
+				bestTriangle = i;
+			}
+		}
+		for(int output=0; output<triangleCount; output++)
+		{
+			if(bestTriangle < 0)
+			{
+				//no candidate in the cache : first triangle not drawn yet
+				while(drawn[cursor])
+				{
+					cursor++;
+				}
+				bestTriangle = cursor;
+			}
+			triangle = bestTriangle;
+			drawn[triangle] = true;
+			newCacheCount = 0;
+			for(j=0; j<3; j++)
+			{
+				vertex = indexes[triangle*3+j];
+				result[output*3+j] = vertex;
+				//removes the triangle from the vertex's triangles
+				for(k=offsets[vertex]; k<offsets[vertex]+valences[vertex]; k++)
+				{
+					if(adjacency[k] == triangle)
+					{
+						adjacency[k] = adjacency[offsets[vertex]+valences[vertex]-1];
+						break;
+					}
+				}
+				valences[vertex]--;
+				if(newCacheCount == 0 || (newCache[0] != vertex && (newCacheCount == 1 || newCache[1] != vertex)))
+				{
+					newCache[newCacheCount++] = vertex;
+				}
+			}
+			first = newCacheCount;
+			//the triangle's vertices go at the top of the cache
+			for(j=0; j<cacheCount; j++)
+			{
+				vertex = cache[j];
+				if(!contains(newCache, first, vertex))
+				{
+					newCache[newCacheCount++] = vertex;
+				}
+			}
+			swap = cache;
+			cache = newCache;
+			newCache = swap;
+			cacheCount = newCacheCount;
+			for(j=0; j<cacheCount; j++)
+			{
+				vertex = cache[j];
+				cachePositions[vertex] = j < CACHE_SIZE?j:-1;
+				vertexScores[vertex] = getScore(cachePositions[vertex], valences[vertex]);
+			}
+			//only the triangles of the cached vertices have new scores
+			bestTriangle = -1;
+			bestScore = -1;
+			for(j=0; j<cacheCount; j++)
+			{
+				vertex = cache[j];
+				for(k=offsets[vertex]; k<offsets[vertex]+valences[vertex]; k++)
+				{
+					triangle = adjacency[k];
+					score = vertexScores[indexes[triangle*3]] + vertexScores[indexes[triangle*3+1]] + vertexScores[indexes[triangle*3+2]];
+					triangleScores[triangle] = score;
+					if(score > bestScore)
+					{
+						bestScore = score;
+						bestTriangle = triangle;
+					}
+				}
+			}
+			if(cacheCount > CACHE_SIZE)
+			{
+				cacheCount = CACHE_SIZE;
+			}
+		}
+		return result;
+	}
+	/**
+	 * Looks for a vertex at the beginning of a cache
+	 * @param cache Cache
+	 * @param count Number of entries to look at
+	 * @param vertex Vertex
+	 * @return True if the vertex is found
+	 */
+	private static boolean contains(int[] cache, int count, int vertex)
+	{
+		for(int i=0; i<count; i++)
+		{
+			if(cache[i] == vertex)
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+	/**
+	 * Counts the vertices transformed when the triangles are drawn with a FIFO post-transform cache
+	 * @param indexes Vertices indexes of the triangles
+	 * @param vertexCount Number of vertices
+	 * @param cacheSize Size of the cache
+	 * @return Number of cache misses
+	 */
+	public static int getCacheMisses(int[] indexes, int vertexCount, int cacheSize)
+	{
+		//time at which each vertex entered the cache, a vertex is still cached if less than cacheSize vertices entered after it
+		int[] entries = new int[vertexCount];
+		Arrays.fill(entries, Integer.MIN_VALUE/2);
+		int misses = 0;
+		int vertex;
+		for(int i=0; i<indexes.length - indexes.length%3; i++)
+		{
+			vertex = indexes[i];
+			if(misses - entries[vertex] >= cacheSize)
+			{
+				misses++;
+				entries[vertex] = misses;
+			}
+		}
+		return misses;
+	}
+	/**
+	 * Average Cache Miss Ratio : transformed vertices per triangle (0.5 is the ideal for big regular meshes, 3 the worst)
+	 * @param indexes Vertices indexes of the triangles
+	 * @param vertexCount Number of vertices
+	 * @return ACMR
+	 */
+	public static float getACMR(int[] indexes, int vertexCount)
+	{
+		int triangleCount = indexes.length / 3;
+		return triangleCount == 0?0:(float)getCacheMisses(indexes, vertexCount, SIMULATED_CACHE_SIZE) / triangleCount;
+	}
+	/**
+	 * Average Transformed Vertex Ratio : transformed vertices per vertex (1 is the ideal)
+	 * @param indexes Vertices indexes of the triangles
+	 * @param vertexCount Number of vertices
+	 * @return ATVR
+	 */
+	public static float getATVR(int[] indexes, int vertexCount)
+	{
+		boolean[] used = new boolean[vertexCount];
+		int count = 0;
+		for(int i=0; i<indexes.length - indexes.length%3; i++)
+		{
+			if(!used[indexes[i]])
+			{
+				used[indexes[i]] = true;
+				count++;
+			}
+		}
+		return count == 0?0:(float)getCacheMisses(indexes, vertexCount, SIMULATED_CACHE_SIZE) / count;
+	}
+	/**
+	 * Sorts clusters of triangles so that the ones facing outside the mesh are drawn first
+	 * Clusters are the parts of the triangles order starting where the vertex cache is missed for the 3 vertices of a triangle :
+	 * the vertex cache efficiency of the order is kept
+	 * @param indexes Vertices indexes of the triangles (usually sorted by optimizeVertexCache)
+	 * @param vertices Positions of the vertices
+	 * @return Indexes of the same triangles in the new order
+	 */
+	public static int[] optimizeOverdraw(int[] indexes, List<Coord3D> vertices)
+	{
+		int triangleCount = indexes.length / 3;
+		if(triangleCount < MIN_CLUSTER_SIZE*2)
+		{
+			return indexes.clone();
+		}
+		//clusters
+		int[] starts = new int[triangleCount+1];
+		int clusterCount = 0;
+		int[] entries = new int[vertices.size()];
+		Arrays.fill(entries, Integer.MIN_VALUE/2);
+		int misses = 0, triangleMisses, i, j, vertex;
+		for(i=0; i<triangleCount; i++)
+		{
+			triangleMisses = 0;
+			for(j=0; j<3; j++)
+			{
+				vertex = indexes[i*3+j];
+				if(misses - entries[vertex] >= SIMULATED_CACHE_SIZE)
+				{
+					misses++;
+					entries[vertex] = misses;
+					triangleMisses++;
+				}
+			}
+			if(i == 0 || (triangleMisses == 3 && i - starts[clusterCount-1] >= MIN_CLUSTER_SIZE))
+			{
+				starts[clusterCount++] = i;
+			}
+		}
+		starts[clusterCount] = triangleCount;
+		//centroid and area weighted normal of each cluster
+		float[] centroids = new float[clusterCount*3];
+		float[] normals = new float[clusterCount*3];
+		float[] areas = new float[clusterCount];
+		float meshX = 0, meshY = 0, meshZ = 0, meshArea = 0;
+		float nx, ny, nz, area;
+		Coord3D a, b, c;
+		int cluster;
+		for(cluster=0; cluster<clusterCount; cluster++)
+		{
+			for(i=starts[cluster]; i<starts[cluster+1]; i++)
+			{
+				a = vertices.get(indexes[i*3]);
+				b = vertices.get(indexes[i*3+1]);
+				c = vertices.get(indexes[i*3+2]);
+				nx = (b.y - a.y) * (c.z - a.z) - (b.z - a.z) * (c.y - a.y);
+				ny = (b.z - a.z) * (c.x - a.x) - (b.x - a.x) * (c.z - a.z);
+				nz = (b.x - a.x) * (c.y - a.y) - (b.y - a.y) * (c.x - a.x);
+				area = (float)java.lang.Math.sqrt(nx*nx + ny*ny + nz*nz);
+				normals[cluster*3] += nx;
+				normals[cluster*3+1] += ny;
+				normals[cluster*3+2] += nz;
+				centroids[cluster*3] += (a.x + b.x + c.x) * area / 3;
+				centroids[cluster*3+1] += (a.y + b.y + c.y) * area / 3;
+				centroids[cluster*3+2] += (a.z + b.z + c.z) * area / 3;
+				areas[cluster] += area;
+			}
+			meshX += centroids[cluster*3];
+			meshY += centroids[cluster*3+1];
+			meshZ += centroids[cluster*3+2];
+			meshArea += areas[cluster];
+		}
+		if(meshArea > 0)
+		{
+			meshX /= meshArea;
+			meshY /= meshArea;
+			meshZ /= meshArea;
+		}
+		//sort key : position of the cluster along its normal from the mesh centroid
+		final float[] keys = new float[clusterCount];
+		Integer[] order = new Integer[clusterCount];
+		float length;
+		for(cluster=0; cluster<clusterCount; cluster++)
+		{
+			order[cluster] = cluster;
+			if(areas[cluster] > 0)
+			{
+				length = (float)java.lang.Math.sqrt(normals[cluster*3]*normals[cluster*3] + normals[cluster*3+1]*normals[cluster*3+1] + normals[cluster*3+2]*normals[cluster*3+2]);
+				if(length > 0)
+				{
+					keys[cluster] = ((centroids[cluster*3] / areas[cluster] - meshX) * normals[cluster*3]
+						+ (centroids[cluster*3+1] / areas[cluster] - meshY) * normals[cluster*3+1]
+						+ (centroids[cluster*3+2] / areas[cluster] - meshZ) * normals[cluster*3+2]) / length;
+				}
+			}
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer first, Integer second)
+			{
+				return Float.compare(keys[second], keys[first]);
+			}
+		});
+		int[] result = new int[triangleCount*3];
+		int output = 0;
+		for(i=0; i<clusterCount; i++)
+		{
+			cluster = order[i];
+			System.arraycopy(indexes, starts[cluster]*3, result, output, (starts[cluster+1] - starts[cluster])*3);
+			output += (starts[cluster+1] - starts[cluster])*3;
+		}
+		return result;
+	}
+	/**
+	 * Gives the vertices new indexes in the order they are first used by the triangles
+	 * The indexes are replaced by the new ones, unused vertices are removed
+	 * @param indexes Vertices indexes of the triangles, replaced by the new indexes
+	 * @param vertexCount Number of vertices
+	 * @return Old index of each new vertex
+	 */
+	public static int[] optimizeVertexFetch(int[] indexes, int vertexCount)
+	{
+		int[] remap = new int[vertexCount];
+		Arrays.fill(remap, -1);
+		int[] order = new int[vertexCount];
+		int count = 0;
+		int vertex;
+		for(int i=0; i<indexes.length; i++)
+		{
+			vertex = indexes[i];
+			if(remap[vertex] == -1)
+			{
+				remap[vertex] = count;
+				order[count++] = vertex;
+			}
+			indexes[i] = remap[vertex];
+		}
+		if(count < vertexCount)
+		{
+			//vertices used by no triangle are dropped
+			int[] used = new int[count];
+			System.arraycopy(order, 0, used, 0, count);
+			return used;
+		}
+		return order;
+	}
+	/**
+	 * Overfetch of the vertices : bytes read from memory divided by the size of the used vertices (1 is the ideal)
+	 * Fetch is simulated with a 16KB direct mapped cache with 64 bytes lines
+	 * @param indexes Vertices indexes of the triangles
+	 * @param vertexCount Number of vertices
+	 * @param vertexSize Size of a vertex in bytes
+	 * @return Overfetch
+	 */
+	public static float getOverfetch(int[] indexes, int vertexCount, int vertexSize)
+	{
+		final int lineSize = 64;
+		final int lineCount = 16*1024 / lineSize;
+		int[] lines = new int[lineCount];
+		Arrays.fill(lines, -1);
+		boolean[] used = new boolean[vertexCount];
+		int fetched = 0, count = 0;
+		int vertex, start, end, line;
+		for(int i=0; i<indexes.length; i++)
+		{
+			vertex = indexes[i];
+			if(!used[vertex])
+			{
+				used[vertex] = true;
+				count++;
+			}
+			start = vertex * vertexSize / lineSize;
+			end = (vertex * vertexSize + vertexSize - 1) / lineSize;
+			for(line=start; line<=end; line++)
+			{
+				if(lines[line % lineCount] != line)
+				{
+					lines[line % lineCount] = line;
+					fetched += lineSize;
+				}
+			}
+		}
+		return count == 0?0:(float)fetched / (count * vertexSize);
+	}
+}
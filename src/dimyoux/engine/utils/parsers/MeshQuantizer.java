@@ -0,0 +1,259 @@
+package dimyoux.engine.utils.parsers;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import javax.microedition.khronos.opengles.GL10;
+
+import dimyoux.engine.opengl.GLConstants;
+import dimyoux.engine.utils.Color;
+import dimyoux.engine.utils.math.Coord2D;
+import dimyoux.engine.utils.math.Coord3D;
+/**
+ * Quantizes the interleaved attributes of the meshes (see MeshBuilder.INTERLEAVED)
+ * Normals are normalized bytes or shorts and colors unsigned bytes : OpenGL converts them back to floats.
+ * Texture coordinates and positions are shorts spanning their range in the mesh : the texture matrix and
+ * the modelview matrix dequantize them (see Mesh.texCoordsDequantization and Mesh.verticesDequantization).
+ * Positions use the same scale on each axis so that the normals keep their direction.
+ * Each put method returns the error of the quantized value
+ */
+public class MeshQuantizer {
+	/**
+	 * Type of the positions : GL_FLOAT or GL_SHORT
+	 */
+	public static int VERTICES_TYPE = GL10.GL_FLOAT;
+	/**
+	 * Type of the normals : GL_FLOAT, GL_SHORT or GL_BYTE
+	 */
+	public static int NORMALS_TYPE = GL10.GL_BYTE;
+	/**
+	 * Type of the texture coordinates : GL_FLOAT or GL_SHORT
+	 */
+	public static int TEXCOORDS_TYPE = GL10.GL_SHORT;
+	/**
+	 * Type of the colors : GL_FLOAT or GL_UNSIGNED_BYTE
+	 */
+	public static int COLORS_TYPE = GL10.GL_UNSIGNED_BYTE;
+	/**
+	 * Alignment of the attributes in a vertex
+	 */
+	private static final int ALIGNMENT = 4;
+	/**
+	 * Computes the size of an attribute in a vertex
+	 * @param type Type of the values
+	 * @param count Number of values
+	 * @return Size in bytes, aligned
+	 */
+	public static int getAttributeSize(int type, int count)
+	{
+		return (GLConstants.getTypeSize(type) * count + ALIGNMENT - 1) & ~(ALIGNMENT - 1);
+	}
+	/**
+	 * Computes the dequantization of positions : translation to the center of their box and uniform scale
+	 * @param vertices Positions
+	 * @return Translation (x, y, z) and scale
+	 */
+	public static float[] getVerticesDequantization(List<Coord3D> vertices)
+	{
+		float[] min = {Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE};
+		float[] max = {-Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE};
+		for(final Coord3D vertex : vertices)
+		{
+			include(min, max, 0, vertex.x);
+			include(min, max, 1, vertex.y);
+			include(min, max, 2, vertex.z);
+		}
+		float extent = 0;
+		float[] dequantization = new float[4];
+		for(int i=0; i<3; i++)
+		{
+			dequantization[i] = (min[i] + max[i]) / 2;
+			extent = java.lang.Math.max(extent, (max[i] - min[i]) / 2);
+		}
+		dequantization[3] = extent > 0?extent / Short.MAX_VALUE:1;
+		return dequantization;
+	}
+	/**
+	 * Computes the dequantization of texture coordinates : translation and scale of each coordinate
+	 * @param textureCoordinates Texture coordinates
+	 * @param size Number of coordinates (2 or 3)
+	 * @return Translation (u, v, w) and scale (u, v, w)
+	 */
+	public static float[] getTexCoordsDequantization(List<Coord2D> textureCoordinates, int size)
+	{
+		float[] min = {Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE};
+		float[] max = {-Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE};
+		for(final Coord2D coord : textureCoordinates)
+		{
+			include(min, max, 0, coord.x);
+			include(min, max, 1, coord.y);
+			if(size>2)
+			{
+				include(min, max, 2, ((Coord3D)coord).z);
+			}
+		}
+		float[] dequantization = {0, 0, 0, 1, 1, 1};
+		float scale;
+		for(int i=0; i<size; i++)
+		{
+			//[min, max] is mapped to [-32768, 32767]
+			scale = (max[i] - min[i]) / 65535;
+			dequantization[i] = min[i] - Short.MIN_VALUE * scale;
+			dequantization[3+i] = scale;
+		}
+		return dequantization;
+	}
+	/**
+	 * Writes a position
+	 * @param buffer Buffer (at the position of the attribute)
+	 * @param vertex Position
+	 * @param type Type of the values
+	 * @param dequantization Dequantization (see getVerticesDequantization()), unused for floats
+	 * @return Largest error on a coordinate
+	 */
+	public static float putVertex(ByteBuffer buffer, Coord3D vertex, int type, float[] dequantization)
+	{
+		if(type == GL10.GL_FLOAT)
+		{
+			buffer.putFloat(vertex.x).putFloat(vertex.y).putFloat(vertex.z);
+			return 0;
+		}
+		float error = putShort(buffer, vertex.x, dequantization[0], dequantization[3]);
+		error = java.lang.Math.max(error, putShort(buffer, vertex.y, dequantization[1], dequantization[3]));
+		return java.lang.Math.max(error, putShort(buffer, vertex.z, dequantization[2], dequantization[3]));
+	}
+	/**
+	 * Writes a normal
+	 * @param buffer Buffer (at the position of the attribute)
+	 * @param normal Normal
+	 * @param type Type of the values
+	 * @return Angle between the normal and the quantized normal, in degrees
+	 */
+	public static float putNormal(ByteBuffer buffer, Coord3D normal, int type)
+	{
+		if(type == GL10.GL_FLOAT)
+		{
+			buffer.putFloat(normal.x).putFloat(normal.y).putFloat(normal.z);
+			return 0;
+		}
+		float x = putNormalized(buffer, normal.x, type);
+		float y = putNormalized(buffer, normal.y, type);
+		float z = putNormalized(buffer, normal.z, type);
+		double length = java.lang.Math.sqrt((double)normal.x*normal.x + (double)normal.y*normal.y + (double)normal.z*normal.z)
+			* java.lang.Math.sqrt((double)x*x + (double)y*y + (double)z*z);
+		if(length == 0)
+		{
+			return 0;
+		}
+		double cos = (normal.x*x + normal.y*y + normal.z*z) / length;
+		return (float)java.lang.Math.toDegrees(java.lang.Math.acos(java.lang.Math.min(1, cos)));
+	}
+	/**
+	 * Writes texture coordinates
+	 * @param buffer Buffer (at the position of the attribute)
+	 * @param coord Texture coordinates
+	 * @param size Number of coordinates (2 or 3)
+	 * @param type Type of the values
+	 * @param dequantization Dequantization (see getTexCoordsDequantization()), unused for floats
+	 * @return Largest error on a coordinate
+	 */
+	public static float putTexCoords(ByteBuffer buffer, Coord2D coord, int size, int type, float[] dequantization)
+	{
+		if(type == GL10.GL_FLOAT)
+		{
+			buffer.putFloat(coord.x).putFloat(coord.y);
+			if(size>2)
+			{
+				buffer.putFloat(((Coord3D)coord).z);
+			}
+			return 0;
+		}
+		float error = putShort(buffer, coord.x, dequantization[0], dequantization[3]);
+		error = java.lang.Math.max(error, putShort(buffer, coord.y, dequantization[1], dequantization[4]));
+		if(size>2)
+		{
+			error = java.lang.Math.max(error, putShort(buffer, ((Coord3D)coord).z, dequantization[2], dequantization[5]));
+		}
+		return error;
+	}
+	/**
+	 * Writes a color
+	 * @param buffer Buffer (at the position of the attribute)
+	 * @param color Color
+	 * @param type Type of the values
+	 * @return Largest error on a channel
+	 */
+	public static float putColor(ByteBuffer buffer, Color color, int type)
+	{
+		if(type == GL10.GL_FLOAT)
+		{
+			buffer.putFloat(color.r).putFloat(color.g).putFloat(color.b).putFloat(color.a);
+			return 0;
+		}
+		float error = putUnsignedByte(buffer, color.r);
+		error = java.lang.Math.max(error, putUnsignedByte(buffer, color.g));
+		error = java.lang.Math.max(error, putUnsignedByte(buffer, color.b));
+		return java.lang.Math.max(error, putUnsignedByte(buffer, color.a));
+	}
+	/**
+	 * Writes a value as a short dequantized by value = short * scale + translation
+	 * @param buffer Buffer
+	 * @param value Value
+	 * @param translation Translation
+	 * @param scale Scale
+	 * @return Error
+	 */
+	private static float putShort(ByteBuffer buffer, float value, float translation, float scale)
+	{
+		int quantized = scale > 0?java.lang.Math.round((value - translation) / scale):0;
+		quantized = java.lang.Math.max(Short.MIN_VALUE, java.lang.Math.min(Short.MAX_VALUE, quantized));
+		buffer.putShort((short)quantized);
+		return java.lang.Math.abs(quantized * scale + translation - value);
+	}
+	/**
+	 * Writes a signed normalized value (OpenGL ES converts c to (2c + 1) / (2^b - 1))
+	 * @param buffer Buffer
+	 * @param value Value between -1 and 1
+	 * @param type GL_BYTE or GL_SHORT
+	 * @return Value read by OpenGL
+	 */
+	private static float putNormalized(ByteBuffer buffer, float value, int type)
+	{
+		int max = type == GL10.GL_BYTE?Byte.MAX_VALUE:Short.MAX_VALUE;
+		int range = 2 * max + 1;
+		int quantized = java.lang.Math.round((value * range - 1) / 2);
+		quantized = java.lang.Math.max(-max - 1, java.lang.Math.min(max, quantized));
+		if(type == GL10.GL_BYTE)
+		{
+			buffer.put((byte)quantized);
+		}else
+		{
+			buffer.putShort((short)quantized);
+		}
+		return (2.0f * quantized + 1) / range;
+	}
+	/**
+	 * Writes an unsigned normalized byte
+	 * @param buffer Buffer
+	 * @param value Value between 0 and 1
+	 * @return Error
+	 */
+	private static float putUnsignedByte(ByteBuffer buffer, float value)
+	{
+		int quantized = java.lang.Math.max(0, java.lang.Math.min(255, java.lang.Math.round(value * 255)));
+		buffer.put((byte)quantized);
+		return java.lang.Math.abs(quantized / 255.0f - value);
+	}
+	/**
+	 * Extends a range with a value
+	 * @param min Minimum values
+	 * @param max Maximum values
+	 * @param index Index of the range
+	 * @param value Value
+	 */
+	private static void include(float[] min, float[] max, int index, float value)
+	{
+		min[index] = java.lang.Math.min(min[index], value);
+		max[index] = java.lang.Math.max(max[index], value);
+	}
+}
@@ -0,0 +1,333 @@
+package dimyoux.engine.utils.parsers;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import dimyoux.engine.utils.Color;
+import dimyoux.engine.utils.Log;
+import dimyoux.engine.utils.math.Coord2D;
+import dimyoux.engine.utils.math.Coord3D;
+/**
+ * Builds the MeshBuilders of a .obj file
+ * v/vt/vn/vc records are kept in global pools of floats and every face is resolved
+ * against them as soon as it is received : each object's lists grow incrementally
+ */
+public class ObjBuilder implements IObjHandler {
+	/**
+	 * Initial capacity of the pools (in records)
+	 */
+	private static final int INITIAL_CAPACITY = 1024;
+	/**
+	 * Vertices pool (x, y, z)
+	 */
+	float[] vertices = new float[INITIAL_CAPACITY*3];
+	/**
+	 * Number of vertices
+	 */
+	int vertexCount;
+	/**
+	 * Normals pool (x, y, z)
+	 */
+	float[] normals = new float[INITIAL_CAPACITY*3];
+	/**
+	 * Number of normals
+	 */
+	int normalCount;
+	/**
+	 * Texture coordinates pool (u, v, w)
+	 */
+	float[] textures = new float[INITIAL_CAPACITY*3];
+	/**
+	 * Size (2 or 3) of each texture coordinates
+	 */
+	byte[] textureSizes = new byte[INITIAL_CAPACITY];
+	/**
+	 * Number of texture coordinates
+	 */
+	int textureCount;
+	/**
+	 * Colors pool (r, g, b, a)
+	 */
+	float[] colors = new float[INITIAL_CAPACITY*4];
+	/**
+	 * Number of colors
+	 */
+	int colorCount;
+	/**
+	 * Built meshes
+	 */
+	private Map<String, MeshBuilder> meshes;
+	/**
+	 * Mesh receiving the faces
+	 */
+	private MeshBuilder mesh;
+	/**
+	 * Material read before any object, kept for the unnamed object
+	 */
+	private Material pendingMaterial;
+	/**
+	 * Name of the mesh created when the file has no object
+	 */
+	private String defaultName;
+	/**
+	 * Constructor
+	 * @param defaultName Name given to the mesh if the file has no object (only one object sometimes no name is given)
+	 */
+	public ObjBuilder(String defaultName)
+	{
+		this.defaultName = defaultName;
+		meshes = new HashMap<String, MeshBuilder>();
+	}
+	/**
+	 * Returns built meshes
+	 * @return MeshBuilders by name
+	 */
+	public Map<String, MeshBuilder> getMeshes()
+	{
+		return meshes;
+	}
+	/**
+	 * Number of vertices read
+	 * @return Number of vertices
+	 */
+	public int getNumVertices()
+	{
+		return vertexCount;
+	}
+	/**
+	 * Number of normals read
+	 * @return Number of normals
+	 */
+	public int getNumNormals()
+	{
+		return normalCount;
+	}
+	/**
+	 * Number of texture coordinates read
+	 * @return Number of texture coordinates
+	 */
+	public int getNumTexCoords()
+	{
+		return textureCount;
+	}
+	/**
+	 * Number of colors read
+	 * @return Number of colors
+	 */
+	public int getNumColors()
+	{
+		return colorCount;
+	}
+	/**
+	 * Grows a pool if needed
+	 * @param pool Pool
+	 * @param size Needed size
+	 * @return Pool or a bigger copy
+	 */
+	static float[] ensureCapacity(float[] pool, int size)
+	{
+		if(size > pool.length)
+		{
+			float[] copy = new float[java.lang.Math.max(size, pool.length*2)];
+			System.arraycopy(pool, 0, copy, 0, pool.length);
+			return copy;
+		}
+		return pool;
+	}
+	/**
+	 * Grows a pool if needed
+	 * @param pool Pool
+	 * @param size Needed size
+	 * @return Pool or a bigger copy
+	 */
+	static byte[] ensureCapacity(byte[] pool, int size)
+	{
+		if(size > pool.length)
+		{
+			byte[] copy = new byte[java.lang.Math.max(size, pool.length*2)];
+			System.arraycopy(pool, 0, copy, 0, pool.length);
+			return copy;
+		}
+		return pool;
+	}
+	/**
+	 * Grows a pool if needed
+	 * @param pool Pool
+	 * @param size Needed size
+	 * @return Pool or a bigger copy
+	 */
+	static int[] ensureCapacity(int[] pool, int size)
+	{
+		if(size > pool.length)
+		{
+			int[] copy = new int[java.lang.Math.max(size, pool.length*2)];
+			System.arraycopy(pool, 0, copy, 0, pool.length);
+			return copy;
+		}
+		return pool;
+	}
+	@Override
+	public void onVertex(float x, float y, float z)
+	{
+		vertices = ensureCapacity(vertices, vertexCount*3+3);
+		vertices[vertexCount*3] = x;
+		vertices[vertexCount*3+1] = y;
+		vertices[vertexCount*3+2] = z;
+		vertexCount++;
+	}
+	@Override
+	public void onNormal(float x, float y, float z)
+	{
+		normals = ensureCapacity(normals, normalCount*3+3);
+		normals[normalCount*3] = x;
+		normals[normalCount*3+1] = y;
+		normals[normalCount*3+2] = z;
+		normalCount++;
+	}
+	@Override
+	public void onTexCoord(int size, float u, float v, float w)
+	{
+		textures = ensureCapacity(textures, textureCount*3+3);
+		textureSizes = ensureCapacity(textureSizes, textureCount+1);
+		textures[textureCount*3] = u;
+		textures[textureCount*3+1] = v;
+		textures[textureCount*3+2] = w;
+		textureSizes[textureCount] = (byte)size;
+		textureCount++;
+	}
+	@Override
+	public void onColor(float r, float g, float b, float a)
+	{
+		colors = ensureCapacity(colors, colorCount*4+4);
+		colors[colorCount*4] = r;
+		colors[colorCount*4+1] = g;
+		colors[colorCount*4+2] = b;
+		colors[colorCount*4+3] = a;
+		colorCount++;
+	}
+	/**
+	 * Appends records read elsewhere (see ObjChunk) at the end of the pools
+	 * @param chunk Records
+	 * @param from First record of each pool to append (vertices, texture coordinates, normals, colors)
+	 * @param to End of each pool to append (exclusive)
+	 */
+	void append(ObjChunk chunk, int[] from, int[] to)
+	{
+		int count = to[0] - from[0];
+		vertices = ensureCapacity(vertices, (vertexCount+count)*3);
+		System.arraycopy(chunk.vertices, from[0]*3, vertices, vertexCount*3, count*3);
+		vertexCount += count;
+		count = to[1] - from[1];
+		textures = ensureCapacity(textures, (textureCount+count)*3);
+		System.arraycopy(chunk.textures, from[1]*3, textures, textureCount*3, count*3);
+		textureSizes = ensureCapacity(textureSizes, textureCount+count);
+		System.arraycopy(chunk.textureSizes, from[1], textureSizes, textureCount, count);
+		textureCount += count;
+		count = to[2] - from[2];
+		normals = ensureCapacity(normals, (normalCount+count)*3);
+		System.arraycopy(chunk.normals, from[2]*3, normals, normalCount*3, count*3);
+		normalCount += count;
+		count = to[3] - from[3];
+		colors = ensureCapacity(colors, (colorCount+count)*4);
+		System.arraycopy(chunk.colors, from[3]*4, colors, colorCount*4, count*4);
+		colorCount += count;
+	}
+	@Override
+	public void onFace(int[] corners, int count)
+	{
+		//if only one object sometimes no name is given
+		if(mesh == null)
+		{
+			mesh = new MeshBuilder();
+			mesh.name = defaultName;
+			mesh.material = pendingMaterial;
+			meshes.put(mesh.name, mesh);
+		}
+		Face face = new Face();
+		int vertex, texture, normal, color, index;
+		for(int i=0; i<count; i++)
+		{
+			vertex = texture = normal = color = -1;
+			//1-based global indexes become 0-based mesh indexes
+			if((index = corners[i*4]) > -1)
+			{
+				index = check(index, vertexCount)*3;
+				mesh.vertices.add(new Coord3D(vertices[index], vertices[index+1], vertices[index+2]));
+				vertex = mesh.vertices.size()-1;
+			}
+			if((index = corners[i*4+1]) > -1)
+			{
+				index = check(index, textureCount);
+				if(textureSizes[index] == 3)
+				{
+					mesh.textureCoordinates.add(new Coord3D(textures[index*3], textures[index*3+1], textures[index*3+2]));
+				}else
+				{
+					mesh.textureCoordinates.add(new Coord2D(textures[index*3], textures[index*3+1]));
+				}
+				texture = mesh.textureCoordinates.size()-1;
+			}
+			if((index = corners[i*4+2]) > -1)
+			{
+				index = check(index, normalCount)*3;
+				mesh.normals.add(new Coord3D(normals[index], normals[index+1], normals[index+2]));
+				normal = mesh.normals.size()-1;
+			}
+			if((index = corners[i*4+3]) > -1)
+			{
+				index = check(index, colorCount)*4;
+				mesh.colors.add(new Color(colors[index], colors[index+1], colors[index+2], colors[index+3]));
+				color = mesh.colors.size()-1;
+			}
+			face.add(vertex, texture, normal, color);
+		}
+		mesh.faces.add(face);
+	}
+	/**
+	 * Converts a 1-based index to a 0-based one
+	 * @param index Index read in the file
+	 * @param count Number of records
+	 * @return 0-based index
+	 * @throws IndexOutOfBoundsException The record doesn't exist (yet)
+	 */
+	private static int check(int index, int count)
+	{
+		if(index < 1 || index > count)
+		{
+			throw new IndexOutOfBoundsException("Index: "+index+", Size: "+count);
+		}
+		return index-1;
+	}
+	@Override
+	public void onObject(String name)
+	{
+		mesh = meshes.get(name);
+		if(mesh == null)
+		{
+			Log.verbose("Found object : "+name);
+			mesh = new MeshBuilder();
+			mesh.name = name;
+			meshes.put(name, mesh);
+		}
+		Log.verbose("Building object : "+ name);
+	}
+	@Override
+	public void onUseMaterial(String name)
+	{
+		Material material = name == null?null:Material.parse(name);
+		if(mesh != null)
+		{
+			mesh.material = material;
+		}else
+		{
+			//kept for the unnamed object that may follow
+			pendingMaterial = material;
+		}
+	}
+	@Override
+	public void onMaterialFile(String name)
+	{
+		//read Material file
+		Material.parse(name);
+	}
+}
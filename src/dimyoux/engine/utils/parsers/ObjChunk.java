@@ -0,0 +1,243 @@
+package dimyoux.engine.utils.parsers;
+
+import java.util.ArrayList;
+import java.util.List;
+/**
+ * Records of a part of a .obj file parsed on its own (see ObjParser.PARALLEL_PARSING)
+ * v/vt/vn/vc values are stored in local pools, the other records are kept as commands.
+ * Once every part is parsed, the parts are replayed in the file order into an ObjBuilder :
+ * each face is replayed after the records read before it, the result is the same as a sequential parsing
+ */
+class ObjChunk implements IObjHandler {
+	/**
+	 * Command "f"
+	 */
+	private static final int FACE = 0;
+	/**
+	 * Command "o"
+	 */
+	private static final int OBJECT = 1;
+	/**
+	 * Command "usemtl"
+	 */
+	private static final int USE_MATERIAL = 2;
+	/**
+	 * Command "mtllib"
+	 */
+	private static final int MATERIAL_FILE = 3;
+	/**
+	 * Initial capacity of the pools (in records)
+	 */
+	private static final int INITIAL_CAPACITY = 256;
+	/**
+	 * Vertices pool (x, y, z)
+	 */
+	float[] vertices = new float[INITIAL_CAPACITY*3];
+	/**
+	 * Number of vertices
+	 */
+	int vertexCount;
+	/**
+	 * Normals pool (x, y, z)
+	 */
+	float[] normals = new float[INITIAL_CAPACITY*3];
+	/**
+	 * Number of normals
+	 */
+	int normalCount;
+	/**
+	 * Texture coordinates pool (u, v, w)
+	 */
+	float[] textures = new float[INITIAL_CAPACITY*3];
+	/**
+	 * Size (2 or 3) of each texture coordinates
+	 */
+	byte[] textureSizes = new byte[INITIAL_CAPACITY];
+	/**
+	 * Number of texture coordinates
+	 */
+	int textureCount;
+	/**
+	 * Colors pool (r, g, b, a)
+	 */
+	float[] colors = new float[INITIAL_CAPACITY*4];
+	/**
+	 * Number of colors
+	 */
+	int colorCount;
+	/**
+	 * Commands in the file order
+	 */
+	private int[] commands = new int[INITIAL_CAPACITY];
+	/**
+	 * Number of commands
+	 */
+	private int commandCount;
+	/**
+	 * Corners of the faces : number of corners followed by 4 indexes per corner
+	 */
+	private int[] faces = new int[INITIAL_CAPACITY*4];
+	/**
+	 * Size of faces
+	 */
+	private int faceLength;
+	/**
+	 * Number of vertices, texture coordinates, normals and colors read before each face
+	 */
+	private int[] records = new int[INITIAL_CAPACITY*4];
+	/**
+	 * Number of faces
+	 */
+	private int faceCount;
+	/**
+	 * Names used by "o", "usemtl" and "mtllib" commands
+	 */
+	private List<String> names = new ArrayList<String>();
+	/**
+	 * Start of the part in the file
+	 */
+	final int start;
+	/**
+	 * End of the part in the file (exclusive)
+	 */
+	final int end;
+	/**
+	 * Constructor
+	 * @param start Start of the part in the file
+	 * @param end End of the part in the file (exclusive)
+	 */
+	ObjChunk(int start, int end)
+	{
+		this.start = start;
+		this.end = end;
+	}
+	@Override
+	public void onVertex(float x, float y, float z)
+	{
+		vertices = ObjBuilder.ensureCapacity(vertices, vertexCount*3+3);
+		vertices[vertexCount*3] = x;
+		vertices[vertexCount*3+1] = y;
+		vertices[vertexCount*3+2] = z;
+		vertexCount++;
+	}
+	@Override
+	public void onNormal(float x, float y, float z)
+	{
+		normals = ObjBuilder.ensureCapacity(normals, normalCount*3+3);
+		normals[normalCount*3] = x;
+		normals[normalCount*3+1] = y;
+		normals[normalCount*3+2] = z;
+		normalCount++;
+	}
+	@Override
+	public void onTexCoord(int size, float u, float v, float w)
+	{
+		textures = ObjBuilder.ensureCapacity(textures, textureCount*3+3);
+		textureSizes = ObjBuilder.ensureCapacity(textureSizes, textureCount+1);
+		textures[textureCount*3] = u;
+		textures[textureCount*3+1] = v;
+		textures[textureCount*3+2] = w;
+		textureSizes[textureCount] = (byte)size;
+		textureCount++;
+	}
+	@Override
+	public void onColor(float r, float g, float b, float a)
+	{
+		colors = ObjBuilder.ensureCapacity(colors, colorCount*4+4);
+		colors[colorCount*4] = r;
+		colors[colorCount*4+1] = g;
+		colors[colorCount*4+2] = b;
+		colors[colorCount*4+3] = a;
+		colorCount++;
+	}
+	@Override
+	public void onFace(int[] corners, int count)
+	{
+		addCommand(FACE);
+		records = ObjBuilder.ensureCapacity(records, faceCount*4+4);
+		records[faceCount*4] = vertexCount;
+		records[faceCount*4+1] = textureCount;
+		records[faceCount*4+2] = normalCount;
+		records[faceCount*4+3] = colorCount;
+		faceCount++;
+		faces = ObjBuilder.ensureCapacity(faces, faceLength+1+count*4);
+		faces[faceLength++] = count;
+		System.arraycopy(corners, 0, faces, faceLength, count*4);
+		faceLength += count*4;
+	}
+	@Override
+	public void onObject(String name)
+	{
+		addCommand(OBJECT);
+		names.add(name);
+	}
+	@Override
+	public void onUseMaterial(String name)
+	{
+		addCommand(USE_MATERIAL);
+		names.add(name);
+	}
+	@Override
+	public void onMaterialFile(String name)
+	{
+		addCommand(MATERIAL_FILE);
+		names.add(name);
+	}
+	/**
+	 * Stores a command
+	 * @param command Command
+	 */
+	private void addCommand(int command)
+	{
+		commands = ObjBuilder.ensureCapacity(commands, commandCount+1);
+		commands[commandCount++] = command;
+	}
+	/**
+	 * Sends the records of this part to a builder
+	 * The builder must already contain the records of the previous parts
+	 * @param builder Builder
+	 */
+	void replay(ObjBuilder builder)
+	{
+		//records sent to the builder, records read before the current face
+		int[] appended = new int[4];
+		int[] read = new int[4];
+		int[] swap;
+		int[] corners = new int[4];
+		int face = 0, faceIndex = 0, name = 0, count;
+		for(int i=0; i<commandCount; i++)
+		{
+			switch(commands[i])
+			{
+				case FACE:
+					//a face can't use the records that follow it, as in a sequential parsing
+					System.arraycopy(records, faceIndex*4, read, 0, 4);
+					faceIndex++;
+					builder.append(this, appended, read);
+					swap = appended;
+					appended = read;
+					read = swap;
+					count = faces[face++];
+					corners = ObjBuilder.ensureCapacity(corners, count*4);
+					System.arraycopy(faces, face, corners, 0, count*4);
+					face += count*4;
+					builder.onFace(corners, count);
+					break;
+				case OBJECT:
+					builder.onObject(names.get(name++));
+					break;
+				case USE_MATERIAL:
+					builder.onUseMaterial(names.get(name++));
+					break;
+				case MATERIAL_FILE:
+					builder.onMaterialFile(names.get(name++));
+					break;
+			}
+		}
+		read[0] = vertexCount;
+		read[1] = textureCount;
+		read[2] = normalCount;
+		read[3] = colorCount;
+		builder.append(this, appended, read);
+	}
+}
@@ -1,21 +1,25 @@
 package dimyoux.engine.utils.parsers;
 
-import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 
 import dimyoux.engine.managers.FileManager;
 import dimyoux.engine.scene.Entity;
+import dimyoux.engine.scene.Mesh;
 import dimyoux.engine.scene.Node;
-import dimyoux.engine.utils.Color;
 import dimyoux.engine.utils.Log;
-import dimyoux.engine.utils.math.Coord2D;
+import dimyoux.engine.utils.Workers;
 import dimyoux.engine.utils.math.Coord3D;
 
 import android.content.res.Resources.NotFoundException;
@@ -36,9 +40,31 @@ public class ObjParser {
 	private static final String useMaterial = "usemtl";
 	private static final String materialFile = "mtllib";
 
-	
-	//TODO:Integer, Node and Node.clone
-	private static Map<Integer, Map<String, MeshBuilder>> meshesManager;
+	/**
+	 * Cuts big files into parts parsed by several threads
+	 */
+	public static boolean PARALLEL_PARSING = true;
+	/**
+	 * Minimum size (in bytes) of a part parsed by a thread
+	 */
+	public static int PARALLEL_MIN_CHUNK_SIZE = 256*1024;
+	/**
+	 * Packs the textures of each file into atlases (see TextureAtlas)
+	 * The materials of the file must not be shared with files loaded without atlas
+	 */
+	public static boolean USE_TEXTURE_ATLAS = false;
+	/**
+	 * Parsed files, by resource id or by path
+	 */
+	private static MeshCache cache = new MeshCache(MeshCache.DEFAULT_BUDGET);
+	/**
+	 * Returns the cache of the parsed files
+	 * @return Cache
+	 */
+	public static MeshCache getCache()
+	{
+		return cache;
+	}
 	/**
 	 * Load file
 	 * @param filename File name 
@@ -46,6 +72,12 @@ public class ObjParser {
 	 */
 	public Node load(String filename)
 	{
+		//files of the file system are mapped in memory, resources are the fallback
+		File file = FileManager.getInstance().getStoredFile(filename);
+		if(file != null)
+		{
+			return load(file);
+		}
 		return load(FileManager.getInstance().getFileID(filename));
 	}
 	/**
@@ -58,38 +90,16 @@ public class ObjParser {
 		Node node = new Node();
 		try
 		{
-			Map<String, MeshBuilder> meshes = loadMeshBuilders(id);
-			if(meshes != null)
+			MeshCache.Entry entry = cache.get(id);
+			boolean built = entry != null && entry.hasMeshes();
+			Map<String, MeshBuilder> meshes = null;
+			if(!built)
 			{
-				Log.verbose(meshes.size()+" MeshBuilder"+(meshes.size()>1?"s":"")+" loaded");
-				if(meshes.size() == 1)
-				{
-					Entity entity = new Entity();
-					node.attachEntity(entity);
-					entity.setMesh(((MeshBuilder)meshes.values().toArray()[0]).toMesh());
-					node.x = ((MeshBuilder)meshes.values().toArray()[0]).translation.x;
-					node.y = ((MeshBuilder)meshes.values().toArray()[0]).translation.y;
-					node.z = ((MeshBuilder)meshes.values().toArray()[0]).translation.z;
-					Log.verbose("Parsing file "+FileManager.getInstance().getFileName(id)+" is finished");
-					Log.verbose("Get Mesh : "+entity.getMesh());
-				}else
-				{
-					Entity entity;
-					Node _node;
-					for(final MeshBuilder mesh : meshes.values())
-					{
-						entity = new Entity();
-						_node = new Node();
-						node.attachChildNode(_node);
-						_node.attachEntity(entity);
-						entity.setMesh(mesh.toMesh());
-						_node.x = mesh.translation.x;
-						_node.y = mesh.translation.y;
-						_node.z = mesh.translation.z;
-					}
-					Log.verbose("Parsing file "+FileManager.getInstance().getFileName(id)+" is finished");
-					Log.verbose("Get "+node.getNumChildNodes()+" meshes");
-				}
+				meshes = loadMeshBuilders(id, entry);
+			}
+			if(built || meshes != null)
+			{
+				attachMeshes(node, id, meshes, entry, FileManager.getInstance().getFileName(id));
 			}else
 			{
 				try
@@ -119,242 +129,54 @@ public class ObjParser {
 	/**
 	 * Get All MeshBuilds described inside the file
 	 * @param id File id
-	 * @return Meshbuilders
+	 * @return Meshbuilders, null if the file can't be read or parsed
 	 */
 	public Map<String, MeshBuilder> loadMeshBuilders(int id)
 	{
-		Map<String, MeshBuilder> meshes = new HashMap<String, MeshBuilder>();
+		return loadMeshBuilders(id, cache.get(id));
+	}
+	/**
+	 * Get All MeshBuilds described inside the file
+	 * @param id File id
+	 * @param entry Cached file, null if the file is not in the cache
+	 * @return Meshbuilders, null if the file can't be read or parsed
+	 */
+	private Map<String, MeshBuilder> loadMeshBuilders(int id, MeshCache.Entry entry)
+	{
 		if(id != 0)
 		{
 			
 			try
 			{
-				if(meshesManager == null)
-				{
-					meshesManager = new HashMap<Integer, Map<String, MeshBuilder>>();
-				}
-				if(meshesManager.containsKey(id))
+				if(entry != null && entry.hasBuilders())
 				{
 					Log.verbose("File "+FileManager.getInstance().getFileName(id)+" already parsed");
-					return meshesManager.get(id);
+					return entry.builders;
 				}
-				MeshBuilder mesh;
-				InputStream file = FileManager.getInstance().openFile(id);
-				BufferedReader buffer = new BufferedReader(new InputStreamReader(file));
-				String line;
-				String[] values;
-				List<Coord3D> vertices = new ArrayList<Coord3D>();
-				List<Coord2D> textures = new ArrayList<Coord2D>();
-				List<Coord3D> normals = new ArrayList<Coord3D>();
-				List<Color> colors = new ArrayList<Color>();
 				Log.verbose("Parsing "+FileManager.getInstance().getFileName(id));
-				//first phase, records
-				while((line = buffer.readLine()) != null)
-				{
-					values = line.split(" ");
-					//ignore
-					if(values[0].equals(ignore))
-					{
-						continue;
-					}else
-					if(values[0].equals(materialFile))
-					{
-						//read Material file
-						Material.parse(values[1]);
-					}else
-					if(values[0].equals(vertex))
-					{
-						//add vertex
-						vertices.add(new Coord3D(values[1], values[2], values[3]));
-					}
-					else
-					if(values[0].equals(normal))
-					{
-						//add normal
-						normals.add(new Coord3D(values[1], values[2], values[3]));
-					}
-					else
-					if(values[0].equals(texCoord))
-					{
-						//add tex
-						if(values.length == 3)
-						{
-							textures.add(new Coord2D(Float.parseFloat(values[1]), Float.parseFloat(values[2])*-1.0f));
-						}else
-						{
-							if(values.length == 4)
-							{
-								textures.add(new Coord3D(Float.parseFloat(values[1]), Float.parseFloat(values[2])*-1.0f, Float.parseFloat(values[3])));
-							}
-						}
-					}else
-					if(values[0].equals(color))
-					{
-						if(values.length == 4)
-						{
-							colors.add(new Color(Float.parseFloat(values[1]), Float.parseFloat(values[2]), Float.parseFloat(values[3])));
-						}else
-						{
-							if(values.length == 5)
-							{
-								colors.add(new Color(Float.parseFloat(values[1]), Float.parseFloat(values[2]), Float.parseFloat(values[3]), Float.parseFloat(values[4])));
-							}
-						}
-					}else
-					if(values[0].equals(object))
-					{
-						if(!meshes.containsKey(values[1]))
-						{
-							Log.verbose("Found object : "+values[1]);
-							mesh = new MeshBuilder();
-							mesh.name = values[1];
-							meshes.put(values[1], mesh);
-						}
-					}
-				}	
-				file.reset();
-				Log.verbose("Building objects from "+FileManager.getInstance().getFileName(id));
-				mesh = null;
-				//if only one object sometimes no name is given
-				if(meshes.size() == 0)
-				{
-					mesh = new MeshBuilder();
-					mesh.name = FileManager.getInstance().getFileName(id);
-					meshes.put(mesh.name, mesh);
-				}
-				int objectBuilt = 0;
-				int i;
-				while((line = buffer.readLine()) != null)
+				ObjBuilder builder = new ObjBuilder(FileManager.getInstance().getFileName(id));
+				Map<String, MeshBuilder> meshes = builder.getMeshes();
+				InputStream file = FileManager.getInstance().openFile(id);
+				if(PARALLEL_PARSING && Workers.PROCESSORS > 1)
 				{
-					values = line.split(" ");
-					//ignore
-					if(values[0].equals(ignore))
-					{
-						continue;
-					}else
-					if(values[0].equals(object))
-					{
-						//Building
-						if(mesh != null && !mesh.isCorrect())
-						{
-							for(final Face face : mesh.faces)
-							{
-								for(i=0; i<face.size(); i++)
-								{
-									if(face.hasVertices())
-									{
-										mesh.vertices.add(vertices.get(face.vertices.get(i)-1).clone());
-										face.vertices.set(i, mesh.vertices.size()-1);
-									}
-									if(face.hasTexturesCoordinates())
-									{
-										mesh.textureCoordinates.add(textures.get(face.textures.get(i)-1).clone());
-										face.textures.set(i, mesh.textureCoordinates.size()-1);
-									}
-									if(face.hasNormals())
-									{
-										mesh.normals.add(normals.get(face.normals.get(i)-1).clone());
-										face.normals.set(i, mesh.normals.size()-1);
-									}
-									if(face.hasColors())
-									{
-										mesh.colors.add(colors.get(face.colors.get(i)-1).clone());
-										face.colors.set(i, mesh.colors.size()-1);
-									}
-								}
-							}
-						}
-						mesh = meshes.get(values[1]);
-						Log.verbose("Building object ["+(++objectBuilt)+"/"+meshes.size()+"]: "+ values[1]);
-					}else
-					if(values[0].equals(useMaterial))
-					{
-						if(mesh!=null)
-						{
-							if(values[1].equals("(null)"))
-							{
-								mesh.material = null;
-							}else
-							{
-								mesh.material = Material.parse(values[1]);
-							}
-						}
-					}else
-					if(values[0].equals(face))
-					{
-						if(mesh != null)
-						{
-							mesh.faces.add(new Face(line.substring(line.indexOf(" ")+1)));
-						}
-					}
-				}
-				if(mesh != null && !mesh.isCorrect())
+					parse(readFully(file), builder);
+				}else
 				{
-					for(final Face face : mesh.faces)
-					{
-						for(i=0; i<face.size(); i++)
-						{
-							if(face.hasVertices())
-							{
-								mesh.vertices.add(vertices.get(face.vertices.get(i)-1).clone());
-								face.vertices.set(i, mesh.vertices.size()-1);
-							}
-							if(face.hasTexturesCoordinates())
-							{
-								mesh.textureCoordinates.add(textures.get(face.textures.get(i)-1).clone());
-								face.textures.set(i, mesh.textureCoordinates.size()-1);
-							}
-							if(face.hasNormals())
-							{
-								mesh.normals.add(normals.get(face.normals.get(i)-1).clone());
-								face.normals.set(i, mesh.normals.size()-1);
-							}
-							if(face.hasColors())
-							{
-								mesh.colors.add(colors.get(face.colors.get(i)-1).clone());
-								face.colors.set(i, mesh.colors.size()-1);
-							}
-						}
-					}
+					//single pass : records are stored in global pools and faces are resolved against them as soon as they are read
+					Tokenizer tokenizer = new Tokenizer(file);
+					parse(tokenizer, builder);
+					tokenizer.close();
 				}
-				buffer.close();
-				file.close();
-				Log.warning("All objects are parsed");
-				Log.warning("Meshes:"+meshes.size());
-				Log.warning("Vertices:"+vertices.size());
-				Log.warning("Normals:"+normals.size());
-				Log.warning("Textures:"+textures.size());
-				Log.warning("Colors:"+colors.size());
-				Log.warning("For all objects:");
-				int countVertices = 0, countTextures = 0, countNormals = 0, countColors = 0;
-				for(final MeshBuilder _mesh : meshes.values())
+				endParsing(builder);
+				if(USE_TEXTURE_ATLAS)
 				{
-					countVertices +=_mesh.vertices.size();
-					countNormals +=_mesh.normals.size();
-					countTextures +=_mesh.textureCoordinates.size();
-					countColors +=_mesh.colors.size();
+					TextureAtlas.build(meshes);
 				}
-				Log.warning("Vertices:"+countVertices);
-				Log.warning("Normals:"+countNormals);
-				Log.warning("Textures:"+countTextures);
-				Log.warning("Colors:"+countColors);
-				countVertices = countTextures = countNormals =  countColors = 0;
-				Log.verbose("optimizing");
-				for(final MeshBuilder _mesh : meshes.values())
+				if(!cache.isStoringMeshes())
 				{
-					_mesh.optimize();
-					_mesh.normalize();
-					countVertices +=_mesh.vertices.size();
-					countNormals +=_mesh.normals.size();
-					countTextures +=_mesh.textureCoordinates.size();
-					countColors +=_mesh.colors.size();
+					cache.putBuilders(id, meshes);
 				}
-				Log.verbose("Result :");
-				Log.warning("Vertices:"+countVertices);
-				Log.warning("Normals:"+countNormals);
-				Log.warning("Textures:"+countTextures);
-				Log.warning("Colors:"+countColors);
-				meshesManager.put(id, meshes);
+				return meshes;
 			}catch(NotFoundException e)
 			{
 				Log.error(id +" file has not been found");
@@ -369,7 +191,456 @@ public class ObjParser {
 				Log.error(e);
 			}
 		}
-		return meshes;
+		return null;
 	}
 
+	/**
+	 * Load file from the file system. The file is mapped in memory
+	 * @param file File
+	 * @return A node object
+	 */
+	public Node load(File file)
+	{
+		Node node = new Node();
+		String path = file.getAbsolutePath();
+		MeshCache.Entry entry = cache.get(path);
+		boolean built = entry != null && entry.hasMeshes();
+		Map<String, MeshBuilder> meshes = null;
+		if(!built)
+		{
+			meshes = loadMeshBuilders(file, entry);
+		}
+		if(built || meshes != null)
+		{
+			attachMeshes(node, path, meshes, entry, file.getPath());
+		}else
+		{
+			Log.error("Parsing of "+file.getPath()+" failed");
+		}
+		return node;
+	}
+	/**
+	 * Get All MeshBuilds described inside a file of the file system
+	 * The file is mapped in memory and parsed directly from the mapped bytes
+	 * @param file File
+	 * @return Meshbuilders, null if the file can't be read or parsed
+	 */
+	public Map<String, MeshBuilder> loadMeshBuilders(File file)
+	{
+		return loadMeshBuilders(file, file == null?null:cache.get(file.getAbsolutePath()));
+	}
+	/**
+	 * Get All MeshBuilds described inside a file of the file system
+	 * @param file File
+	 * @param entry Cached file, null if the file is not in the cache
+	 * @return Meshbuilders, null if the file can't be read or parsed
+	 */
+	private Map<String, MeshBuilder> loadMeshBuilders(File file, MeshCache.Entry entry)
+	{
+		if(file != null)
+		{
+			String path = file.getAbsolutePath();
+			try
+			{
+				if(entry != null && entry.hasBuilders())
+				{
+					Log.verbose("File "+path+" already parsed");
+					return entry.builders;
+				}
+				Log.verbose("Parsing "+path);
+				ObjBuilder builder = new ObjBuilder(file.getPath());
+				Map<String, MeshBuilder> meshes = builder.getMeshes();
+				parse(FileManager.getInstance().mapFile(file), builder);
+				endParsing(builder);
+				if(USE_TEXTURE_ATLAS)
+				{
+					TextureAtlas.build(meshes);
+				}
+				if(!cache.isStoringMeshes())
+				{
+					cache.putBuilders(path, meshes);
+				}
+				return meshes;
+			}catch(IOException e)
+			{
+				Log.error("Error I/O while reading file "+path);
+				Log.error(e);
+			}
+			catch(Exception e)
+			{
+				Log.error("Error during parsing file "+path);
+				Log.error(e);
+			}
+		}
+		return null;
+	}
+	/**
+	 * Logs the result of a parsing and prepares the meshes
+	 * @param builder Builder filled by the parsing
+	 */
+	private void endParsing(ObjBuilder builder)
+	{
+		Map<String, MeshBuilder> meshes = builder.getMeshes();
+		Log.warning("All objects are parsed");
+		Log.warning("Meshes:"+meshes.size());
+		Log.warning("Vertices:"+builder.getNumVertices());
+		Log.warning("Normals:"+builder.getNumNormals());
+		Log.warning("Textures:"+builder.getNumTexCoords());
+		Log.warning("Colors:"+builder.getNumColors());
+		Log.warning("For all objects:");
+		int countVertices = 0, countTextures = 0, countNormals = 0, countColors = 0;
+		for(final MeshBuilder _mesh : meshes.values())
+		{
+			countVertices +=_mesh.vertices.size();
+			countNormals +=_mesh.normals.size();
+			countTextures +=_mesh.textureCoordinates.size();
+			countColors +=_mesh.colors.size();
+		}
+		Log.warning("Vertices:"+countVertices);
+		Log.warning("Normals:"+countNormals);
+		Log.warning("Textures:"+countTextures);
+		Log.warning("Colors:"+countColors);
+		countVertices = countTextures = countNormals =  countColors = 0;
+		Log.verbose("optimizing");
+		for(final MeshBuilder _mesh : meshes.values())
+		{
+			_mesh.optimize();
+			_mesh.normalize();
+			countVertices +=_mesh.vertices.size();
+			countNormals +=_mesh.normals.size();
+			countTextures +=_mesh.textureCoordinates.size();
+			countColors +=_mesh.colors.size();
+		}
+		Log.verbose("Result :");
+		Log.warning("Vertices:"+countVertices);
+		Log.warning("Normals:"+countNormals);
+		Log.warning("Textures:"+countTextures);
+		Log.warning("Colors:"+countColors);
+	}
+	/**
+	 * Attaches the meshes of a file to a node
+	 * The meshes are taken from the cache if they are already built, otherwise they are built from the MeshBuilders
+	 * (and stored in the cache if it keeps meshes, see MeshCache.setStoringMeshes())
+	 * @param node Node
+	 * @param key Key of the file in the cache
+	 * @param builders MeshBuilders of the file (null if the meshes are cached)
+	 * @param entry Cached file, null if the file is not in the cache
+	 * @param fileName File name
+	 */
+	private void attachMeshes(Node node, Object key, Map<String, MeshBuilder> builders, MeshCache.Entry entry, String fileName)
+	{
+		List<Mesh> meshes;
+		List<Coord3D> translations;
+		if(builders == null)
+		{
+			Log.verbose("File "+fileName+" already built");
+			meshes = entry.meshes;
+			translations = entry.translations;
+		}else
+		{
+			Log.verbose(builders.size()+" MeshBuilder"+(builders.size()>1?"s":"")+" loaded");
+			meshes = new ArrayList<Mesh>(builders.size());
+			translations = new ArrayList<Coord3D>(builders.size());
+			for(final MeshBuilder builder : builders.values())
+			{
+				meshes.add(builder.toMesh());
+				translations.add(builder.translation);
+			}
+			if(cache.isStoringMeshes())
+			{
+				cache.putMeshes(key, meshes, translations);
+			}
+		}
+		if(meshes.size() == 1)
+		{
+			Entity entity = new Entity();
+			node.attachEntity(entity);
+			entity.setMesh(meshes.get(0));
+			node.x = translations.get(0).x;
+			node.y = translations.get(0).y;
+			node.z = translations.get(0).z;
+			Log.verbose("Parsing file "+fileName+" is finished");
+			Log.verbose("Get Mesh : "+entity.getMesh());
+		}else
+		{
+			Entity entity;
+			Node _node;
+			for(int i=0; i<meshes.size(); i++)
+			{
+				entity = new Entity();
+				_node = new Node();
+				node.attachChildNode(_node);
+				_node.attachEntity(entity);
+				entity.setMesh(meshes.get(i));
+				_node.x = translations.get(i).x;
+				_node.y = translations.get(i).y;
+				_node.z = translations.get(i).z;
+			}
+			Log.verbose("Parsing file "+fileName+" is finished");
+			Log.verbose("Get "+node.getNumChildNodes()+" meshes");
+		}
+		Log.verbose(cache.toString());
+	}
+	/**
+	 * Reads a .obj content and sends its records to a handler
+	 * @param tokenizer Tokenizer on the content
+	 * @param handler Handler
+	 * @throws IOException Error while reading the content
+	 */
+	public static void parse(Tokenizer tokenizer, IObjHandler handler) throws IOException
+	{
+		float[] values = new float[4];
+		int[] corners = new int[4*4];
+		int count;
+		while(tokenizer.nextLine())
+		{
+			//empty line
+			if(!tokenizer.nextToken() || tokenizer.tokenEquals(ignore))
+			{
+				continue;
+			}else
+			if(tokenizer.tokenEquals(vertex))
+			{
+				//add vertex
+				readFloats(tokenizer, values);
+				handler.onVertex(values[0], values[1], values[2]);
+			}
+			else
+			if(tokenizer.tokenEquals(normal))
+			{
+				//add normal
+				readFloats(tokenizer, values);
+				handler.onNormal(values[0], values[1], values[2]);
+			}
+			else
+			if(tokenizer.tokenEquals(texCoord))
+			{
+				//add tex
+				count = readFloats(tokenizer, values);
+				if(count == 2)
+				{
+					handler.onTexCoord(2, values[0], values[1]*-1.0f, 0);
+				}else
+				{
+					if(count == 3)
+					{
+						handler.onTexCoord(3, values[0], values[1]*-1.0f, values[2]);
+					}
+				}
+			}else
+			if(tokenizer.tokenEquals(color))
+			{
+				count = readFloats(tokenizer, values);
+				if(count == 3)
+				{
+					handler.onColor(values[0], values[1], values[2], 1);
+				}else
+				{
+					if(count == 4)
+					{
+						handler.onColor(values[0], values[1], values[2], values[3]);
+					}
+				}
+			}else
+			if(tokenizer.tokenEquals(face))
+			{
+				//foreach "metaVertex"
+				count = 0;
+				while(tokenizer.nextToken())
+				{
+					corners = ObjBuilder.ensureCapacity(corners, (count+1)*4);
+					System.arraycopy(tokenizer.parseIndices(), 0, corners, count*4, 4);
+					count++;
+				}
+				handler.onFace(corners, count);
+			}else
+			if(tokenizer.tokenEquals(materialFile))
+			{
+				//read Material file
+				if(tokenizer.nextToken())
+				{
+					handler.onMaterialFile(tokenizer.getToken());
+				}
+			}else
+			if(tokenizer.tokenEquals(object))
+			{
+				if(tokenizer.nextToken())
+				{
+					handler.onObject(tokenizer.getToken());
+				}
+			}else
+			if(tokenizer.tokenEquals(useMaterial))
+			{
+				if(tokenizer.nextToken())
+				{
+					handler.onUseMaterial(tokenizer.tokenEquals("(null)")?null:tokenizer.getToken());
+				}
+			}
+		}
+	}
+	/**
+	 * Reads a .obj content and sends its records to a builder
+	 * If the content is big enough, it is cut into parts which are parsed at the same time (see PARALLEL_PARSING)
+	 * @param buffer Content, from buffer.position() to buffer.limit()
+	 * @param builder Builder
+	 * @throws IOException Error while reading the content
+	 */
+	public static void parse(ByteBuffer buffer, ObjBuilder builder) throws IOException
+	{
+		parse(buffer, builder, PARALLEL_PARSING?java.lang.Math.min(Workers.PROCESSORS, buffer.remaining() / PARALLEL_MIN_CHUNK_SIZE):1);
+	}
+	/**
+	 * Reads a .obj content cut into a given number of parts and sends its records to a builder (see ObjParserHarness)
+	 * @param buffer Content, from buffer.position() to buffer.limit()
+	 * @param builder Builder
+	 * @param count Number of parts, the content is read by the calling thread if it is lower than 2
+	 * @throws IOException Error while reading the content
+	 */
+	static void parse(ByteBuffer buffer, ObjBuilder builder, int count) throws IOException
+	{
+		int size = buffer.remaining();
+		if(count < 2)
+		{
+			parse(new Tokenizer(buffer), builder);
+			return;
+		}
+		//cuts the content at line ends
+		List<Future<ObjChunk>> chunks = new ArrayList<Future<ObjChunk>>(count);
+		ExecutorService executor = Workers.getPool();
+		int start = buffer.position();
+		int end;
+		byte b;
+		for(int i=1; i<=count; i++)
+		{
+			end = i == count?buffer.limit():java.lang.Math.max(start, buffer.position() + (int)((long)size*i/count));
+			while(end < buffer.limit() && (b = buffer.get(end)) != '\n' && b != '\r')
+			{
+				end++;
+			}
+			if(end > start)
+			{
+				chunks.add(executor.submit(new ChunkParser(buffer, new ObjChunk(start, end))));
+			}
+			start = end;
+		}
+		Log.verbose("Parsing "+chunks.size()+" parts on "+Workers.PROCESSORS+" processors");
+		//parts are sent to the builder in the file order, while the next ones are still parsed
+		try
+		{
+			for(int i=0; i<chunks.size(); i++)
+			{
+				chunks.get(i).get().replay(builder);
+			}
+		}
+		catch(InterruptedException e)
+		{
+			cancel(chunks);
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Parsing interrupted");
+		}
+		catch(ExecutionException e)
+		{
+			cancel(chunks);
+			if(e.getCause() instanceof IOException)
+			{
+				throw (IOException)e.getCause();
+			}
+			if(e.getCause() instanceof RuntimeException)
+			{
+				throw (RuntimeException)e.getCause();
+			}
+			throw new RuntimeException(e.getCause());
+		}
+	}
+	/**
+	 * Cancels the parts that are not parsed yet
+	 * @param chunks Parts
+	 */
+	private static void cancel(List<Future<ObjChunk>> chunks)
+	{
+		for(final Future<ObjChunk> chunk : chunks)
+		{
+			chunk.cancel(true);
+		}
+	}
+	/**
+	 * Parses a part of a file
+	 */
+	private static class ChunkParser implements Callable<ObjChunk>
+	{
+		/**
+		 * Whole content (shared, only absolute reads are done)
+		 */
+		private ByteBuffer buffer;
+		/**
+		 * Part to fill
+		 */
+		private ObjChunk chunk;
+		/**
+		 * Constructor
+		 * @param buffer Whole content
+		 * @param chunk Part to fill
+		 */
+		public ChunkParser(ByteBuffer buffer, ObjChunk chunk)
+		{
+			this.buffer = buffer;
+			this.chunk = chunk;
+		}
+		@Override
+		public ObjChunk call() throws IOException
+		{
+			ByteBuffer part = buffer.duplicate();
+			part.limit(chunk.end);
+			part.position(chunk.start);
+			parse(new Tokenizer(part), chunk);
+			return chunk;
+		}
+	}
+	/**
+	 * Reads a whole stream and closes it
+	 * @param stream Stream
+	 * @return Content
+	 * @throws IOException Error while reading the stream
+	 */
+	private static ByteBuffer readFully(InputStream stream) throws IOException
+	{
+		byte[] content = new byte[java.lang.Math.max(stream.available(), 64*1024)];
+		int size = 0;
+		int read;
+		try
+		{
+			while((read = stream.read(content, size, content.length - size)) > 0)
+			{
+				size += read;
+				if(size == content.length)
+				{
+					content = ObjBuilder.ensureCapacity(content, size+1);
+				}
+			}
+		}
+		finally
+		{
+			stream.close();
+		}
+		return ByteBuffer.wrap(content, 0, size);
+	}
+	/**
+	 * Reads the remaining floats of the current line
+	 * @param tokenizer Tokenizer
+	 * @param values Values (only the first ones are kept)
+	 * @return Number of floats of the line
+	 */
+	private static int readFloats(Tokenizer tokenizer, float[] values)
+	{
+		int count = 0;
+		while(tokenizer.nextToken())
+		{
+			if(count < values.length)
+			{
+				values[count] = tokenizer.parseFloat();
+			}
+			count++;
+		}
+		return count;
+	}
 }
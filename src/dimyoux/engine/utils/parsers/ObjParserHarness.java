@@ -0,0 +1,268 @@
+package dimyoux.engine.utils.parsers;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import dimyoux.engine.utils.Color;
+import dimyoux.engine.utils.math.Coord2D;
+import dimyoux.engine.utils.math.Coord3D;
+/**
+ * Standalone check of the parallel parsing of .obj files (see ObjParser.PARALLEL_PARSING), not used by the application.
+ * On a desktop JVM (an implementation of android.util.Log must be on the classpath) :
+ * java dimyoux.engine.utils.parsers.ObjParserHarness [res/raw/house_obj res/raw/camaro_obj]
+ * or on a device with run()
+ * - correctness : the MeshBuilders of a file cut into 2 to 8 parts must be identical (same bits) to the sequential ones
+ * - scaling : time of the sequential parsing, of the parallel parsing with 2 to PROCESSORS parts, and the share of the
+ *   replay (boxing of the records and resolution of the faces) which stays on the calling thread
+ * Materials are not read (only the geometry is compared). Exits with 1 if a file differs
+ */
+public class ObjParserHarness {
+	/**
+	 * Number of timed passes
+	 */
+	private static final int PASSES = 5;
+	/**
+	 * Largest number of parts checked
+	 */
+	private static final int MAX_PARTS = 8;
+	/**
+	 * Builder ignoring the materials
+	 */
+	private static class GeometryBuilder extends ObjBuilder
+	{
+		/**
+		 * Constructor
+		 */
+		GeometryBuilder()
+		{
+			super("harness");
+		}
+		@Override
+		public void onUseMaterial(String name)
+		{
+		}
+		@Override
+		public void onMaterialFile(String name)
+		{
+		}
+	}
+	/**
+	 * Runs the harness
+	 * @param args Paths of .obj files (res/raw/house_obj and res/raw/camaro_obj by default)
+	 * @throws IOException A file can't be read
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		if(args.length == 0)
+		{
+			args = new String[]{"res/raw/house_obj", "res/raw/camaro_obj"};
+		}
+		boolean identical = true;
+		for(final String path : args)
+		{
+			identical &= run(new File(path).getName(), read(new File(path)));
+		}
+		if(!identical)
+		{
+			System.exit(1);
+		}
+	}
+	/**
+	 * Checks and times the parsing of a file
+	 * @param name Name of the file
+	 * @param content Content of the file
+	 * @return True if the parallel parsing gives the same MeshBuilders as the sequential one
+	 * @throws IOException Error while reading the content
+	 */
+	public static boolean run(String name, ByteBuffer content) throws IOException
+	{
+		Map<String, MeshBuilder> sequential = parse(content, 1).getMeshes();
+		boolean identical = true;
+		String difference;
+		for(int parts=2; parts<=MAX_PARTS; parts++)
+		{
+			difference = compare(sequential, parse(content, parts).getMeshes());
+			if(difference != null)
+			{
+				identical = false;
+				System.out.println(name+" cut in "+parts+" parts differs : "+difference);
+			}
+		}
+		System.out.println(name+" : parallel parsing "+(identical?"identical to":"differs from")+" the sequential parsing (2 to "+MAX_PARTS+" parts)");
+		int processors = Runtime.getRuntime().availableProcessors();
+		long tokenizing = Long.MAX_VALUE, replay = Long.MAX_VALUE, start;
+		long[] times = new long[java.lang.Math.max(processors, 1) + 1];
+		java.util.Arrays.fill(times, Long.MAX_VALUE);
+		ObjChunk chunk;
+		ObjBuilder builder;
+		for(int pass=0; pass<PASSES; pass++)
+		{
+			for(int parts=1; parts<times.length; parts++)
+			{
+				start = System.nanoTime();
+				parse(content, parts);
+				times[parts] = java.lang.Math.min(times[parts], System.nanoTime() - start);
+			}
+			//the whole file as a single part : tokenizing and float parsing, then replay
+			chunk = new ObjChunk(content.position(), content.limit());
+			start = System.nanoTime();
+			ObjParser.parse(new Tokenizer(content.duplicate()), chunk);
+			tokenizing = java.lang.Math.min(tokenizing, System.nanoTime() - start);
+			builder = new GeometryBuilder();
+			start = System.nanoTime();
+			chunk.replay(builder);
+			replay = java.lang.Math.min(replay, System.nanoTime() - start);
+		}
+		System.out.println(String.format(Locale.US, "%s : %d bytes, tokenizing %.1f ms, replay %.1f ms (%.0f%% of a single part)",
+				name, content.remaining(), tokenizing / 1e6, replay / 1e6, 100.0 * replay / (tokenizing + replay)));
+		for(int parts=1; parts<times.length; parts++)
+		{
+			//Amdahl : only the tokenizing is shared by the threads
+			System.out.println(String.format(Locale.US, "%s : %d part(s) %.1f ms, speedup %.2f (bound %.2f)",
+					name, parts, times[parts] / 1e6, (double)times[1] / times[parts],
+					(double)(tokenizing + replay) / (tokenizing / (double)parts + replay)));
+		}
+		return identical;
+	}
+	/**
+	 * Parses a content
+	 * @param content Content
+	 * @param parts Number of parts (1 : sequential parsing)
+	 * @return Builder
+	 * @throws IOException Error while reading the content
+	 */
+	private static ObjBuilder parse(ByteBuffer content, int parts) throws IOException
+	{
+		ObjBuilder builder = new GeometryBuilder();
+		ObjParser.parse(content.duplicate(), builder, parts);
+		return builder;
+	}
+	/**
+	 * Compares two sets of MeshBuilders
+	 * @param expected Expected MeshBuilders
+	 * @param builders MeshBuilders
+	 * @return First difference, null if they are identical
+	 */
+	private static String compare(Map<String, MeshBuilder> expected, Map<String, MeshBuilder> builders)
+	{
+		if(!expected.keySet().equals(builders.keySet()))
+		{
+			return "objects "+builders.keySet()+" instead of "+expected.keySet();
+		}
+		MeshBuilder a, b;
+		String difference;
+		for(final String name : expected.keySet())
+		{
+			a = expected.get(name);
+			b = builders.get(name);
+			if((difference = compareCoords(a.vertices, b.vertices)) != null
+					|| (difference = compareCoords(a.normals, b.normals)) != null
+					|| (difference = compareCoords(a.textureCoordinates, b.textureCoordinates)) != null
+					|| (difference = compareColors(a.colors, b.colors)) != null)
+			{
+				return name+" : "+difference;
+			}
+			if(a.faces.size() != b.faces.size())
+			{
+				return name+" : "+b.faces.size()+" faces instead of "+a.faces.size();
+			}
+			for(int i=0; i<a.faces.size(); i++)
+			{
+				Face first = a.faces.get(i), second = b.faces.get(i);
+				if(!first.vertices.equals(second.vertices) || !first.textures.equals(second.textures)
+						|| !first.normals.equals(second.normals) || !first.colors.equals(second.colors))
+				{
+					return name+" : face "+i;
+				}
+			}
+		}
+		return null;
+	}
+	/**
+	 * Compares coordinates bit by bit
+	 * @param expected Expected coordinates
+	 * @param coords Coordinates
+	 * @return First difference, null if they are identical
+	 */
+	private static String compareCoords(List<? extends Coord2D> expected, List<? extends Coord2D> coords)
+	{
+		if(expected.size() != coords.size())
+		{
+			return coords.size()+" coordinates instead of "+expected.size();
+		}
+		Coord2D a, b;
+		for(int i=0; i<expected.size(); i++)
+		{
+			a = expected.get(i);
+			b = coords.get(i);
+			if(a.size() != b.size() || !same(a.x, b.x) || !same(a.y, b.y) || (a.size() > 2 && !same(((Coord3D)a).z, ((Coord3D)b).z)))
+			{
+				return "coordinates "+i+" ("+b+" instead of "+a+")";
+			}
+		}
+		return null;
+	}
+	/**
+	 * Compares colors bit by bit
+	 * @param expected Expected colors
+	 * @param colors Colors
+	 * @return First difference, null if they are identical
+	 */
+	private static String compareColors(List<Color> expected, List<Color> colors)
+	{
+		if(expected.size() != colors.size())
+		{
+			return colors.size()+" colors instead of "+expected.size();
+		}
+		Color a, b;
+		for(int i=0; i<expected.size(); i++)
+		{
+			a = expected.get(i);
+			b = colors.get(i);
+			if(!same(a.r, b.r) || !same(a.g, b.g) || !same(a.b, b.b) || !same(a.a, b.a))
+			{
+				return "color "+i;
+			}
+		}
+		return null;
+	}
+	/**
+	 * Compares two floats bit by bit
+	 * @param a First value
+	 * @param b Second value
+	 * @return True if they are identical
+	 */
+	private static boolean same(float a, float b)
+	{
+		return Float.floatToRawIntBits(a) == Float.floatToRawIntBits(b);
+	}
+	/**
+	 * Reads a file
+	 * @param file File
+	 * @return Content
+	 * @throws IOException The file can't be read
+	 */
+	private static ByteBuffer read(File file) throws IOException
+	{
+		byte[] content = new byte[(int)file.length()];
+		FileInputStream in = new FileInputStream(file);
+		try
+		{
+			int read = 0;
+			while(read < content.length)
+			{
+				read += in.read(content, read, content.length - read);
+			}
+		}
+		finally
+		{
+			in.close();
+		}
+		return ByteBuffer.wrap(content);
+	}
+}
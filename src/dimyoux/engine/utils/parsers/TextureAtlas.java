@@ -0,0 +1,416 @@
+package dimyoux.engine.utils.parsers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import dimyoux.engine.managers.FileManager;
+import dimyoux.engine.managers.TextureManager;
+import dimyoux.engine.utils.Log;
+import dimyoux.engine.utils.math.Coord2D;
+/**
+ * Packs the textures of meshes into atlases (skyline packing) and remaps their texture coordinates
+ * Meshes using the same atlas don't bind a new texture between their draws.
+ * A texture is packed only if all the texture coordinates using it stay inside the texture :
+ * repeated textures (coordinates outside [0,1]) keep their own texture.
+ * The meshes of the packed textures use copies of their materials pointing to the atlases
+ * (added to the library, see Material.copy()) : the materials of the library keep their textures
+ */
+public class TextureAtlas {
+	/**
+	 * Maximum size of an atlas (in pixels)
+	 */
+	public static int MAX_SIZE = 2048;
+	/**
+	 * Border around each texture, filled with its edge pixels (avoids bleeding with linear filtering)
+	 */
+	public static int PADDING = 2;
+	/**
+	 * Tolerance on the texture coordinates
+	 */
+	private static final float EPSILON = 0.001f;
+	/**
+	 * Texture packed into an atlas
+	 */
+	private static class Entry
+	{
+		/**
+		 * Resource id of the texture
+		 */
+		int resourceId;
+		/**
+		 * Decoded texture
+		 */
+		Bitmap bitmap;
+		/**
+		 * Indicates if a material using the texture is translucent
+		 */
+		boolean translucent;
+		/**
+		 * Atlas
+		 */
+		int page = -1;
+		/**
+		 * Position of the texture in the atlas (padding excluded)
+		 */
+		int x, y;
+		/**
+		 * Size of the texture
+		 */
+		int width, height;
+	}
+	/**
+	 * Skyline packer : the used area is described by its top outline
+	 */
+	static class Skyline
+	{
+		/**
+		 * Width of the atlas
+		 */
+		final int width;
+		/**
+		 * Maximum height of the atlas
+		 */
+		final int maxHeight;
+		/**
+		 * Segments of the outline : x, y, width
+		 */
+		private List<int[]> segments = new ArrayList<int[]>();
+		/**
+		 * Height used
+		 */
+		int height = 0;
+		/**
+		 * Constructor
+		 * @param width Width of the atlas
+		 * @param maxHeight Maximum height of the atlas
+		 */
+		Skyline(int width, int maxHeight)
+		{
+			this.width = width;
+			this.maxHeight = maxHeight;
+			segments.add(new int[]{0, 0, width});
+		}
+		/**
+		 * Finds a place for a rectangle (the lowest one, then the leftmost one) and reserves it
+		 * @param w Width
+		 * @param h Height
+		 * @return Position (x, y), null if the rectangle doesn't fit
+		 */
+		int[] insert(int w, int h)
+		{
+			int best = -1, bestY = Integer.MAX_VALUE, bestWidth = Integer.MAX_VALUE;
+			int y;
+			for(int i=0; i<segments.size(); i++)
+			{
+				y = fit(i, w, h);
+				if(y >= 0 && (y < bestY || (y == bestY && segments.get(i)[2] < bestWidth)))
+				{
+					best = i;
+					bestY = y;
+					bestWidth = segments.get(i)[2];
+				}
+			}
+			if(best < 0)
+			{
+				return null;
+			}
+			int x = segments.get(best)[0];
+			//the new segment covers the segments under the rectangle
+			segments.add(best, new int[]{x, bestY + h, w});
+			int[] segment;
+			for(int i=best+1; i<segments.size(); i++)
+			{
+				segment = segments.get(i);
+				if(segment[0] >= x + w)
+				{
+					break;
+				}
+				int shrink = x + w - segment[0];
+				if(segment[2] <= shrink)
+				{
+					segments.remove(i--);
+				}else
+				{
+					segment[0] += shrink;
+					segment[2] -= shrink;
+					break;
+				}
+			}
+			//merges the neighbours at the same height
+			for(int i=0; i<segments.size()-1; i++)
+			{
+				if(segments.get(i)[1] == segments.get(i+1)[1])
+				{
+					segments.get(i)[2] += segments.get(i+1)[2];
+					segments.remove(i+1);
+					i--;
+				}
+			}
+			height = java.lang.Math.max(height, bestY + h);
+			return new int[]{x, bestY};
+		}
+		/**
+		 * Height where a rectangle can be put from the start of a segment
+		 * @param index Segment
+		 * @param w Width
+		 * @param h Height
+		 * @return Height, -1 if the rectangle doesn't fit
+		 */
+		private int fit(int index, int w, int h)
+		{
+			int x = segments.get(index)[0];
+			if(x + w > width)
+			{
+				return -1;
+			}
+			int y = 0;
+			int remaining = w;
+			for(int i=index; remaining > 0; i++)
+			{
+				y = java.lang.Math.max(y, segments.get(i)[1]);
+				if(y + h > maxHeight)
+				{
+					return -1;
+				}
+				remaining -= segments.get(i)[2];
+			}
+			return y;
+		}
+	}
+	/**
+	 * Packs the textures used by meshes into atlases and remaps the texture coordinates of the meshes
+	 * Must be called before the meshes are built (see MeshBuilder.toMesh())
+	 * @param builders MeshBuilders (of a file, see ObjParser.loadMeshBuilders())
+	 * @return Number of textures packed
+	 */
+	public static int build(Map<String, MeshBuilder> builders)
+	{
+		//textures that can be packed
+		Map<Integer, Boolean> packable = new HashMap<Integer, Boolean>();
+		Map<Integer, Boolean> translucent = new HashMap<Integer, Boolean>();
+		int id;
+		for(final MeshBuilder builder : builders.values())
+		{
+			if(builder.material == null || builder.material.idTextureFile <= 0)
+			{
+				continue;
+			}
+			id = builder.material.idTextureFile;
+			packable.put(id, (!packable.containsKey(id) || packable.get(id)) && isInside(builder.textureCoordinates));
+			translucent.put(id, (translucent.containsKey(id) && translucent.get(id)) || builder.material.isTranslucent());
+		}
+		List<Entry> entries = new ArrayList<Entry>();
+		Entry entry;
+		for(final Map.Entry<Integer, Boolean> texture : packable.entrySet())
+		{
+			if(!texture.getValue())
+			{
+				Log.verbose("Texture "+texture.getKey()+" is repeated : not packed");
+				continue;
+			}
+			entry = new Entry();
+			entry.resourceId = texture.getKey();
+			entry.translucent = translucent.get(entry.resourceId);
+			entry.bitmap = FileManager.getInstance().loadBitmap(entry.resourceId);
+			if(entry.bitmap == null)
+			{
+				continue;
+			}
+			entry.width = entry.bitmap.getWidth();
+			entry.height = entry.bitmap.getHeight();
+			if(entry.width + 2 * PADDING > MAX_SIZE || entry.height + 2 * PADDING > MAX_SIZE)
+			{
+				entry.bitmap.recycle();
+				continue;
+			}
+			entries.add(entry);
+		}
+		if(entries.size() < 2)
+		{
+			for(final Entry unused : entries)
+			{
+				unused.bitmap.recycle();
+			}
+			return 0;
+		}
+		List<Skyline> pages = pack(entries);
+		//draws the atlases
+		int[] atlases = new int[pages.size()];
+		for(int page=0; page<pages.size(); page++)
+		{
+			Skyline skyline = pages.get(page);
+			Bitmap atlas = Bitmap.createBitmap(skyline.width, getPowerOfTwo(skyline.height), Bitmap.Config.ARGB_8888);
+			Canvas canvas = new Canvas(atlas);
+			boolean translucentPage = false;
+			for(final Entry packed : entries)
+			{
+				if(packed.page == page)
+				{
+					draw(canvas, packed);
+					packed.bitmap.recycle();
+					packed.bitmap = null;
+					translucentPage |= packed.translucent;
+				}
+			}
+			atlases[page] = TextureManager.getInstance().add(atlas, translucentPage);
+			Log.verbose("Atlas "+atlas.getWidth()+"x"+atlas.getHeight()+" created");
+		}
+		//remaps the texture coordinates
+		Map<Integer, Entry> byId = new HashMap<Integer, Entry>();
+		for(final Entry packed : entries)
+		{
+			byId.put(packed.resourceId, packed);
+		}
+		Map<Coord2D, Boolean> remapped = new IdentityHashMap<Coord2D, Boolean>();
+		Map<Material, Material> copies = new IdentityHashMap<Material, Material>();
+		Material copy;
+		for(final MeshBuilder builder : builders.values())
+		{
+			if(builder.material == null || (entry = byId.get(builder.material.idTextureFile)) == null)
+			{
+				continue;
+			}
+			Skyline skyline = pages.get(entry.page);
+			float width = skyline.width, height = getPowerOfTwo(skyline.height);
+			for(final Coord2D coordinates : builder.textureCoordinates)
+			{
+				if(remapped.put(coordinates, Boolean.TRUE) == null)
+				{
+					//v is stored negated (see ObjParser) : -1 is the top of the texture and 0 its bottom
+					coordinates.x = (entry.x + clamp(coordinates.x, 0, 1) * entry.width) / width;
+					coordinates.y = (entry.y + (clamp(coordinates.y, -1, 0) + 1) * entry.height) / height;
+				}
+			}
+			//the builder uses a copy of its material pointing to the atlas (the library uses its texture)
+			copy = copies.get(builder.material);
+			if(copy == null)
+			{
+				copy = builder.material.copy(builder.material.name+"@atlas"+(-atlases[entry.page]));
+				copy.idTextureFile = atlases[entry.page];
+				Material.addMaterial(copy);
+				copies.put(builder.material, copy);
+			}
+			builder.material = copy;
+		}
+		Log.verbose(entries.size()+" textures packed into "+pages.size()+" atlas"+(pages.size()>1?"es":""));
+		return entries.size();
+	}
+	/**
+	 * Packs textures into as few atlases as possible
+	 * @param entries Textures
+	 * @return Atlases
+	 */
+	private static List<Skyline> pack(List<Entry> entries)
+	{
+		//the highest textures first
+		Collections.sort(entries, new Comparator<Entry>() {
+			@Override
+			public int compare(Entry a, Entry b)
+			{
+				return b.height != a.height?b.height - a.height:b.width - a.width;
+			}
+		});
+		long area = 0;
+		int maxWidth = 0;
+		for(final Entry entry : entries)
+		{
+			area += (long)(entry.width + 2 * PADDING) * (entry.height + 2 * PADDING);
+			maxWidth = java.lang.Math.max(maxWidth, entry.width + 2 * PADDING);
+		}
+		int width = java.lang.Math.min(MAX_SIZE, getPowerOfTwo(java.lang.Math.max(maxWidth, (int)java.lang.Math.ceil(java.lang.Math.sqrt(area)))));
+		List<Skyline> pages = new ArrayList<Skyline>();
+		int[] position;
+		for(final Entry entry : entries)
+		{
+			position = null;
+			for(int page=0; position == null && page<pages.size(); page++)
+			{
+				position = pages.get(page).insert(entry.width + 2 * PADDING, entry.height + 2 * PADDING);
+				entry.page = page;
+			}
+			if(position == null)
+			{
+				pages.add(new Skyline(width, MAX_SIZE));
+				entry.page = pages.size() - 1;
+				position = pages.get(entry.page).insert(entry.width + 2 * PADDING, entry.height + 2 * PADDING);
+			}
+			entry.x = position[0] + PADDING;
+			entry.y = position[1] + PADDING;
+		}
+		return pages;
+	}
+	/**
+	 * Draws a texture and its padding into an atlas
+	 * @param canvas Atlas
+	 * @param entry Texture
+	 */
+	private static void draw(Canvas canvas, Entry entry)
+	{
+		int x = entry.x, y = entry.y, w = entry.width, h = entry.height, p = PADDING;
+		canvas.drawBitmap(entry.bitmap, x, y, null);
+		if(p == 0)
+		{
+			return;
+		}
+		Bitmap bitmap = entry.bitmap;
+		//edges
+		canvas.drawBitmap(bitmap, new Rect(0, 0, 1, h), new Rect(x - p, y, x, y + h), null);
+		canvas.drawBitmap(bitmap, new Rect(w - 1, 0, w, h), new Rect(x + w, y, x + w + p, y + h), null);
+		canvas.drawBitmap(bitmap, new Rect(0, 0, w, 1), new Rect(x, y - p, x + w, y), null);
+		canvas.drawBitmap(bitmap, new Rect(0, h - 1, w, h), new Rect(x, y + h, x + w, y + h + p), null);
+		//corners
+		canvas.drawBitmap(bitmap, new Rect(0, 0, 1, 1), new Rect(x - p, y - p, x, y), null);
+		canvas.drawBitmap(bitmap, new Rect(w - 1, 0, w, 1), new Rect(x + w, y - p, x + w + p, y), null);
+		canvas.drawBitmap(bitmap, new Rect(0, h - 1, 1, h), new Rect(x - p, y + h, x, y + h + p), null);
+		canvas.drawBitmap(bitmap, new Rect(w - 1, h - 1, w, h), new Rect(x + w, y + h, x + w + p, y + h + p), null);
+	}
+	/**
+	 * Indicates if texture coordinates stay inside the texture
+	 * @param coordinates Texture coordinates (v negated)
+	 * @return True or false
+	 */
+	private static boolean isInside(List<Coord2D> coordinates)
+	{
+		for(final Coord2D coordinate : coordinates)
+		{
+			if(coordinate.x < -EPSILON || coordinate.x > 1 + EPSILON || coordinate.y < -1 - EPSILON || coordinate.y > EPSILON)
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+	/**
+	 * Clamps a value
+	 * @param value Value
+	 * @param min Minimum
+	 * @param max Maximum
+	 * @return Clamped value
+	 */
+	private static float clamp(float value, float min, float max)
+	{
+		return value < min?min:(value > max?max:value);
+	}
+	/**
+	 * Smallest power of 2 greater or equal to a value
+	 * @param value Value
+	 * @return Power of 2
+	 */
+	private static int getPowerOfTwo(int value)
+	{
+		int power = 1;
+		while(power < value)
+		{
+			power <<= 1;
+		}
+		return power;
+	}
+}
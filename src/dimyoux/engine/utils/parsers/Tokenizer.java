@@ -0,0 +1,426 @@
+package dimyoux.engine.utils.parsers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import dimyoux.engine.utils.Log;
+/**
+ * Line tokenizer shared by the .obj and .mtl parsers
+ * Works directly on ASCII bytes : tokens of the current line are read,
+ * compared and converted in place, no String is created unless asked
+ */
+public class Tokenizer {
+	/**
+	 * Default size of the reading window for streams
+	 */
+	private static final int WINDOW_SIZE = 64*1024;
+	/**
+	 * Source stream (null if the whole content is already in the buffer)
+	 */
+	private InputStream stream;
+	/**
+	 * Backing array of the buffer when a stream is read
+	 */
+	private byte[] window;
+	/**
+	 * Content. Only absolute reads are used
+	 */
+	private ByteBuffer buffer;
+	/**
+	 * End of the valid content
+	 */
+	private int limit;
+	/**
+	 * End of the current line (exclusive)
+	 */
+	private int lineEnd;
+	/**
+	 * Cursor inside the current line
+	 */
+	private int position;
+	/**
+	 * Start of the current token
+	 */
+	private int tokenStart;
+	/**
+	 * End of the current token (exclusive)
+	 */
+	private int tokenEnd;
+	/**
+	 * Reused result of parseIndices()
+	 */
+	private final int[] indices = new int[4];
+	/**
+	 * Constructor
+	 * @param stream Stream to read. It is closed by close()
+	 */
+	public Tokenizer(InputStream stream)
+	{
+		this.stream = stream;
+		window = new byte[WINDOW_SIZE];
+		buffer = ByteBuffer.wrap(window);
+		limit = lineEnd = position = 0;
+	}
+	/**
+	 * Constructor
+	 * @param buffer Content to read, from buffer.position() to buffer.limit()
+	 */
+	public Tokenizer(ByteBuffer buffer)
+	{
+		this.buffer = buffer;
+		limit = buffer.limit();
+		lineEnd = position = buffer.position();
+	}
+	/**
+	 * Constructor on a text. The tokenizer is set on the first line of the text
+	 * @param text Text
+	 */
+	public Tokenizer(String text)
+	{
+		this(ByteBuffer.wrap(toBytes(text)));
+		scanLine();
+	}
+	/**
+	 * Converts a text to ASCII bytes
+	 * @param text Text
+	 * @return Bytes
+	 */
+	private static byte[] toBytes(String text)
+	{
+		byte[] bytes = new byte[text.length()];
+		for(int i=0; i<bytes.length; i++)
+		{
+			bytes[i] = (byte)text.charAt(i);
+		}
+		return bytes;
+	}
+	/**
+	 * Goes to the next line
+	 * @return False if the end of the content is reached
+	 * @throws IOException Error while reading the stream
+	 */
+	public boolean nextLine() throws IOException
+	{
+		while(!scanLine())
+		{
+			if(!fill())
+			{
+				//last line without end of line
+				if(lineEnd < limit)
+				{
+					tokenStart = tokenEnd = position = lineEnd;
+					lineEnd = limit;
+					return true;
+				}
+				return false;
+			}
+		}
+		return true;
+	}
+	/**
+	 * Looks for the next complete line inside the available content
+	 * @return True if a complete line has been found
+	 */
+	private boolean scanLine()
+	{
+		int start = lineEnd;
+		byte b;
+		//skips end of lines
+		while(start < limit && ((b = buffer.get(start)) == '\n' || b == '\r'))
+		{
+			start++;
+		}
+		int end = start;
+		while(end < limit)
+		{
+			b = buffer.get(end);
+			if(b == '\n' || b == '\r')
+			{
+				tokenStart = tokenEnd = position = start;
+				lineEnd = end;
+				return true;
+			}
+			end++;
+		}
+		//the remaining bytes are an incomplete line
+		lineEnd = start;
+		if(stream == null && start < limit)
+		{
+			tokenStart = tokenEnd = position = start;
+			lineEnd = limit;
+			return true;
+		}
+		return false;
+	}
+	/**
+	 * Reads the stream into the window. The incomplete line is moved at the beginning of the window
+	 * @return False if nothing can be read anymore
+	 * @throws IOException Error while reading the stream
+	 */
+	private boolean fill() throws IOException
+	{
+		if(stream == null)
+		{
+			return false;
+		}
+		int remaining = limit - lineEnd;
+		if(remaining == window.length)
+		{
+			//line longer than the window
+			byte[] bigger = new byte[window.length*2];
+			System.arraycopy(window, 0, bigger, 0, remaining);
+			window = bigger;
+			buffer = ByteBuffer.wrap(window);
+		}else
+		if(lineEnd > 0)
+		{
+			System.arraycopy(window, lineEnd, window, 0, remaining);
+		}
+		lineEnd = 0;
+		limit = remaining;
+		int read = stream.read(window, limit, window.length - limit);
+		if(read <= 0)
+		{
+			return false;
+		}
+		limit += read;
+		return true;
+	}
+	/**
+	 * Goes to the next token of the current line
+	 * @return False if there is no more token on this line
+	 */
+	public boolean nextToken()
+	{
+		byte b;
+		while(position < lineEnd && ((b = buffer.get(position)) == ' ' || b == '\t'))
+		{
+			position++;
+		}
+		if(position >= lineEnd)
+		{
+			tokenStart = tokenEnd = lineEnd;
+			return false;
+		}
+		tokenStart = position;
+		while(position < lineEnd && (b = buffer.get(position)) != ' ' && b != '\t')
+		{
+			position++;
+		}
+		tokenEnd = position;
+		return true;
+	}
+	/**
+	 * Indicates if the current line still has tokens
+	 * @return True or false
+	 */
+	public boolean hasMoreTokens()
+	{
+		byte b;
+		int i = position;
+		while(i < lineEnd && ((b = buffer.get(i)) == ' ' || b == '\t'))
+		{
+			i++;
+		}
+		return i < lineEnd;
+	}
+	/**
+	 * Length of the current token
+	 * @return Length
+	 */
+	public int getTokenLength()
+	{
+		return tokenEnd - tokenStart;
+	}
+	/**
+	 * Compares the current token with a keyword
+	 * @param keyword Keyword
+	 * @return True if the token is the keyword
+	 */
+	public boolean tokenEquals(String keyword)
+	{
+		int length = keyword.length();
+		if(length != tokenEnd - tokenStart)
+		{
+			return false;
+		}
+		for(int i=0; i<length; i++)
+		{
+			if(buffer.get(tokenStart+i) != keyword.charAt(i))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+	/**
+	 * Returns the current token
+	 * This method creates a String : use it only for names
+	 * @return Token
+	 */
+	public String getToken()
+	{
+		return toString(tokenStart, tokenEnd);
+	}
+	/**
+	 * Returns the rest of the current line, without the spaces around it
+	 * This method creates a String : use it only for names
+	 * @return Rest of the line
+	 */
+	public String getRemaining()
+	{
+		int start = position;
+		int end = lineEnd;
+		byte b;
+		while(start < end && ((b = buffer.get(start)) == ' ' || b == '\t'))
+		{
+			start++;
+		}
+		while(end > start && ((b = buffer.get(end-1)) == ' ' || b == '\t'))
+		{
+			end--;
+		}
+		position = lineEnd;
+		return toString(start, end);
+	}
+	/**
+	 * Creates a String from a part of the content
+	 * @param start Start
+	 * @param end End (exclusive)
+	 * @return String
+	 */
+	private String toString(int start, int end)
+	{
+		char[] chars = new char[end - start];
+		for(int i=0; i<chars.length; i++)
+		{
+			chars[i] = (char)(buffer.get(start+i) & 0xFF);
+		}
+		return new String(chars);
+	}
+	/**
+	 * Reads the next token as an integer
+	 * @return Value
+	 * @throws NumberFormatException The token is missing or is not an integer
+	 */
+	public int nextInt()
+	{
+		if(!nextToken())
+		{
+			throw new NumberFormatException("Missing integer");
+		}
+		return parseInt();
+	}
+	/**
+	 * Reads the next token as a float
+	 * @return Value
+	 * @throws NumberFormatException The token is missing or is not a float
+	 */
+	public float nextFloat()
+	{
+		if(!nextToken())
+		{
+			throw new NumberFormatException("Missing float");
+		}
+		return parseFloat();
+	}
+	/**
+	 * Converts the current token to an integer
+	 * @return Value
+	 * @throws NumberFormatException The token is not an integer
+	 */
+	public int parseInt()
+	{
+		return parseInt(tokenStart, tokenEnd);
+	}
+	/**
+	 * Converts a part of the content to an integer
+	 * @param start Start
+	 * @param end End (exclusive)
+	 * @return Value
+	 * @throws NumberFormatException The part is not an integer
+	 */
+	private int parseInt(int start, int end)
+	{
+		int i = start;
+		boolean negative = false;
+		if(i < end && (buffer.get(i) == '-' || buffer.get(i) == '+'))
+		{
+			negative = buffer.get(i) == '-';
+			i++;
+		}
+		if(i >= end)
+		{
+			throw new NumberFormatException(toString(start, end));
+		}
+		int value = 0;
+		int digit;
+		for(; i<end; i++)
+		{
+			digit = buffer.get(i) - '0';
+			if(digit < 0 || digit > 9)
+			{
+				throw new NumberFormatException(toString(start, end));
+			}
+			value = value*10 + digit;
+		}
+		return negative?-value:value;
+	}
+	/**
+	 * Converts the current token to a float
+	 * @return Value
+	 * @throws NumberFormatException The token is not a float
+	 * @see FloatParser
+	 */
+	public float parseFloat()
+	{
+		return FloatParser.parse(buffer, tokenStart, tokenEnd);
+	}
+	/**
+	 * Converts the current token "v[/t][/n][/c]" to indexes
+	 * The returned array is reused by the next call
+	 * @return Indexes [vertex, texture, normal, color], -1 if an element doesn't exist
+	 */
+	public int[] parseIndices()
+	{
+		int field = 0;
+		int start = tokenStart;
+		int i;
+		for(i=0; i<indices.length; i++)
+		{
+			indices[i] = -1;
+		}
+		for(i=tokenStart; i<=tokenEnd && field<indices.length; i++)
+		{
+			if(i == tokenEnd || buffer.get(i) == '/')
+			{
+				if(i > start)
+				{
+					try
+					{
+						indices[field] = parseInt(start, i);
+					}
+					catch(NumberFormatException e)
+					{
+						Log.warning(e);
+					}
+				}
+				field++;
+				start = i+1;
+			}
+		}
+		return indices;
+	}
+	/**
+	 * Closes the stream if there is one
+	 * @throws IOException Error
+	 */
+	public void close() throws IOException
+	{
+		if(stream != null)
+		{
+			stream.close();
+		}
+	}
+}
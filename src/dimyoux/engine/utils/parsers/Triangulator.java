@@ -0,0 +1,203 @@
+package dimyoux.engine.utils.parsers;
+
+import java.util.List;
+
+import dimyoux.engine.utils.math.Coord3D;
+/**
+ * Cuts polygons into triangles
+ * Convex polygons are cut as fans, concave ones by ear clipping.
+ * A polygon of n vertices always gives n-2 triangles
+ */
+public class Triangulator {
+	/**
+	 * Projected X of the polygon's vertices
+	 */
+	private float[] x = new float[16];
+	/**
+	 * Projected Y of the polygon's vertices
+	 */
+	private float[] y = new float[16];
+	/**
+	 * Vertices not clipped yet (positions in the polygon)
+	 */
+	private int[] remaining = new int[16];
+	/**
+	 * Number of triangles of a polygon
+	 * @param size Number of vertices of the polygon
+	 * @return Number of triangles
+	 */
+	public static int getNumTriangles(int size)
+	{
+		return size < 3?0:size-2;
+	}
+	/**
+	 * Cuts a polygon into triangles
+	 * @param vertices Vertices
+	 * @param polygon Indexes of the polygon's vertices (in the order of the outline)
+	 * @param triangles Receives the indexes of the triangles (3*(polygon.size()-2) values)
+	 * @param offset First index written in triangles
+	 * @return Number of indexes written
+	 */
+	public int triangulate(List<Coord3D> vertices, List<Integer> polygon, int[] triangles, int offset)
+	{
+		int size = polygon.size();
+		if(size < 3)
+		{
+			return 0;
+		}
+		if(size == 3)
+		{
+			triangles[offset] = polygon.get(0);
+			triangles[offset+1] = polygon.get(1);
+			triangles[offset+2] = polygon.get(2);
+			return 3;
+		}
+		project(vertices, polygon);
+		int i;
+		if(isConvex(size))
+		{
+			//fan
+			for(i=1; i<size-1; i++)
+			{
+				triangles[offset++] = polygon.get(0);
+				triangles[offset++] = polygon.get(i);
+				triangles[offset++] = polygon.get(i+1);
+			}
+			return (size-2)*3;
+		}
+		//ear clipping
+		for(i=0; i<size; i++)
+		{
+			remaining[i] = i;
+		}
+		int count = size;
+		int written = 0;
+		int current = 0;
+		int tries = 0;
+		int previous, next;
+		while(count > 3)
+		{
+			previous = remaining[(current+count-1)%count];
+			next = remaining[(current+1)%count];
+			//if no ear is found after a whole turn (degenerate polygon), the vertex is clipped anyway
+			if(tries >= count || isEar(previous, remaining[current], next, count))
+			{
+				triangles[offset+written++] = polygon.get(previous);
+				triangles[offset+written++] = polygon.get(remaining[current]);
+				triangles[offset+written++] = polygon.get(next);
+				System.arraycopy(remaining, current+1, remaining, current, count-current-1);
+				count--;
+				current %= count;
+				tries = 0;
+			}else
+			{
+				current = (current+1)%count;
+				tries++;
+			}
+		}
+		triangles[offset+written++] = polygon.get(remaining[0]);
+		triangles[offset+written++] = polygon.get(remaining[1]);
+		triangles[offset+written++] = polygon.get(remaining[2]);
+		return written;
+	}
+	/**
+	 * Projects the polygon on the plane of the two axes where it is the biggest
+	 * The outline is counter-clockwise after the projection
+	 * @param vertices Vertices
+	 * @param polygon Polygon
+	 */
+	private void project(List<Coord3D> vertices, List<Integer> polygon)
+	{
+		int size = polygon.size();
+		if(x.length < size)
+		{
+			x = new float[size];
+			y = new float[size];
+			remaining = new int[size];
+		}
+		//Newell's normal
+		float nx = 0, ny = 0, nz = 0;
+		Coord3D current, next;
+		int i;
+		for(i=0; i<size; i++)
+		{
+			current = vertices.get(polygon.get(i));
+			next = vertices.get(polygon.get((i+1)%size));
+			nx += (current.y - next.y) * (current.z + next.z);
+			ny += (current.z - next.z) * (current.x + next.x);
+			nz += (current.x - next.x) * (current.y + next.y);
+		}
+		float ax = java.lang.Math.abs(nx), ay = java.lang.Math.abs(ny), az = java.lang.Math.abs(nz);
+		for(i=0; i<size; i++)
+		{
+			current = vertices.get(polygon.get(i));
+			if(az >= ax && az >= ay)
+			{
+				x[i] = current.x;
+				y[i] = nz >= 0?current.y:-current.y;
+			}else
+			if(ax >= ay)
+			{
+				x[i] = current.y;
+				y[i] = nx >= 0?current.z:-current.z;
+			}else
+			{
+				x[i] = current.z;
+				y[i] = ny >= 0?current.x:-current.x;
+			}
+		}
+	}
+	/**
+	 * Twice the signed area of a projected triangle (positive if counter-clockwise)
+	 * @param a First vertex
+	 * @param b Second vertex
+	 * @param c Third vertex
+	 * @return Area
+	 */
+	private float area(int a, int b, int c)
+	{
+		return (x[b] - x[a]) * (y[c] - y[a]) - (y[b] - y[a]) * (x[c] - x[a]);
+	}
+	/**
+	 * Indicates if the projected polygon is convex
+	 * @param size Number of vertices
+	 * @return True or false
+	 */
+	private boolean isConvex(int size)
+	{
+		for(int i=0; i<size; i++)
+		{
+			if(area(i, (i+1)%size, (i+2)%size) < 0)
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+	/**
+	 * Indicates if a corner can be clipped : it is convex and no other vertex is inside it
+	 * @param previous Previous vertex
+	 * @param current Vertex
+	 * @param next Next vertex
+	 * @param count Number of remaining vertices
+	 * @return True or false
+	 */
+	private boolean isEar(int previous, int current, int next, int count)
+	{
+		if(area(previous, current, next) <= 0)
+		{
+			return false;
+		}
+		int vertex;
+		for(int i=0; i<count; i++)
+		{
+			vertex = remaining[i];
+			if(vertex != previous && vertex != current && vertex != next
+				&& area(previous, current, vertex) >= 0 && area(current, next, vertex) >= 0 && area(next, previous, vertex) >= 0)
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -1,4 +1,7 @@
 package dimyoux.houseExplorer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
 import javax.microedition.khronos.egl.EGLConfig;
 import javax.microedition.khronos.opengles.GL10;
 
@@ -9,9 +12,11 @@ import dimyoux.engine.core.signals.ISensorProximity;
 import dimyoux.engine.core.signals.ISensorTouchDoubleTap;
 import dimyoux.engine.core.signals.ISensorTouchTap;
 import dimyoux.engine.managers.FileManager;
+import dimyoux.engine.managers.LoadingManager;
 import dimyoux.engine.managers.SensorManager;
 import dimyoux.engine.scene.Camera;
 import dimyoux.engine.scene.Light;
+import dimyoux.engine.scene.MeshContainer;
 import dimyoux.engine.scene.Node;
 import dimyoux.engine.utils.Color;
 import dimyoux.engine.utils.Log;
@@ -24,9 +29,13 @@ import dimyoux.engine.utils.parsers.ObjParser;
  */
 public class HouseActivity extends EngineActivity implements ISensorProximity, ISensorOrientation, ISensorLight, ISensorTouchDoubleTap, ISensorTouchTap {
 
-	private Node node;
 	private Node camPositionNode;
 	private Node camTargetNode;
+	/**
+	 * Loading of the house, null until it is started. The scene is kept by the process :
+	 * the house is loaded once, the new OpenGL contexts upload it again (see LoadingManager.reupload())
+	 */
+	private static Future<Node> house;
 	
 	/**
 	 * Called when a frame is drawn
@@ -81,39 +90,42 @@ public class HouseActivity extends EngineActivity implements ISensorProximity, I
     	SensorManager.getInstance().getSignalProximity().add(this);
     	SensorManager.getInstance().getSignalTap().add(this);
     	SensorManager.getInstance().getSignalDoubleTap().add(this);
+    	if(house == null)
+    	{
+    		//the house is loaded in background : frames are drawn meanwhile and its meshes appear once uploaded
+    		house = LoadingManager.getInstance().load(new Callable<Node>() {
+    			@Override
+    			public Node call()
+    			{
+    				long debut = System.currentTimeMillis();
+    				//the binary container is mapped in memory : no parsing and no copy of the buffers
+    				//it is parsed again if house_obj has changed since the container was saved
+    				long source = FileManager.getInstance().getFingerprint("house_obj");
+    				Node node = MeshContainer.load("house.mesh", source);
+    				if(node == null)
+    				{
+    					Log.error("no loading");
+    					node = new ObjParser().load("house_obj");
+    					node.y -=5;
+    					MeshContainer.save(FileManager.getInstance().getStorageFile("house.mesh"), node, source);
+    				}else
+    				{
+    					Log.warning("house scene loaded!!!!!!");
+    				}
+    				Log.verbose("Total load time : "+(System.currentTimeMillis() - debut)+"ms");
+    				return node;
+    			}
+    		}, root);
+    	}
     }
 	@Override
 	public void onSurfaceCreated(GL10 gl, EGLConfig config) {
-		ObjParser parser = new ObjParser();
-		long debut = System.currentTimeMillis();
-		long fin = debut;
-		 if(!root.load("house"))
-         {
-                 Light.addLight(
-                         Light.LightType.POINT_LIGHT, 
-                         new Coord3D(0, -1, 0), // position 
-                         new Color(0.2f, 0.2f, 0.2f),                    // ambient color
-                         Color.WHITE,                    // diffuse color
-                         Color.WHITE);           
-                 
-                 Log.error("no loading");
-                 node = parser.load("house_obj");
-                 node.y -=5;
-                 root.attachChildNode(node);
-                 //node.rotate(90, Node.AXIS_X);
-                 fin = System.currentTimeMillis();
-                 root.save("house");
-                 Log.verbose(FileManager.getInstance().deserialize("house"));
-         }else
-         {
-                 node = root.getChildNode(0);
-                 //node.rotate(90, Node.AXIS_X);
-                 //node.y -= 5;
-                 fin = System.currentTimeMillis();
-                 Log.warning("house scene loaded!!!!!!");
-         }
-         Log.verbose("Total load time : "+(fin - debut)/1000);
-         
+		Light.addLight(
+                 Light.LightType.POINT_LIGHT, 
+                 new Coord3D(0, -1, 0), // position 
+                 new Color(0.2f, 0.2f, 0.2f),                    // ambient color
+                 Color.WHITE,                    // diffuse color
+                 Color.WHITE);           
          Light.addLight(
                  Light.LightType.POINT_LIGHT, 
                  new Coord3D(0, 1, 0), // position 